@@ -0,0 +1,61 @@
+package logic.features;
+
+import logic.core.Picture;
+
+import java.awt.Color;
+import java.util.Random;
+
+/**
+ * Pictures used as benchmark inputs, by size name.
+ * <p>
+ * "corpus" is a 481x321 picture from the resources folder. The other sizes are
+ * synthetic: smooth gradients with seeded noise, so that the results of the operations
+ * are not trivial, and a pure green rectangle in the middle for {@code greenScreen}.
+ */
+final class BenchmarkPictures {
+    static final Color SCREEN = Color.GREEN;
+
+    private BenchmarkPictures() {
+    }
+
+    /**
+     * Obtain the input picture for a size.
+     *
+     * @param size one of "tiny" (32x32), "corpus" (481x321), "4k" (3840x2160) or "8k" (7680x4320)
+     * @return a new picture of that size
+     */
+    static Picture picture(String size) {
+        switch (size) {
+            case "tiny":
+                return synthetic(32, 32);
+            case "corpus":
+                return new Picture("resources/12003.jpg");
+            case "4k":
+                return synthetic(3840, 2160);
+            case "8k":
+                return synthetic(7680, 4320);
+            default:
+                throw new IllegalArgumentException("unknown size: " + size);
+        }
+    }
+
+    private static Picture synthetic(int breadth, int length) {
+        Random random = new Random(221);
+        int[] raster = new int[breadth * length];
+        for (int row = 0; row < length; row++) {
+            for (int col = 0; col < breadth; col++) {
+                int r = (255 * col / breadth + random.nextInt(32)) & 0xFF;
+                int g = (255 * row / length + random.nextInt(32)) & 0xFF;
+                int b = (r + g + random.nextInt(64)) & 0xFF;
+                raster[row * breadth + col] = (r << 16) | (g << 8) | b;
+            }
+        }
+        int screen = SCREEN.getRGB() & 0xFFFFFF;
+        for (int row = length / 4; row < 3 * length / 4; row++) {
+            for (int col = breadth / 4; col < 3 * breadth / 4; col++) {
+                raster[row * breadth + col] = screen;
+            }
+        }
+        return Picture.wrap(raster, breadth, length);
+    }
+}
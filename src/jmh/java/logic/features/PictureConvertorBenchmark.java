@@ -0,0 +1,305 @@
+package logic.features;
+
+import logic.core.GrayPicture;
+import logic.core.MappedPicture;
+import logic.core.NestedMatrix;
+import logic.core.Picture;
+import logic.core.PictureProcessingException;
+import logic.core.Quadrilateral;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of every public operation of {@link PictureConvertor}, for each input size,
+ * sequentially and on a fork-join pool with one thread per processor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class PictureConvertorBenchmark {
+
+    @Param({"tiny", "corpus", "4k", "8k"})
+    public String size;
+
+    @Param({"sequential", "parallel"})
+    public String mode;
+
+    private ForkJoinPool pool;
+    private Picture picture;
+    private Picture background;
+    private Picture destination;
+    private GrayPicture gray;
+    private Quadrilateral box;
+    private PictureConvertor convertor;
+    private Affine composed;
+    private NestedMatrix sharpen;
+    private NestedMatrix blur;
+    private DFTOutput spectrum;
+    private int[] gamma;
+    private Path mappedDirectory;
+    private MappedPicture mappedSource;
+    private MappedPicture mappedTarget;
+
+    @Setup
+    public void setUp() throws IOException {
+        picture = BenchmarkPictures.picture(size);
+        background = BenchmarkPictures.picture("tiny");
+        destination = new Picture(picture.breadth(), picture.length());
+        gray = GrayPicture.of(picture);
+        box = new Quadrilateral(picture.breadth() / 4, picture.length() / 4,
+            3 * picture.breadth() / 4, 3 * picture.length() / 4);
+        pool = new ForkJoinPool();
+        convertor = "parallel".equals(mode)
+            ? new PictureConvertor(picture, pool)
+            : new PictureConvertor(picture);
+        composed = Affine.rotation(20).andThen(Affine.scaling(1.25, 0.8)).andThen(Affine.shearing(0.1, 0));
+        sharpen = new NestedMatrix(new double[][] {{0, -1, 0}, {-1, 5, -1}, {0, -1, 0}});
+        blur = NestedMatrix.tabulate(33, 33, (row, col) -> 1.0 / (33 * 33));
+        spectrum = PictureConvertor.dft(gray);
+        gamma = new int[256];
+        for (int v = 0; v < 256; v++) {
+            gamma[v] = (int) Math.round(255 * Math.pow(v / 255.0, 0.5));
+        }
+        mappedDirectory = Files.createTempDirectory("benchmark-mapped");
+        mappedSource = MappedPicture.copyOf(picture, mappedDirectory.resolve("source.raw"));
+        mappedTarget = MappedPicture.create(mappedDirectory.resolve("target.raw"),
+            picture.breadth(), picture.length());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        pool.shutdown();
+        mappedSource.close();
+        mappedTarget.close();
+        Files.delete(mappedDirectory.resolve("source.raw"));
+        Files.delete(mappedDirectory.resolve("target.raw"));
+        Files.delete(mappedDirectory);
+    }
+
+    @Benchmark
+    public Picture grayscale() {
+        return convertor.grayscale();
+    }
+
+    @Benchmark
+    public Picture red() {
+        return convertor.red(null);
+    }
+
+    @Benchmark
+    public Picture negative() {
+        return convertor.negative();
+    }
+
+    @Benchmark
+    public Picture posterize() {
+        return convertor.posterize();
+    }
+
+    /**
+     * The destination overloads write into one picture, allocated once in setup; the
+     * input is not changed.
+     */
+    @Benchmark
+    public Picture grayscaleIntoDestination() {
+        return convertor.grayscale(destination);
+    }
+
+    @Benchmark
+    public Picture negativeIntoDestination() {
+        return convertor.negative(destination);
+    }
+
+    @Benchmark
+    public Picture posterizeIntoDestination() {
+        return convertor.posterize(destination);
+    }
+
+    @Benchmark
+    public Picture applyLutIntoDestination() {
+        return convertor.applyLut(PictureConvertor.NEGATIVE_LUT.andThen(PictureConvertor.GRAYSCALE_LUT), destination);
+    }
+
+    @Benchmark
+    public Picture applyLut() {
+        return convertor.applyLut(PictureConvertor.NEGATIVE_LUT.andThen(PictureConvertor.GRAYSCALE_LUT));
+    }
+
+    @Benchmark
+    public Picture applyChannelLut() {
+        return convertor.applyChannelLut(gamma, gamma, gamma);
+    }
+
+    @Benchmark
+    public Picture pipeline() throws PictureProcessingException {
+        return convertor.pipeline().grayscale().negative().denoise().clip(box).posterize().toPicture();
+    }
+
+    @Benchmark
+    public Picture mirror() {
+        return convertor.mirror();
+    }
+
+    @Benchmark
+    public Picture flipVertical() {
+        return convertor.flipVertical();
+    }
+
+    @Benchmark
+    public Picture transpose() {
+        return convertor.transpose();
+    }
+
+    @Benchmark
+    public Picture rotate90() {
+        return convertor.rotate90();
+    }
+
+    @Benchmark
+    public Picture rotate180() {
+        return convertor.rotate180();
+    }
+
+    @Benchmark
+    public Picture rotate270() {
+        return convertor.rotate270();
+    }
+
+    @Benchmark
+    public Picture clip() throws PictureProcessingException {
+        return convertor.clip(box);
+    }
+
+    @Benchmark
+    public Picture regionGrayscale() throws PictureProcessingException {
+        return convertor.region(box).grayscale();
+    }
+
+    @Benchmark
+    public Picture applyDenoiseToRegion() throws PictureProcessingException {
+        return convertor.apply(box, 2, c -> c.denoise(2));
+    }
+
+    @Benchmark
+    public Picture denoise() {
+        return convertor.denoise();
+    }
+
+    @Benchmark
+    public Picture denoiseRadius5() {
+        return convertor.denoise(5);
+    }
+
+    @Benchmark
+    public Picture weather() {
+        return convertor.weather();
+    }
+
+    @Benchmark
+    public Picture dilateRadius5() {
+        return convertor.dilate(5);
+    }
+
+    @Benchmark
+    public Picture open() {
+        return convertor.open(2);
+    }
+
+    @Benchmark
+    public Picture close() {
+        return convertor.close(2);
+    }
+
+    @Benchmark
+    public Picture boxPaint() {
+        return convertor.boxPaint(4);
+    }
+
+    @Benchmark
+    public Picture rotate30() {
+        return convertor.rotate(30);
+    }
+
+    @Benchmark
+    public Picture rotate30Bilinear() {
+        return convertor.rotate(30, Sampling.BILINEAR);
+    }
+
+    @Benchmark
+    public Picture transformComposed() {
+        return convertor.transform(composed, Sampling.BILINEAR);
+    }
+
+    @Benchmark
+    public DFTOutput dft() {
+        return convertor.dft();
+    }
+
+    @Benchmark
+    public DFTOutput dftGray() {
+        return PictureConvertor.dft(gray);
+    }
+
+    @Benchmark
+    public Picture inverseDft() {
+        return spectrum.inverse();
+    }
+
+    @Benchmark
+    public Picture lowPass() {
+        return spectrum.filter(FrequencyMask.lowPass(0.1)).inverse();
+    }
+
+    @Benchmark
+    public Picture convolveSharpen() {
+        return convertor.convolve(sharpen);
+    }
+
+    @Benchmark
+    public Picture convolveBlur33() {
+        return convertor.convolve(blur);
+    }
+
+    @Benchmark
+    public double estimateSkew() {
+        return convertor.estimateSkew();
+    }
+
+    @Benchmark
+    public Picture alignTextPicture() {
+        return convertor.alignTextPicture();
+    }
+
+    /**
+     * Streams a denoise through memory-mapped files in bands; runs on the calling thread
+     * in both modes.
+     */
+    @Benchmark
+    public void streamDenoise() {
+        PictureConvertor.stream(mappedSource, mappedTarget, 1, PictureConvertor::denoise);
+    }
+
+    @Benchmark
+    public Picture greenScreen() {
+        return convertor.greenScreen(BenchmarkPictures.SCREEN, background);
+    }
+}
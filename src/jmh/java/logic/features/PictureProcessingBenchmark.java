@@ -0,0 +1,123 @@
+package logic.features;
+
+import logic.core.GrayPicture;
+import logic.core.Picture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the operations of {@link PictureProcessing} and of the hashes of
+ * {@link PerceptualHash}, for each input size.
+ * Batch operations compare {@value #CANDIDATES} pictures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class PictureProcessingBenchmark {
+
+    private static final int CANDIDATES = 8;
+
+    @Param({"tiny", "corpus", "4k", "8k"})
+    public String size;
+
+    private Picture first;
+    private Picture second;
+    private GrayPicture firstGray;
+    private GrayPicture secondGray;
+    private List<Picture> candidates;
+    private ForkJoinPool pool;
+
+    @Setup
+    public void setUp() {
+        first = BenchmarkPictures.picture(size);
+        second = new PictureConvertor(first).negative();
+        firstGray = GrayPicture.of(first);
+        secondGray = GrayPicture.of(second);
+        candidates = new ArrayList<>();
+        for (int i = 0; i < CANDIDATES; i++) {
+            int[] table = new int[256];
+            for (int v = 0; v < 256; v++) {
+                table[v] = Math.min(255, v + 8 * i);
+            }
+            candidates.add(new PictureConvertor(first).applyLut(table));
+        }
+        pool = new ForkJoinPool();
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public double cosineSimilarity() {
+        return PictureProcessing.cosineSimilarity(first, second);
+    }
+
+    @Benchmark
+    public double cosineSimilarityGray() {
+        return PictureProcessing.cosineSimilarity(firstGray, secondGray);
+    }
+
+    @Benchmark
+    public double[] cosineSimilarities() {
+        return PictureProcessing.cosineSimilarities(first, candidates);
+    }
+
+    @Benchmark
+    public double[] cosineSimilaritiesParallel() {
+        return PictureProcessing.cosineSimilarities(first, candidates, pool);
+    }
+
+    @Benchmark
+    public double[][] cosineSimilarityMatrix() {
+        return PictureProcessing.cosineSimilarityMatrix(candidates);
+    }
+
+    @Benchmark
+    public double[][] cosineSimilarityMatrixParallel() {
+        return PictureProcessing.cosineSimilarityMatrix(candidates, pool);
+    }
+
+    @Benchmark
+    public long averageHash() {
+        return PerceptualHash.averageHash(first);
+    }
+
+    @Benchmark
+    public long differenceHash() {
+        return PerceptualHash.differenceHash(first);
+    }
+
+    @Benchmark
+    public long perceptualHash() {
+        return PerceptualHash.perceptualHash(first);
+    }
+
+    /**
+     * The pyramids of the pictures are built on the first call and reused afterwards,
+     * as they are when the same candidates are searched repeatedly.
+     */
+    @Benchmark
+    public int mostSimilar() {
+        return PictureProcessing.mostSimilar(second, candidates);
+    }
+}
@@ -0,0 +1,116 @@
+package logic.features;
+
+import logic.core.Picture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Top-k queries against a {@link SimilarityIndex} holding the JPEG pictures of the
+ * resources folder, each added {@code copies} times, compared with computing
+ * {@link PictureProcessing#cosineSimilarity(Picture, Picture)} against every picture,
+ * and near-duplicate searches of a {@link BKTree} holding their perceptual hashes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = {"-Xms4g", "-Xmx4g"})
+public class SimilarityIndexBenchmark {
+
+    @Param({"1", "100"})
+    public int copies;
+
+    private final List<Picture> corpus = new ArrayList<>();
+    private final List<Picture> comparable = new ArrayList<>();
+    private SimilarityIndex index;
+    private BKTree hashes;
+    private long queryHash;
+    private Picture query;
+    private Path saved;
+
+    @Setup
+    public void setUp() throws IOException {
+        File[] files = new File("resources").listFiles((dir, name) -> name.endsWith(".jpg"));
+        if (files == null || files.length == 0) {
+            throw new IllegalStateException("no pictures in resources");
+        }
+        for (File file : files) {
+            corpus.add(new Picture(file));
+        }
+        index = new SimilarityIndex();
+        for (int copy = 0; copy < copies; copy++) {
+            for (Picture picture : corpus) {
+                index.add(picture);
+            }
+        }
+        query = new PictureConvertor(corpus.get(0)).negative();
+        // copies after the first are near-duplicates: their hashes differ in a few bits
+        Random random = new Random(19);
+        hashes = new BKTree();
+        for (int i = 0; i < corpus.size(); i++) {
+            long hash = PerceptualHash.perceptualHash(corpus.get(i));
+            hashes.add(hash, i);
+            for (int copy = 1; copy < copies; copy++) {
+                long flipped = hash;
+                for (int bit = random.nextInt(8); bit > 0; bit--) {
+                    flipped ^= 1L << random.nextInt(64);
+                }
+                hashes.add(flipped, i);
+            }
+        }
+        queryHash = PerceptualHash.perceptualHash(corpus.get(0));
+        // only pictures of the query's dimensions can be compared pairwise
+        for (Picture picture : corpus) {
+            if (picture.breadth() == query.breadth() && picture.length() == query.length()) {
+                comparable.add(picture);
+            }
+        }
+        saved = Files.createTempFile("similarity", ".index");
+        saved.toFile().deleteOnExit();
+        index.save(saved);
+    }
+
+    @Benchmark
+    public List<SimilarityIndex.Match> nearest10() {
+        return index.nearest(query, 10);
+    }
+
+    @Benchmark
+    public double[] scanCorpusPairwise() {
+        return PictureProcessing.cosineSimilarities(query, comparable);
+    }
+
+    @Benchmark
+    public SimilarityIndex load() throws IOException {
+        return SimilarityIndex.load(saved);
+    }
+
+    @Benchmark
+    public List<BKTree.Match> hashesWithin4() {
+        return hashes.within(queryHash, 4);
+    }
+
+    @Benchmark
+    public List<BKTree.Match> hashesWithin10() {
+        return hashes.within(queryHash, 10);
+    }
+}
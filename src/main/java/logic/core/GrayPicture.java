@@ -0,0 +1,218 @@
+package logic.core;
+
+import java.util.Arrays;
+
+/**
+ * This datatype represents a mutable single-channel picture with 8-bit gray levels.
+ * <p>
+ * Pixel (<em>col</em>, <em>row</em>) is column <em>col</em> and row <em>row</em>, with
+ * the origin (0, 0) in the top-left corner. Gray levels are between 0 (black) and
+ * 255 (white), and are stored one byte per pixel, row by row, in an array that can be
+ * addressed directly through {@link #raster()}. A <em>W</em>-by-<em>H</em> gray picture
+ * therefore uses ~ <em>W H</em> bytes of memory, a quarter of a {@link Picture}.
+ * <p>
+ * Operations that only look at the luminance of a picture, such as cosine similarity
+ * and the discrete Fourier transform, can work on a gray picture directly instead of
+ * on a grayscale {@code Picture}.
+ */
+public final class GrayPicture {
+    private final int breadth, length;
+    private final byte[] pixels;
+
+    /*
+        Abstraction Function:
+            Represents a breadth-by-length gray picture whose pixel (col, row) has the
+            gray level pixels[row * breadth + col] & 0xFF.
+
+        Representation Invariant:
+            breadth >= 1, length >= 1
+            pixels.length == breadth * length
+     */
+
+    /**
+     * Creates a {@code breadth}-by-{@code length} gray picture where each pixel is black.
+     *
+     * @param breadth the breadth of the picture, {@code > 0}
+     * @param length  the length of the picture, {@code > 0}
+     * @throws IllegalArgumentException if {@code breadth} or {@code length} is not positive
+     */
+    public GrayPicture(int breadth, int length) {
+        this(new byte[checkedArea(breadth, length)], breadth, length);
+    }
+
+    private GrayPicture(byte[] pixels, int breadth, int length) {
+        this.breadth = breadth;
+        this.length = length;
+        this.pixels = pixels;
+    }
+
+    /**
+     * Creates a {@code breadth}-by-{@code length} gray picture that uses {@code data},
+     * laid out row by row, as its raster without copying it.
+     *
+     * @param data    the gray levels, has exactly {@code breadth * length} entries
+     * @param breadth the breadth of the picture, {@code > 0}
+     * @param length  the length of the picture, {@code > 0}
+     * @return a gray picture backed by {@code data}
+     * @throws IllegalArgumentException if {@code data} is {@code null} or has the wrong size
+     */
+    public static GrayPicture wrap(byte[] data, int breadth, int length) {
+        int area = checkedArea(breadth, length);
+        if (data == null || data.length != area) {
+            throw new IllegalArgumentException("data must hold exactly " + area + " gray levels");
+        }
+        return new GrayPicture(data, breadth, length);
+    }
+
+    /**
+     * Creates the gray picture holding the luminance of every pixel of {@code picture},
+     * as computed by {@link Picture#luminance(int)}. The gray levels are identical to the
+     * ones in the grayscale version of the picture.
+     *
+     * @param picture the picture to convert, is not null
+     * @return the luminance of {@code picture}
+     */
+    public static GrayPicture of(Picture picture) {
+        if (picture == null) {
+            throw new IllegalArgumentException("picture is null");
+        }
+        int breadth = picture.breadth();
+        int length = picture.length();
+        byte[] pixels = new byte[breadth * length];
+        int[] line = new int[breadth];
+        for (int row = 0; row < length; row++) {
+            picture.getRGBRow(row, line);
+            int start = row * breadth;
+            for (int col = 0; col < breadth; col++) {
+                pixels[start + col] = (byte) Picture.luminance(line[col]);
+            }
+        }
+        return new GrayPicture(pixels, breadth, length);
+    }
+
+    private static int checkedArea(int breadth, int length) {
+        if (breadth <= 0) {
+            throw new IllegalArgumentException("breadth must be positive");
+        }
+        if (length <= 0) {
+            throw new IllegalArgumentException("length must be positive");
+        }
+        return Math.multiplyExact(breadth, length);
+    }
+
+    /**
+     * Returns the breadth of the picture.
+     *
+     * @return the breadth of the picture (in pixels)
+     */
+    public int breadth() {
+        return breadth;
+    }
+
+    /**
+     * Returns the length of the picture.
+     *
+     * @return the length of the picture (in pixels)
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the raster holding the gray levels, row by row: pixel ({@code col}, {@code row})
+     * is {@code raster()[row * breadth() + col] & 0xFF}. The array is shared, not copied.
+     *
+     * @return the raster of this picture
+     */
+    public byte[] raster() {
+        return pixels;
+    }
+
+    /**
+     * Returns the gray level of pixel ({@code col}, {@code row}).
+     *
+     * @param col the column index
+     * @param row the row index
+     * @return the gray level, between 0 and 255
+     * @throws IllegalArgumentException unless both {@code 0 <= col < breadth} and {@code 0 <= row < length}
+     */
+    public int get(int col, int row) {
+        validate(col, row);
+        return pixels[row * breadth + col] & 0xFF;
+    }
+
+    /**
+     * Sets the gray level of pixel ({@code col}, {@code row}).
+     *
+     * @param col  the column index
+     * @param row  the row index
+     * @param gray the gray level, between 0 and 255
+     * @throws IllegalArgumentException unless both {@code 0 <= col < breadth} and {@code 0 <= row < length}
+     * @throws IllegalArgumentException unless {@code 0 <= gray <= 255}
+     */
+    public void set(int col, int row, int gray) {
+        validate(col, row);
+        if (gray < 0 || gray > 255) {
+            throw new IllegalArgumentException("gray level must be between 0 and 255: " + gray);
+        }
+        pixels[row * breadth + col] = (byte) gray;
+    }
+
+    private void validate(int col, int row) {
+        if (col < 0 || col >= breadth) {
+            throw new IllegalArgumentException(
+                "column index must be between 0 and " + (breadth - 1) + ": " + col);
+        }
+        if (row < 0 || row >= length) {
+            throw new IllegalArgumentException(
+                "row index must be between 0 and " + (length - 1) + ": " + row);
+        }
+    }
+
+    /**
+     * Creates an RGB picture in which every pixel has red, green and blue equal to its
+     * gray level in this picture.
+     *
+     * @return the RGB version of this picture
+     */
+    public Picture toPicture() {
+        int[] rgb = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int y = pixels[i] & 0xFF;
+            rgb[i] = 0xFF000000 | (y << 16) | (y << 8) | y;
+        }
+        return Picture.wrap(rgb, breadth, length);
+    }
+
+    /**
+     * Returns true if this gray picture is equal to the argument.
+     *
+     * @param other the other object
+     * @return {@code true} if {@code other} is a gray picture with the same dimensions
+     * and the same gray level at every pixel; {@code false} otherwise
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof GrayPicture)) {
+            return false;
+        }
+        GrayPicture that = (GrayPicture) other;
+        return breadth == that.breadth && length == that.length
+            && Arrays.equals(pixels, that.pixels);
+    }
+
+    /**
+     * Returns a hash of the dimensions and gray levels, consistent with
+     * {@link #equals(Object)}. Changing a gray level changes the hash, so a gray
+     * picture must not be changed while it is a key of a hash-based collection.
+     *
+     * @return a hash code for this gray picture
+     */
+    @Override
+    public int hashCode() {
+        return 31 * (31 * breadth + length) + Arrays.hashCode(pixels);
+    }
+}
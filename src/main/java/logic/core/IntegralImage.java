@@ -0,0 +1,206 @@
+package logic.core;
+
+/**
+ * This datatype represents an <strong>immutable</strong> summed-area table (integral image)
+ * of the red, green and blue channels of a picture.
+ * <p>
+ * After a single pass over the picture, the sum or mean of any channel over any
+ * axis-aligned box can be obtained in constant time with four table lookups.
+ * Boxes are given by their top-left and bottom-right corners, and include both corners,
+ * matching {@link Quadrilateral}.
+ * <p>
+ * Tables are stored as <code>int[]</code> when every sum fits in an <code>int</code>
+ * (pictures of up to 8,421,504 pixels) and as <code>long[]</code> otherwise.
+ */
+public final class IntegralImage {
+    public static final int RED = 0;
+    public static final int GREEN = 1;
+    public static final int BLUE = 2;
+
+    private static final long MAX_INT_PIXELS = Integer.MAX_VALUE / 255;
+
+    public final int breadth;
+    public final int length;
+    private final int[][] intTables;
+    private final long[][] longTables;
+
+    /*
+        Abstraction Function:
+            Represents the summed-area tables of a breadth-by-length picture.
+            For channel c, the table entry at (x, y) with 0 <= x <= breadth and
+            0 <= y <= length, stored at index y * (breadth + 1) + x, is the sum of
+            channel c over the pixels (col, row) with col < x and row < y.
+            The tables are intTables[c] if intTables is not null, and longTables[c] otherwise.
+
+        Representation Invariant:
+            breadth >= 1, length >= 1
+            exactly one of intTables and longTables is null
+            each table has (breadth + 1) * (length + 1) entries
+            row 0 and column 0 of each table are 0
+     */
+
+    /**
+     * Build the summed-area tables of a picture. Later changes to the picture are
+     * not reflected in the tables.
+     *
+     * @param picture is not null
+     */
+    public IntegralImage(Picture picture) {
+        if (picture == null) {
+            throw new IllegalArgumentException("picture is null");
+        }
+        breadth = picture.breadth();
+        length = picture.length();
+        int w = breadth + 1;
+        int size = Math.multiplyExact(w, length + 1);
+        int[] line = new int[breadth];
+
+        if ((long) breadth * length <= MAX_INT_PIXELS) {
+            intTables = new int[3][size];
+            longTables = null;
+            int[] r = intTables[RED];
+            int[] g = intTables[GREEN];
+            int[] b = intTables[BLUE];
+            for (int row = 0; row < length; row++) {
+                picture.getRGBRow(row, line);
+                int above = row * w;
+                int here = above + w;
+                int sumR = 0;
+                int sumG = 0;
+                int sumB = 0;
+                for (int col = 0; col < breadth; col++) {
+                    int rgb = line[col];
+                    sumR += (rgb >> 16) & 0xFF;
+                    sumG += (rgb >> 8) & 0xFF;
+                    sumB += rgb & 0xFF;
+                    r[here + col + 1] = r[above + col + 1] + sumR;
+                    g[here + col + 1] = g[above + col + 1] + sumG;
+                    b[here + col + 1] = b[above + col + 1] + sumB;
+                }
+            }
+        } else {
+            intTables = null;
+            longTables = new long[3][size];
+            long[] r = longTables[RED];
+            long[] g = longTables[GREEN];
+            long[] b = longTables[BLUE];
+            for (int row = 0; row < length; row++) {
+                picture.getRGBRow(row, line);
+                int above = row * w;
+                int here = above + w;
+                long sumR = 0;
+                long sumG = 0;
+                long sumB = 0;
+                for (int col = 0; col < breadth; col++) {
+                    int rgb = line[col];
+                    sumR += (rgb >> 16) & 0xFF;
+                    sumG += (rgb >> 8) & 0xFF;
+                    sumB += rgb & 0xFF;
+                    r[here + col + 1] = r[above + col + 1] + sumR;
+                    g[here + col + 1] = g[above + col + 1] + sumG;
+                    b[here + col + 1] = b[above + col + 1] + sumB;
+                }
+            }
+        }
+    }
+
+    /**
+     * Obtain the sum of one channel over a box.
+     *
+     * @param channel      one of {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param xTopLeft     the column of the top-left corner, >= 0
+     * @param yTopLeft     the row of the top-left corner, >= 0
+     * @param xBottomRight the column of the bottom-right corner, xTopLeft <= xBottomRight < breadth
+     * @param yBottomRight the row of the bottom-right corner, yTopLeft <= yBottomRight < length
+     * @return the sum of the channel over the pixels of the box
+     */
+    public long sum(int channel, int xTopLeft, int yTopLeft, int xBottomRight, int yBottomRight) {
+        validate(channel, xTopLeft, yTopLeft, xBottomRight, yBottomRight);
+        int w = breadth + 1;
+        int topLeft = yTopLeft * w + xTopLeft;
+        int topRight = yTopLeft * w + xBottomRight + 1;
+        int bottomLeft = (yBottomRight + 1) * w + xTopLeft;
+        int bottomRight = (yBottomRight + 1) * w + xBottomRight + 1;
+        if (intTables != null) {
+            int[] t = intTables[channel];
+            return t[bottomRight] - t[bottomLeft] - t[topRight] + t[topLeft];
+        }
+        long[] t = longTables[channel];
+        return t[bottomRight] - t[bottomLeft] - t[topRight] + t[topLeft];
+    }
+
+    /**
+     * Obtain the sum of one channel over a box.
+     *
+     * @param channel one of {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param box     is not null and lies within the picture
+     * @return the sum of the channel over the pixels of the box
+     */
+    public long sum(int channel, Quadrilateral box) {
+        return sum(channel, box.xTopLeft, box.yTopLeft, box.xBottomRight, box.yBottomRight);
+    }
+
+    /**
+     * Obtain the mean of one channel over a box.
+     *
+     * @param channel      one of {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param xTopLeft     the column of the top-left corner, >= 0
+     * @param yTopLeft     the row of the top-left corner, >= 0
+     * @param xBottomRight the column of the bottom-right corner, xTopLeft <= xBottomRight < breadth
+     * @param yBottomRight the row of the bottom-right corner, yTopLeft <= yBottomRight < length
+     * @return the mean of the channel over the pixels of the box
+     */
+    public double mean(int channel, int xTopLeft, int yTopLeft, int xBottomRight, int yBottomRight) {
+        long area = (long) (xBottomRight - xTopLeft + 1) * (yBottomRight - yTopLeft + 1);
+        return (double) sum(channel, xTopLeft, yTopLeft, xBottomRight, yBottomRight) / area;
+    }
+
+    /**
+     * Obtain the mean of one channel over a box.
+     *
+     * @param channel one of {@link #RED}, {@link #GREEN} or {@link #BLUE}
+     * @param box     is not null and lies within the picture
+     * @return the mean of the channel over the pixels of the box
+     */
+    public double mean(int channel, Quadrilateral box) {
+        return mean(channel, box.xTopLeft, box.yTopLeft, box.xBottomRight, box.yBottomRight);
+    }
+
+    /**
+     * Obtain the mean colour of a box, with each channel mean rounded down.
+     *
+     * @param xTopLeft     the column of the top-left corner, >= 0
+     * @param yTopLeft     the row of the top-left corner, >= 0
+     * @param xBottomRight the column of the bottom-right corner, xTopLeft <= xBottomRight < breadth
+     * @param yBottomRight the row of the bottom-right corner, yTopLeft <= yBottomRight < length
+     * @return the packed RGB encoding of the mean colour of the box
+     */
+    public int meanRGB(int xTopLeft, int yTopLeft, int xBottomRight, int yBottomRight) {
+        long area = (long) (xBottomRight - xTopLeft + 1) * (yBottomRight - yTopLeft + 1);
+        int r = (int) (sum(RED, xTopLeft, yTopLeft, xBottomRight, yBottomRight) / area);
+        int g = (int) (sum(GREEN, xTopLeft, yTopLeft, xBottomRight, yBottomRight) / area);
+        int b = (int) (sum(BLUE, xTopLeft, yTopLeft, xBottomRight, yBottomRight) / area);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    /**
+     * Obtain the mean colour of a box, with each channel mean rounded down.
+     *
+     * @param box is not null and lies within the picture
+     * @return the packed RGB encoding of the mean colour of the box
+     */
+    public int meanRGB(Quadrilateral box) {
+        return meanRGB(box.xTopLeft, box.yTopLeft, box.xBottomRight, box.yBottomRight);
+    }
+
+    private void validate(int channel, int xTopLeft, int yTopLeft, int xBottomRight, int yBottomRight) {
+        if (channel < RED || channel > BLUE) {
+            throw new IllegalArgumentException("invalid channel: " + channel);
+        }
+        if (xTopLeft < 0 || yTopLeft < 0 || xBottomRight < xTopLeft || yBottomRight < yTopLeft
+            || xBottomRight >= breadth || yBottomRight >= length) {
+            throw new IllegalArgumentException("box does not fit in a "
+                + breadth + "-by-" + length + " picture");
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package logic.core;
+
+/**
+ * This datatype represents an <strong>immutable</strong> weighting of colour channels
+ * into a single level, y = round(wr(r) + wg(g) + wb(b)), where wr, wg and wb are
+ * per-channel weight tables over the channel values 0 to 255.
+ * <p>
+ * The sum is taken in fixed point, in units of 2^-20. Only the rare sums that land too
+ * close to a halfway point to round reliably that way are taken again in floating point,
+ * so the level is always exactly <code>Math.round((wr(r) + wg(g)) + wb(b))</code>.
+ * This is the rounding rule of {@link Picture#luminance(int)} and of the luminance
+ * stage of lookup tables.
+ */
+public final class LuminanceWeights {
+    private static final int SIZE = 256;
+    private static final int FRACTION_BITS = 20;
+    private static final long HALF = 1L << (FRACTION_BITS - 1);
+    private static final long FRACTION = (1L << FRACTION_BITS) - 1;
+    // each fixed-point entry is off by at most half a unit, so a sum of three can only
+    // round differently from the floating-point sum within this many units of a halfway point
+    private static final long MARGIN = 2;
+    // larger weights lose the precision the fixed-point sum needs; they are summed in floating point
+    private static final double FIXED_LIMIT = 1 << 24;
+
+    /**
+     * The NTSC weights, 0.299 r + 0.587 g + 0.114 b.
+     */
+    public static final LuminanceWeights NTSC = of(0.299, 0.587, 0.114);
+
+    private final double[] red;
+    private final double[] green;
+    private final double[] blue;
+    private final long[] fixedRed;
+    private final long[] fixedGreen;
+    private final long[] fixedBlue;
+
+    /*
+        Abstraction Function:
+            Represents the weighting that maps (r, g, b) to
+            Math.round((red[r] + green[g]) + blue[b]).
+
+        Representation Invariant:
+            red, green and blue have 256 entries each
+            fixedRed, fixedGreen and fixedBlue are either all null or all have 256 entries,
+            and fixedRed[v] == round(red[v] * 2^20), likewise for green and blue
+            fixedRed is not null if all entries of red, green and blue are less than
+            2^24 in absolute value
+     */
+
+    private LuminanceWeights(double[] red, double[] green, double[] blue) {
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+        long[] r = fixed(red);
+        long[] g = fixed(green);
+        long[] b = fixed(blue);
+        boolean exact = r != null && g != null && b != null;
+        this.fixedRed = exact ? r : null;
+        this.fixedGreen = exact ? g : null;
+        this.fixedBlue = exact ? b : null;
+    }
+
+    /**
+     * Create the weighting wr * r + wg * g + wb * b.
+     *
+     * @param wr the weight of the red channel
+     * @param wg the weight of the green channel
+     * @param wb the weight of the blue channel
+     * @return the weighting
+     */
+    public static LuminanceWeights of(double wr, double wg, double wb) {
+        double[] r = new double[SIZE];
+        double[] g = new double[SIZE];
+        double[] b = new double[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            r[v] = wr * v;
+            g[v] = wg * v;
+            b[v] = wb * v;
+        }
+        return new LuminanceWeights(r, g, b);
+    }
+
+    /**
+     * Obtain the weighting that first maps each channel through a table and then
+     * applies this one.
+     *
+     * @param redMap   maps each red value to a value between 0 and 255, has 256 entries
+     * @param greenMap maps each green value to a value between 0 and 255, has 256 entries
+     * @param blueMap  maps each blue value to a value between 0 and 255, has 256 entries
+     * @return the weighting whose tables are wr(redMap[r]), wg(greenMap[g]) and wb(blueMap[b])
+     */
+    public LuminanceWeights after(int[] redMap, int[] greenMap, int[] blueMap) {
+        double[] r = new double[SIZE];
+        double[] g = new double[SIZE];
+        double[] b = new double[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            r[v] = red[redMap[v]];
+            g[v] = green[greenMap[v]];
+            b[v] = blue[blueMap[v]];
+        }
+        return new LuminanceWeights(r, g, b);
+    }
+
+    /**
+     * Obtain the weighted level of a colour, rounded to the nearest integer.
+     *
+     * @param r the red value, between 0 and 255
+     * @param g the green value, between 0 and 255
+     * @param b the blue value, between 0 and 255
+     * @return Math.round((wr(r) + wg(g)) + wb(b)), which is not clamped
+     */
+    public long round(int r, int g, int b) {
+        if (fixedRed != null) {
+            long sum = fixedRed[r] + fixedGreen[g] + fixedBlue[b] + HALF;
+            long fraction = sum & FRACTION;
+            if (fraction >= MARGIN && fraction <= FRACTION - MARGIN) {
+                return sum >> FRACTION_BITS;
+            }
+        }
+        return Math.round(red[r] + green[g] + blue[b]);
+    }
+
+    private static long[] fixed(double[] weights) {
+        long[] result = new long[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            if (!(Math.abs(weights[v]) < FIXED_LIMIT)) {
+                return null;
+            }
+            result[v] = Math.round(weights[v] * (1L << FRACTION_BITS));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,451 @@
+package logic.core;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * This datatype represents a mutable picture whose raster lives in a memory-mapped file
+ * rather than on the heap, so that it can be larger than the heap.
+ * <p>
+ * The file uses the raw raster layout described in {@link RasterFormat}. It is mapped in
+ * segments of whole rows, each at most 1 GiB, and the operating system pages the parts
+ * that are in use in and out of memory; reading or writing a pixel only touches the page
+ * that holds it. Changes are written back to the file by the operating system, and at the
+ * latest when {@link #force()} is called.
+ * <p>
+ * Pixels are accessed one at a time with {@link #getRGB(int, int)} and
+ * {@link #setRGB(int, int, int)}, a row at a time with {@link #getRGBRow(int, int[])}
+ * and {@link #setRGBRow(int, int[])}, or a band of rows at a time as an on-heap
+ * {@link Picture} with {@link #readRows(int, int)} and {@link #writeRows(int, Picture)},
+ * which is how {@code PictureConvertor} streams operations over a mapped picture.
+ * The conventions for pixel coordinates and colours are the same as in {@link Picture}.
+ */
+public final class MappedPicture implements AutoCloseable {
+    private static final int OPAQUE = 0xFF000000;
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+
+    private final FileChannel channel;
+    private final int breadth, length;
+    private final boolean isOriginUpperLeft;
+    private final int rowsPerSegment;
+    private final MappedByteBuffer[] mapped;
+    private final IntBuffer[] segments;      // int views of mapped
+
+    /*
+        Abstraction Function:
+            Represents a breadth-by-length picture whose pixel in physical row y and
+            column x has the colour segments[y / rowsPerSegment].get((y % rowsPerSegment)
+            * breadth + x) & 0xFFFFFF. If isOriginUpperLeft, logical row r is physical
+            row r; otherwise logical row r is physical row length - 1 - r.
+
+        Representation Invariant:
+            breadth >= 1, length >= 1, rowsPerSegment >= 1
+            mapped.length == segments.length == ceil(length / rowsPerSegment)
+            segments[s] is a little-endian int view of mapped[s]
+            every segment but the last holds rowsPerSegment * breadth pixels, and the
+            last holds the remaining rows
+     */
+
+    private MappedPicture(FileChannel channel, RasterFormat format, int rowsPerSegment) throws IOException {
+        this.channel = channel;
+        this.breadth = format.breadth;
+        this.length = format.length;
+        this.isOriginUpperLeft = format.originUpperLeft;
+        this.rowsPerSegment = rowsPerSegment;
+        int count = (length + rowsPerSegment - 1) / rowsPerSegment;
+        this.mapped = new MappedByteBuffer[count];
+        this.segments = new IntBuffer[count];
+        long rowBytes = 4L * breadth;
+        for (int s = 0; s < count; s++) {
+            int rows = Math.min(rowsPerSegment, length - s * rowsPerSegment);
+            mapped[s] = channel.map(FileChannel.MapMode.READ_WRITE,
+                RasterFormat.HEADER_BYTES + s * rowsPerSegment * rowBytes, rows * rowBytes);
+            segments[s] = mapped[s].order(RasterFormat.ORDER).asIntBuffer();
+        }
+    }
+
+    /**
+     * Creates a file holding a {@code breadth}-by-{@code length} picture where each pixel
+     * is black, and maps it. An existing file is replaced.
+     *
+     * @param file    the file to create, is not null
+     * @param breadth the breadth of the picture, {@code > 0}
+     * @param length  the length of the picture, {@code > 0}
+     * @return the mapped picture
+     * @throws IllegalArgumentException if {@code breadth} or {@code length} is not positive
+     * @throws IOException              if the file cannot be created or mapped
+     */
+    public static MappedPicture create(Path file, int breadth, int length) throws IOException {
+        RasterFormat format = new RasterFormat(breadth, length, true, 0);
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            format.write(channel);
+            // extend the file to its full size; the new bytes read as zero, which is black
+            channel.write(ByteBuffer.allocate(1), format.fileBytes() - 1);
+            return new MappedPicture(channel, format, segmentRows(breadth));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Maps an existing raster file, such as one written by {@link Picture#writeRaw(Path)},
+     * for reading and writing. Since the pixels can then change, the checksum recorded
+     * in the file is cleared.
+     *
+     * @param file the file to open, is not null
+     * @return the mapped picture
+     * @throws IOException if the file cannot be read, is not a raster file, or cannot be mapped
+     */
+    public static MappedPicture open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            RasterFormat format = RasterFormat.read(channel);
+            if (format.checksum != RasterFormat.NO_CHECKSUM) {
+                RasterFormat.clearChecksum(channel);
+            }
+            return new MappedPicture(channel, format, segmentRows(format.breadth));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Creates a file holding a copy of {@code picture} and maps it.
+     * An existing file is replaced.
+     *
+     * @param picture the picture to copy, is not null
+     * @param file    the file to create, is not null
+     * @return the mapped picture
+     * @throws IOException if the file cannot be created or mapped
+     */
+    public static MappedPicture copyOf(Picture picture, Path file) throws IOException {
+        if (picture == null) {
+            throw new IllegalArgumentException("picture is null");
+        }
+        MappedPicture mapped = create(file, picture.breadth(), picture.length());
+        mapped.writeRows(0, picture);
+        return mapped;
+    }
+
+    private static int segmentRows(int breadth) {
+        return (int) Math.max(1, MAX_SEGMENT_BYTES / (4L * breadth));
+    }
+
+    /**
+     * Returns the breadth of the picture.
+     *
+     * @return the breadth of the picture (in pixels)
+     */
+    public int breadth() {
+        return breadth;
+    }
+
+    /**
+     * Returns the length of the picture.
+     *
+     * @return the length of the picture (in pixels)
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Returns the color of pixel ({@code col}, {@code row}) as a {@link java.awt.Color}.
+     *
+     * @param col the column index
+     * @param row the row index
+     * @return the color of pixel ({@code col}, {@code row})
+     * @throws IllegalArgumentException unless both {@code 0 <= col < breadth} and {@code 0 <= row < length}
+     */
+    public Color get(int col, int row) {
+        return new Color(getRGB(col, row));
+    }
+
+    /**
+     * Returns the color of pixel ({@code col}, {@code row}) as an {@code int}, in the
+     * encoding of {@link Picture#getRGB(int, int)}.
+     *
+     * @param col the column index
+     * @param row the row index
+     * @return the integer representation of the color of pixel ({@code col}, {@code row})
+     * @throws IllegalArgumentException unless both {@code 0 <= col < breadth} and {@code 0 <= row < length}
+     */
+    public int getRGB(int col, int row) {
+        validateColumnIndex(col);
+        validateRowIndex(row);
+        int y = physicalRow(row);
+        return OPAQUE | segments[y / rowsPerSegment].get((y % rowsPerSegment) * breadth + col);
+    }
+
+    /**
+     * Sets the color of pixel ({@code col}, {@code row}) to given color.
+     *
+     * @param col   the column index
+     * @param row   the row index
+     * @param color the color
+     * @throws IllegalArgumentException unless both {@code 0 <= col < breadth} and {@code 0 <= row < length}
+     * @throws IllegalArgumentException if {@code color} is {@code null}
+     */
+    public void set(int col, int row, Color color) {
+        if (color == null) {
+            throw new IllegalArgumentException("color argument is null");
+        }
+        setRGB(col, row, color.getRGB());
+    }
+
+    /**
+     * Sets the color of pixel ({@code col}, {@code row}) to given color.
+     *
+     * @param col the column index
+     * @param row the row index
+     * @param rgb the integer representation of the color
+     * @throws IllegalArgumentException unless both {@code 0 <= col < breadth} and {@code 0 <= row < length}
+     */
+    public void setRGB(int col, int row, int rgb) {
+        validateColumnIndex(col);
+        validateRowIndex(row);
+        int y = physicalRow(row);
+        segments[y / rowsPerSegment].put((y % rowsPerSegment) * breadth + col, rgb);
+    }
+
+    /**
+     * Copies the colours of every pixel in row {@code row} into {@code dst}.
+     *
+     * @param row the row index
+     * @param dst the destination array, holds at least {@code breadth} elements
+     * @return {@code dst}
+     * @throws IllegalArgumentException unless {@code 0 <= row < length}
+     * @throws IllegalArgumentException if {@code dst} is {@code null} or too small
+     */
+    public int[] getRGBRow(int row, int[] dst) {
+        return getRGBRow(row, dst, 0);
+    }
+
+    /**
+     * Copies the colours of every pixel in row {@code row} into {@code dst},
+     * starting at index {@code dstOffset}.
+     *
+     * @param row       the row index
+     * @param dst       the destination array
+     * @param dstOffset the index in {@code dst} that receives column 0
+     * @return {@code dst}
+     * @throws IllegalArgumentException unless {@code 0 <= row < length}
+     * @throws IllegalArgumentException if {@code dst} cannot hold {@code breadth} elements from {@code dstOffset}
+     */
+    public int[] getRGBRow(int row, int[] dst, int dstOffset) {
+        readSpan(row, 0, breadth, dst, dstOffset);
+        return dst;
+    }
+
+    /**
+     * Sets the colours of every pixel in row {@code row} from {@code src}.
+     *
+     * @param row the row index
+     * @param src the colours of the row, holds at least {@code breadth} elements
+     * @throws IllegalArgumentException unless {@code 0 <= row < length}
+     * @throws IllegalArgumentException if {@code src} is {@code null} or too small
+     */
+    public void setRGBRow(int row, int[] src) {
+        setRGBRow(row, src, 0);
+    }
+
+    /**
+     * Sets the colours of every pixel in row {@code row} from {@code src},
+     * starting at index {@code srcOffset}.
+     *
+     * @param row       the row index
+     * @param src       the source array
+     * @param srcOffset the index in {@code src} that holds column 0
+     * @throws IllegalArgumentException unless {@code 0 <= row < length}
+     * @throws IllegalArgumentException if {@code src} cannot hold {@code breadth} elements from {@code srcOffset}
+     */
+    public void setRGBRow(int row, int[] src, int srcOffset) {
+        writeSpan(row, 0, breadth, src, srcOffset);
+    }
+
+    /**
+     * Copies the colours of the pixels inside {@code region} into {@code dst},
+     * laid out as in {@link Picture#getRGBRegion(Quadrilateral, int[])}.
+     *
+     * @param region the region to read, is not null and lies within the picture
+     * @param dst    the destination array, or {@code null} to allocate a new one
+     * @return the array holding the region
+     * @throws IllegalArgumentException if {@code region} does not fit in the picture
+     * @throws IllegalArgumentException if {@code dst} is too small to hold the region
+     */
+    public int[] getRGBRegion(Quadrilateral region, int[] dst) {
+        validateRegion(region);
+        int w = region.xBottomRight - region.xTopLeft + 1;
+        int h = region.yBottomRight - region.yTopLeft + 1;
+        if (dst == null) {
+            dst = new int[Math.multiplyExact(w, h)];
+        }
+        validateBuffer(dst, 0, w * h);
+        for (int y = 0; y < h; y++) {
+            readSpan(region.yTopLeft + y, region.xTopLeft, w, dst, y * w);
+        }
+        return dst;
+    }
+
+    /**
+     * Sets the colours of the pixels inside {@code region} from {@code src}, which
+     * is laid out as in {@link Picture#getRGBRegion(Quadrilateral, int[])}.
+     *
+     * @param region the region to write, is not null and lies within the picture
+     * @param src    the colours of the region
+     * @throws IllegalArgumentException if {@code region} does not fit in the picture
+     * @throws IllegalArgumentException if {@code src} is {@code null} or too small
+     */
+    public void setRGBRegion(Quadrilateral region, int[] src) {
+        validateRegion(region);
+        int w = region.xBottomRight - region.xTopLeft + 1;
+        int h = region.yBottomRight - region.yTopLeft + 1;
+        validateBuffer(src, 0, w * h);
+        for (int y = 0; y < h; y++) {
+            writeSpan(region.yTopLeft + y, region.xTopLeft, w, src, y * w);
+        }
+    }
+
+    /**
+     * Copies rows {@code fromRow} (inclusive) to {@code toRow} (exclusive) into a new
+     * on-heap picture, whose row 0 is row {@code fromRow} of this picture.
+     *
+     * @param fromRow the first row to copy, {@code 0 <= fromRow < toRow}
+     * @param toRow   one past the last row to copy, {@code toRow <= length}
+     * @return the band of rows
+     * @throws IllegalArgumentException if the rows are not within the picture
+     */
+    public Picture readRows(int fromRow, int toRow) {
+        if (fromRow < 0 || toRow > length || fromRow >= toRow) {
+            throw new IllegalArgumentException("rows " + fromRow + " to " + toRow
+                + " are not within a picture of length " + length);
+        }
+        int rows = toRow - fromRow;
+        int[] band = new int[Math.multiplyExact(breadth, rows)];
+        for (int r = 0; r < rows; r++) {
+            readSpan(fromRow + r, 0, breadth, band, r * breadth);
+        }
+        return Picture.wrap(band, breadth, rows);
+    }
+
+    /**
+     * Copies every row of {@code band} into this picture, starting at row {@code fromRow}.
+     *
+     * @param fromRow the row that receives row 0 of {@code band}
+     * @param band    the rows to copy, is not null, has the breadth of this picture and
+     *                fits below {@code fromRow}
+     * @throws IllegalArgumentException if {@code band} does not fit in the picture at {@code fromRow}
+     */
+    public void writeRows(int fromRow, Picture band) {
+        if (band == null) {
+            throw new IllegalArgumentException("band is null");
+        }
+        if (band.breadth() != breadth || fromRow < 0 || fromRow + band.length() > length) {
+            throw new IllegalArgumentException("a " + band.breadth() + "-by-" + band.length()
+                + " band does not fit at row " + fromRow + " of a " + breadth + "-by-" + length + " picture");
+        }
+        int[] line = new int[breadth];
+        for (int r = 0; r < band.length(); r++) {
+            band.getRGBRow(r, line);
+            writeSpan(fromRow + r, 0, breadth, line, 0);
+        }
+    }
+
+    /**
+     * Copies the whole picture into a new on-heap picture. The picture must fit in the heap.
+     *
+     * @return a copy of this picture
+     */
+    public Picture toPicture() {
+        return readRows(0, length);
+    }
+
+    /**
+     * Writes every change made to the picture back to the file.
+     */
+    public void force() {
+        for (MappedByteBuffer buffer : mapped) {
+            buffer.force();
+        }
+    }
+
+    /**
+     * Closes the file. The mapping itself is released once the picture is no longer
+     * reachable; the picture must not be used after it is closed.
+     *
+     * @throws IOException if the file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void readSpan(int row, int col, int count, int[] dst, int dstOffset) {
+        validateRowIndex(row);
+        validateBuffer(dst, dstOffset, count);
+        int y = physicalRow(row);
+        IntBuffer view = segments[y / rowsPerSegment].duplicate();
+        view.position((y % rowsPerSegment) * breadth + col);
+        view.get(dst, dstOffset, count);
+        for (int i = dstOffset, end = dstOffset + count; i < end; i++) {
+            dst[i] |= OPAQUE;
+        }
+    }
+
+    private void writeSpan(int row, int col, int count, int[] src, int srcOffset) {
+        validateRowIndex(row);
+        validateBuffer(src, srcOffset, count);
+        int y = physicalRow(row);
+        IntBuffer view = segments[y / rowsPerSegment].duplicate();
+        view.position((y % rowsPerSegment) * breadth + col);
+        view.put(src, srcOffset, count);
+    }
+
+    private int physicalRow(int row) {
+        return isOriginUpperLeft ? row : length - row - 1;
+    }
+
+    private void validateRowIndex(int row) {
+        if (row < 0 || row >= length) {
+            throw new IllegalArgumentException(
+                "row index must be between 0 and " + (length - 1) + ": " + row);
+        }
+    }
+
+    private void validateColumnIndex(int col) {
+        if (col < 0 || col >= breadth) {
+            throw new IllegalArgumentException(
+                "column index must be between 0 and " + (breadth - 1) + ": " + col);
+        }
+    }
+
+    private void validateRegion(Quadrilateral region) {
+        if (region == null) {
+            throw new IllegalArgumentException("region is null");
+        }
+        if (region.xBottomRight >= breadth || region.yBottomRight >= length) {
+            throw new IllegalArgumentException("region does not fit in a "
+                + breadth + "-by-" + length + " picture");
+        }
+    }
+
+    private static void validateBuffer(int[] buffer, int from, int count) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer is null");
+        }
+        if (from < 0 || buffer.length - from < count) {
+            throw new IllegalArgumentException(
+                "buffer must hold " + count + " elements from index " + from);
+        }
+    }
+}
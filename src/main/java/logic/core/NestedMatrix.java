@@ -1,36 +1,61 @@
 package logic.core;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
 
 /**
- * This datatype represents a matrix of <code>double</code> values.
+ * This datatype represents an <strong>immutable</strong> matrix of <code>double</code> values.
  * <p>
- * The constant fields <code>breadth</code> and <code>length</code> provide
+ * The constant fields <code>columns</code> and <code>rows</code> provide
  * the dimensions of the matrix, and it is possible to compare two DoubleMatrices for
  * equality using a set <code>epsilon</code> value of 10^(-7).
+ * <p>
+ * The entries are held row by row in a single buffer, either on the Java heap or, for
+ * matrices made with {@link #offHeap()}, in native memory that does not add to the
+ * garbage collector's work. Element-wise operations such as {@link #plus(NestedMatrix)}
+ * and {@link #map(DoubleUnaryOperator)} walk that buffer in one pass and return a new
+ * matrix held in the same kind of memory as the instance.
  */
 public final class NestedMatrix {
     public static final double epsilon = 1e-7;
-    private double[][] matrix;
+    private final DoubleBuffer values;
     public final int columns;
     public final int rows;
 
     /*
         Abstraction Function:
             NestedMatrix represents a matrix of double-precision values.
-            The matrix has dimensions length * breadth.
+            The matrix has dimensions rows * columns, and the entry at (row, col)
+            is values.get(row * columns + col).
 
         Representation Invariant:
             rows >= 1
             columns >= 1
-            matrix.length == rows
-            matrix[0].length == columns
+            values.capacity() == rows * columns
+            values is never changed after construction, and never given out writable
      */
 
+    /**
+     * Computes the entry of a matrix at a given location.
+     */
+    @FunctionalInterface
+    public interface EntryFunction {
+        /**
+         * @param row the row of the entry, 0 <= row < rows
+         * @param col the column of the entry, 0 <= col < columns
+         * @return the entry at location (row, col)
+         */
+        double at(int row, int col);
+    }
+
     /**
      * Create an instance of NestedMatrix from a two-dimensional array.
      *
-     * @param _input is not null, and _input has at least one row and at least one column.
+     * @param _input is not null, and _input has at least one row and at least one column,
+     *               and all its rows have the same length.
      */
     public NestedMatrix(double[][] _input) {
         if (_input == null) {
@@ -47,9 +72,57 @@ public final class NestedMatrix {
             throw new IllegalArgumentException("matrix has to have at least one column");
         }
 
-        matrix = Arrays.stream(_input).map(double[]::clone).toArray(double[][]::new);
+        double[] flat = new double[size(rows, columns)];
+        for (int row = 0; row < rows; row++) {
+            if (_input[row] == null || _input[row].length != columns) {
+                throw new IllegalArgumentException("all rows of the matrix have to have the same length");
+            }
+            System.arraycopy(_input[row], 0, flat, row * columns, columns);
+        }
+        values = DoubleBuffer.wrap(flat);
+    }
+
+    private NestedMatrix(int rows, int columns, DoubleBuffer values) {
+        this.rows = rows;
+        this.columns = columns;
+        this.values = values;
+    }
+
+    /**
+     * Create an instance of NestedMatrix from its entries listed row by row.
+     *
+     * @param rows    the number of rows, >= 1
+     * @param columns the number of columns, >= 1
+     * @param entries the entries, is not null and has rows * columns entries; it is copied
+     * @return the matrix whose entry at (row, col) is entries[row * columns + col]
+     */
+    public static NestedMatrix of(int rows, int columns, double... entries) {
+        if (entries == null) {
+            throw new IllegalArgumentException("entries cannot be null");
+        }
+        if (entries.length != size(rows, columns)) {
+            throw new IllegalArgumentException("there have to be rows * columns entries");
+        }
+        return new NestedMatrix(rows, columns, DoubleBuffer.wrap(entries.clone()));
     }
 
+    /**
+     * Create an instance of NestedMatrix by computing each of its entries.
+     *
+     * @param rows    the number of rows, >= 1
+     * @param columns the number of columns, >= 1
+     * @param entry   computes the entries, is not null
+     * @return the matrix whose entry at (row, col) is entry.at(row, col)
+     */
+    public static NestedMatrix tabulate(int rows, int columns, EntryFunction entry) {
+        double[] flat = new double[size(rows, columns)];
+        for (int row = 0, i = 0; row < rows; row++) {
+            for (int col = 0; col < columns; col++, i++) {
+                flat[i] = entry.at(row, col);
+            }
+        }
+        return new NestedMatrix(rows, columns, DoubleBuffer.wrap(flat));
+    }
 
     /**
      * Return the entry at (row, col)
@@ -58,7 +131,10 @@ public final class NestedMatrix {
      * @return the entry at location (row, col)
      */
     public double get(int row, int col) {
-        return matrix[row][col];
+        if (row < 0 || row >= rows || col < 0 || col >= columns) {
+            throw new IndexOutOfBoundsException("(" + row + ", " + col + ") is outside the matrix");
+        }
+        return values.get(row * columns + col);
     }
 
     /**
@@ -77,6 +153,171 @@ public final class NestedMatrix {
         return columns;
     }
 
+    /**
+     * Obtain the same matrix held in native memory, outside the Java heap.
+     *
+     * @return a matrix equal to the instance whose entries are held off the heap;
+     * the instance itself if it is already held there
+     */
+    public NestedMatrix offHeap() {
+        if (values.isDirect()) {
+            return this;
+        }
+        DoubleBuffer direct = allocate(values.capacity(), true);
+        direct.put(values.duplicate().rewind());
+        direct.rewind();
+        return new NestedMatrix(rows, columns, direct);
+    }
+
+    /**
+     * @return true if the entries are held in native memory, outside the Java heap
+     */
+    public boolean isOffHeap() {
+        return values.isDirect();
+    }
+
+    /**
+     * Obtain a read-only view of the entries, listed row by row. Reading the view does not
+     * copy the entries.
+     *
+     * @return a read-only buffer whose entry row * columns + col is the entry at (row, col)
+     */
+    public DoubleBuffer asBuffer() {
+        return values.asReadOnlyBuffer().rewind();
+    }
+
+    /**
+     * @return a new array holding the entries listed row by row
+     */
+    public double[] toRowMajor() {
+        double[] flat = new double[values.capacity()];
+        values.duplicate().rewind().get(flat);
+        return flat;
+    }
+
+    /**
+     * @return a new two-dimensional array whose entry [row][col] is the entry at (row, col)
+     */
+    public double[][] toArray() {
+        double[][] array = new double[rows][columns];
+        DoubleBuffer reader = values.duplicate().rewind();
+        for (int row = 0; row < rows; row++) {
+            reader.get(array[row]);
+        }
+        return array;
+    }
+
+    /**
+     * Add a matrix to this one, entry by entry.
+     *
+     * @param other the matrix to add, is not null and has the dimensions of the instance
+     * @return the sum of the instance and other
+     */
+    public NestedMatrix plus(NestedMatrix other) {
+        return combine(other, (a, b) -> a + b);
+    }
+
+    /**
+     * Subtract a matrix from this one, entry by entry.
+     *
+     * @param other the matrix to subtract, is not null and has the dimensions of the instance
+     * @return the difference of the instance and other
+     */
+    public NestedMatrix minus(NestedMatrix other) {
+        return combine(other, (a, b) -> a - b);
+    }
+
+    /**
+     * Multiply this matrix by another, entry by entry (the Hadamard product).
+     *
+     * @param other the matrix to multiply by, is not null and has the dimensions of the instance
+     * @return the matrix whose entry at (row, col) is the product of the entries of the
+     * instance and other at (row, col)
+     */
+    public NestedMatrix times(NestedMatrix other) {
+        return combine(other, (a, b) -> a * b);
+    }
+
+    /**
+     * Multiply every entry by a number.
+     *
+     * @param factor the number to multiply by
+     * @return the instance scaled by factor
+     */
+    public NestedMatrix scale(double factor) {
+        return map(a -> a * factor);
+    }
+
+    /**
+     * Apply a function to every entry.
+     *
+     * @param function the function, is not null
+     * @return the matrix whose entry at (row, col) is function applied to the entry of the
+     * instance at (row, col)
+     */
+    public NestedMatrix map(DoubleUnaryOperator function) {
+        int n = values.capacity();
+        DoubleBuffer result = allocate(n, values.isDirect());
+        for (int i = 0; i < n; i++) {
+            result.put(i, function.applyAsDouble(values.get(i)));
+        }
+        return new NestedMatrix(rows, columns, result);
+    }
+
+    /**
+     * Combine this matrix with another, entry by entry.
+     *
+     * @param other    the other matrix, is not null and has the dimensions of the instance
+     * @param function combines an entry of the instance with the entry of other at the same
+     *                 location, is not null
+     * @return the matrix whose entry at (row, col) is function applied to the entries of the
+     * instance and other at (row, col)
+     */
+    public NestedMatrix combine(NestedMatrix other, DoubleBinaryOperator function) {
+        if (other == null || function == null) {
+            throw new IllegalArgumentException("arguments cannot be null");
+        }
+        if (rows != other.rows || columns != other.columns) {
+            throw new IllegalArgumentException("matrices have to have the same dimensions");
+        }
+        int n = values.capacity();
+        DoubleBuffer result = allocate(n, values.isDirect());
+        for (int i = 0; i < n; i++) {
+            result.put(i, function.applyAsDouble(values.get(i), other.values.get(i)));
+        }
+        return new NestedMatrix(rows, columns, result);
+    }
+
+    /**
+     * @return the sum of all the entries
+     */
+    public double sum() {
+        double sum = 0;
+        for (int i = 0, n = values.capacity(); i < n; i++) {
+            sum += values.get(i);
+        }
+        return sum;
+    }
+
+    /**
+     * Compute a hash of the exact entries of the matrix. Unlike {@link #hashCode()},
+     * it tells apart matrices whose entries differ by less than <code>epsilon</code>,
+     * so it suits identifying a matrix, for instance as a cache key, but not grouping
+     * matrices that are {@link #equals(Object) equal}.
+     *
+     * @return a hash of the dimensions and the entries; matrices with the same dimensions
+     * and the same entries, counting 0.0 and -0.0 as the same, have the same hash
+     */
+    public long contentHash() {
+        long hash = 31L * rows + columns;
+        for (int i = 0, n = values.capacity(); i < n; i++) {
+            // adding 0.0 turns -0.0 into 0.0
+            long bits = Double.doubleToLongBits(values.get(i) + 0.0);
+            hash = (hash ^ bits) * 0x100000001B3L;
+        }
+        return hash ^ (hash >>> 29);
+    }
+
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof NestedMatrix)) {
@@ -86,18 +327,42 @@ public final class NestedMatrix {
         if (columns != other.columns || rows != other.rows) {
             return false;
         }
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                if (Math.abs(matrix[i][j] - other.matrix[i][j]) > epsilon) {
-                    return false;
-                }
+        for (int i = 0, n = values.capacity(); i < n; i++) {
+            if (Math.abs(values.get(i) - other.values.get(i)) > epsilon) {
+                return false;
             }
         }
         return true;
     }
 
+    /**
+     * Matrices are equal when their entries are within <code>epsilon</code> of each other,
+     * which no hash of the entries can respect, so the hash depends on the dimensions only.
+     * See {@link #contentHash()} for a hash of the entries.
+     */
     @Override
     public int hashCode() {
         return columns * rows;
     }
+
+    private static int size(int rows, int columns) {
+        if (rows < 1 || columns < 1) {
+            throw new IllegalArgumentException("matrix has to have at least one row and one column");
+        }
+        try {
+            return Math.multiplyExact(rows, columns);
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("matrix has too many entries");
+        }
+    }
+
+    private static DoubleBuffer allocate(int n, boolean direct) {
+        if (!direct) {
+            return DoubleBuffer.allocate(n);
+        }
+        if (n > Integer.MAX_VALUE / Double.BYTES) {
+            throw new IllegalArgumentException("matrix is too large to hold off the heap");
+        }
+        return ByteBuffer.allocateDirect(n * Double.BYTES).order(ByteOrder.nativeOrder()).asDoubleBuffer();
+    }
 }
@@ -28,9 +28,22 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.KeyEvent;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
 
 
 /**
@@ -69,14 +82,59 @@ import java.net.URL;
  * A <em>W</em>-by-<em>H</em> picture uses ~ 4 <em>W H</em> bytes of memory,
  * since the color of each pixel is encoded as a 32-bit <code>int</code>.
  * <p>
+ * The pixels are held in a packed {@code int[]} raster that can be addressed
+ * directly through {@link #raster()}, {@link #rasterOffset()} and
+ * {@link #rasterStride()}: the pixel in physical row <em>y</em> and column
+ * <em>x</em> is stored at {@code raster()[rasterOffset() + y * rasterStride() + x]}.
+ * Physical rows are always stored top to bottom, so callers working with a
+ * lower-left origin should use {@link #rowOffset(int)} or the bulk row
+ * accessors {@link #getRGBRow(int, int[])} and {@link #setRGBRow(int, int[])},
+ * which account for the origin. The most significant byte (alpha) of a raster
+ * element is ignored; all accessors report pixels as fully opaque.
+ * <p>
+ * Besides PNG and JPEG, pictures can be saved and reloaded in a raw format with
+ * {@link #writeRaw(java.nio.file.Path)} and {@link #readRaw(java.nio.file.Path)},
+ * which stores the raster as it is and needs no encoding or decoding.
+ * <p>
  */
 
 public final class Picture implements ActionListener {
+    private static final int OPAQUE = 0xFF000000;
+    private static final int RAW_CHUNK_BYTES = 1 << 24;  // bytes moved per raw I/O chunk
+    private static final long DIGEST_PRIME_1 = 0x9E3779B185EBCA87L;
+    private static final long DIGEST_PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long DIGEST_PRIME_3 = 0x165667B19E3779F9L;
+
     private final int breadth, length;           // breadth and length
-    private BufferedImage picture;               // the rasterized picture
+    private int[] pixels;                        // the rasterized picture
+    private int offset, stride;                  // location of pixel (0, 0) and distance between rows
+    private volatile boolean shared;             // pixels may be shared with views, copy before writing
+    private BufferedImage picture;               // view of the raster, created on demand
     private JFrame frame;                      // on-screen view
     private String filename;                   // name of file
     private boolean isOriginUpperLeft = true;  // location of origin
+    private Picture[] pyramid;                 // levels 1, 2, ... built so far, or null
+    private long digest;                       // content digest, valid if hasDigest
+    private boolean hasDigest;
+
+    /*
+        Abstraction Function:
+            Represents a breadth-by-length picture whose pixel in physical row y and
+            column x has the colour pixels[offset + y * stride + x] & 0xFFFFFF.
+            If isOriginUpperLeft, logical row r is physical row r; otherwise
+            logical row r is physical row length - 1 - r.
+
+        Representation Invariant:
+            breadth >= 1, length >= 1
+            0 <= offset
+            breadth <= stride
+            offset + (length - 1) * stride + breadth <= pixels.length
+            picture is null or is backed by pixels
+            if pixels is shared with another picture created by view() or by copying, shared is true
+            if pyramid is not null, pyramid[k - 1] is level k as described in level(k),
+            for 1 <= k <= pyramid.length
+            if hasDigest, digest is the value of digest() for the current pixels
+     */
 
     /**
      * Creates a {@code breadth}-by-{@code length} picture, with {@code breadth} columns
@@ -96,12 +154,74 @@ public final class Picture implements ActionListener {
         }
         this.breadth = breadth;
         this.length = length;
-        picture = new BufferedImage(breadth, length, BufferedImage.TYPE_INT_RGB);
-        // set to TYPE_INT_ARGB here and in next constructor to support transparency
+        this.pixels = new int[Math.multiplyExact(breadth, length)];
+        this.offset = 0;
+        this.stride = breadth;
+    }
+
+    private Picture(int[] pixels, int offset, int stride, int breadth, int length) {
+        this.pixels = pixels;
+        this.offset = offset;
+        this.stride = stride;
+        this.breadth = breadth;
+        this.length = length;
     }
 
     /**
-     * Creates a new picture that is a deep copy of the argument picture.
+     * Creates a {@code breadth}-by-{@code length} picture that uses {@code data}
+     * as its raster without copying it. The pixel in column <em>x</em> and
+     * row <em>y</em> is {@code data[offset + y * stride + x]}; changes made
+     * through the picture are visible in {@code data} and vice versa.
+     *
+     * @param data    the packed RGB raster, is not null
+     * @param offset  the index of pixel (0, 0) in {@code data}, {@code >= 0}
+     * @param stride  the distance between the starts of consecutive rows, {@code >= breadth}
+     * @param breadth the breadth of the picture, {@code > 0}
+     * @param length  the length of the picture, {@code > 0}
+     * @return a picture backed by {@code data}
+     * @throws IllegalArgumentException if {@code data} is {@code null} or does not
+     *                                  hold a {@code breadth}-by-{@code length} raster with
+     *                                  the given {@code offset} and {@code stride}
+     */
+    public static Picture wrap(int[] data, int offset, int stride, int breadth, int length) {
+        if (data == null) {
+            throw new IllegalArgumentException("data is null");
+        }
+        if (breadth <= 0) {
+            throw new IllegalArgumentException("breadth must be positive");
+        }
+        if (length <= 0) {
+            throw new IllegalArgumentException("length must be positive");
+        }
+        if (offset < 0 || stride < breadth
+            || offset + (long) (length - 1) * stride + breadth > data.length) {
+            throw new IllegalArgumentException("data is too small for a " + breadth + "-by-"
+                + length + " raster with offset " + offset + " and stride " + stride);
+        }
+        return new Picture(data, offset, stride, breadth, length);
+    }
+
+    /**
+     * Creates a {@code breadth}-by-{@code length} picture backed by {@code data},
+     * with rows stored contiguously from index 0.
+     *
+     * @param data    the packed RGB raster, is not null
+     * @param breadth the breadth of the picture, {@code > 0}
+     * @param length  the length of the picture, {@code > 0}
+     * @return a picture backed by {@code data}
+     * @throws IllegalArgumentException if {@code data} cannot hold the picture
+     */
+    public static Picture wrap(int[] data, int breadth, int length) {
+        return wrap(data, 0, breadth, breadth, length);
+    }
+
+    /**
+     * Creates a new picture that is a copy of the argument picture.
+     * <p>
+     * The copy takes constant time: it shares the raster of {@code picture} until either
+     * of them is changed through one of its set methods, which then copies the pixels it
+     * shows into a raster of its own, as a {@link #view(Quadrilateral) view} does. The
+     * copy has the upper-left or lower-left origin of {@code picture}.
      *
      * @param picture the picture to copy
      * @throws IllegalArgumentException if {@code picture} is {@code null}
@@ -113,14 +233,18 @@ public final class Picture implements ActionListener {
 
         breadth = picture.breadth();
         length = picture.length();
-        this.picture = new BufferedImage(breadth, length, BufferedImage.TYPE_INT_RGB);
         filename = picture.filename;
-        isOriginUpperLeft = picture.isOriginUpperLeft;
-        for (int col = 0; col < breadth(); col++) {
-            for (int row = 0; row < length(); row++) {
-                this.picture.setRGB(col, row, picture.picture.getRGB(col, row));
-            }
+        synchronized (picture) {
+            isOriginUpperLeft = picture.isOriginUpperLeft;
+            pixels = picture.pixels;
+            offset = picture.offset;
+            stride = picture.stride;
+            digest = picture.digest;
+            hasDigest = picture.hasDigest;
+            pyramid = picture.pyramid;
+            picture.shared = true;
         }
+        shared = true;
     }
 
     /**
@@ -136,6 +260,7 @@ public final class Picture implements ActionListener {
         }
 
         this.filename = name;
+        BufferedImage picture;
         try {
             // try to read from file in working directory
             File file = new File(name);
@@ -162,13 +287,15 @@ public final class Picture implements ActionListener {
             if (picture == null) {
                 throw new IllegalArgumentException("could not read picture: " + name);
             }
-
-            breadth = picture.getWidth(null);
-            length = picture.getHeight(null);
         }
         catch (IOException ioe) {
             throw new IllegalArgumentException("could not open picture: " + name, ioe);
         }
+        breadth = picture.getWidth(null);
+        length = picture.getHeight(null);
+        offset = 0;
+        stride = breadth;
+        pixels = decode(picture);
     }
 
 
@@ -184,6 +311,7 @@ public final class Picture implements ActionListener {
             throw new IllegalArgumentException("constructor argument is null");
         }
 
+        BufferedImage picture;
         try {
             picture = ImageIO.read(file);
         }
@@ -195,9 +323,22 @@ public final class Picture implements ActionListener {
         }
         breadth = picture.getWidth(null);
         length = picture.getHeight(null);
+        offset = 0;
+        stride = breadth;
+        pixels = decode(picture);
         filename = file.getName();
     }
 
+    /**
+     * Converts a decoded image of any type into a packed RGB raster
+     * using a single bulk colour conversion.
+     */
+    private static int[] decode(BufferedImage image) {
+        int w = image.getWidth(null);
+        int h = image.getHeight(null);
+        return image.getRGB(0, 0, w, h, null, 0, w);
+    }
+
     /**
      * Returns the monochrome luminance of the given color as an intensity
      * between 0.0 and 255.0 using the NTSC formula
@@ -218,6 +359,33 @@ public final class Picture implements ActionListener {
         return 0.299 * r + 0.587 * g + 0.114 * b;
     }
 
+    /**
+     * Returns the monochrome luminance of a packed RGB colour, rounded to the nearest
+     * integer exactly as {@link #toGray(Color)} rounds {@link #intensity(Color)}.
+     * <p>
+     * The luminance is summed in fixed point by {@link LuminanceWeights#NTSC}, which
+     * falls back to the floating-point formula only near a halfway point between two
+     * integers, so that both methods always agree.
+     *
+     * @param rgb the colour, with red, green and blue in the low 24 bits
+     * @return the rounded luminance of {@code rgb}, between 0 and 255
+     */
+    public static int luminance(int rgb) {
+        return (int) LuminanceWeights.NTSC.round((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+    }
+
+    /**
+     * Returns the grayscale version of a packed RGB colour, rounded in the same way as
+     * {@link #toGray(Color)}, without creating any {@code Color} objects.
+     *
+     * @param rgb the colour to convert, with red, green and blue in the low 24 bits
+     * @return the packed RGB encoding of the gray level closest to the luminance of {@code rgb}
+     */
+    public static int toGray(int rgb) {
+        int y = luminance(rgb);
+        return OPAQUE | (y << 16) | (y << 8) | y;
+    }
+
     /**
      * Returns a grayscale version of the given color as a {@code Color} object.
      *
@@ -263,11 +431,28 @@ public final class Picture implements ActionListener {
      * @return the {@code JLabel}
      */
     public JLabel getJLabel() {
+        ImageIcon icon = new ImageIcon(toBufferedImage());
+        return new JLabel(icon);
+    }
+
+    /**
+     * Returns a {@link BufferedImage} that shares this picture's raster, so that
+     * it reflects later changes to the picture without any copying.
+     * Rows of the image are physical rows, with the first row at the top.
+     *
+     * @return a {@code BufferedImage} view of this picture
+     */
+    private BufferedImage toBufferedImage() {
         if (picture == null) {
-            return null;         // no picture available
+            int[] masks = {0xFF0000, 0xFF00, 0xFF};
+            DataBufferInt buffer = new DataBufferInt(pixels, pixels.length - offset, offset);
+            SinglePixelPackedSampleModel model = new SinglePixelPackedSampleModel(
+                buffer.getDataType(), breadth, length, stride, masks);
+            WritableRaster raster = Raster.createWritableRaster(model, buffer, null);
+            DirectColorModel colorModel = new DirectColorModel(24, masks[0], masks[1], masks[2]);
+            picture = new BufferedImage(colorModel, raster, false, null);
         }
-        ImageIcon icon = new ImageIcon(picture);
-        return new JLabel(icon);
+        return picture;
     }
 
     /**
@@ -275,6 +460,7 @@ public final class Picture implements ActionListener {
      */
     public void setOriginUpperLeft() {
         isOriginUpperLeft = true;
+        changed();
     }
 
     /**
@@ -282,6 +468,7 @@ public final class Picture implements ActionListener {
      */
     public void setOriginLowerLeft() {
         isOriginUpperLeft = false;
+        changed();
     }
 
     /**
@@ -341,6 +528,55 @@ public final class Picture implements ActionListener {
         return breadth;
     }
 
+    /**
+     * Returns the packed RGB raster holding the pixels of this picture. The array is
+     * shared, not copied: writes to it change the picture. A picture that shares its
+     * raster with a {@link #view(Quadrilateral) view} or a {@link #Picture(Picture) copy}
+     * copies it before its set methods change it, but writes made directly into the
+     * raster are seen by both.
+     *
+     * @return the raster of this picture
+     */
+    public int[] raster() {
+        return pixels;
+    }
+
+    /**
+     * Returns the index in {@link #raster()} of the first pixel of the top physical row.
+     *
+     * @return the offset of the raster
+     */
+    public int rasterOffset() {
+        return offset;
+    }
+
+    /**
+     * Returns the distance in {@link #raster()} between the first pixels of two
+     * consecutive rows. The stride is at least {@link #breadth()}.
+     *
+     * @return the stride of the raster
+     */
+    public int rasterStride() {
+        return stride;
+    }
+
+    /**
+     * Returns the index in {@link #raster()} of the pixel in column 0 of the given row,
+     * taking the location of the origin into account.
+     *
+     * @param row the row index
+     * @return the index of pixel (0, {@code row}) in the raster
+     * @throws IllegalArgumentException unless {@code 0 <= row < length}
+     */
+    public int rowOffset(int row) {
+        validateRowIndex(row);
+        return offset + physicalRow(row) * stride;
+    }
+
+    private int physicalRow(int row) {
+        return isOriginUpperLeft ? row : length - row - 1;
+    }
+
     private void validateRowIndex(int row) {
         if (row < 0 || row >= length()) {
             throw new IllegalArgumentException(
@@ -383,10 +619,150 @@ public final class Picture implements ActionListener {
     public int getRGB(int col, int row) {
         validateColumnIndex(col);
         validateRowIndex(row);
-        if (isOriginUpperLeft) {
-            return picture.getRGB(col, row);
-        } else {
-            return picture.getRGB(col, length - row - 1);
+        return OPAQUE | pixels[offset + physicalRow(row) * stride + col];
+    }
+
+    /**
+     * Copies the colours of every pixel in row {@code row} into {@code dst},
+     * in the same encoding as {@link #getRGB(int, int)}.
+     *
+     * @param row the row index
+     * @param dst the destination array with at least {@code breadth} elements,
+     *            or {@code null} to allocate a new one
+     * @return the array holding the row
+     * @throws IllegalArgumentException unless {@code 0 <= row < length}
+     * @throws IllegalArgumentException if {@code dst} is shorter than {@code breadth}
+     */
+    public int[] getRGBRow(int row, int[] dst) {
+        return getRGBRow(row, dst, 0);
+    }
+
+    /**
+     * Copies the colours of every pixel in row {@code row} into {@code dst},
+     * starting at index {@code dstOffset}.
+     *
+     * @param row       the row index
+     * @param dst       the destination array, or {@code null} to allocate a new one
+     * @param dstOffset the index in {@code dst} receiving pixel (0, {@code row})
+     * @return the array holding the row
+     * @throws IllegalArgumentException unless {@code 0 <= row < length}
+     * @throws IllegalArgumentException if {@code dst} cannot hold {@code breadth}
+     *                                  elements from {@code dstOffset}
+     */
+    public int[] getRGBRow(int row, int[] dst, int dstOffset) {
+        validateRowIndex(row);
+        if (dst == null) {
+            dst = new int[dstOffset + breadth];
+        }
+        validateBuffer(dst, dstOffset, breadth);
+        int src = offset + physicalRow(row) * stride;
+        for (int col = 0; col < breadth; col++) {
+            dst[dstOffset + col] = OPAQUE | pixels[src + col];
+        }
+        return dst;
+    }
+
+    /**
+     * Sets the colours of every pixel in row {@code row} from {@code src}.
+     *
+     * @param row the row index
+     * @param src the colours of the row, with at least {@code breadth} elements
+     * @throws IllegalArgumentException unless {@code 0 <= row < length}
+     * @throws IllegalArgumentException if {@code src} is {@code null} or shorter than {@code breadth}
+     */
+    public void setRGBRow(int row, int[] src) {
+        setRGBRow(row, src, 0);
+    }
+
+    /**
+     * Sets the colours of every pixel in row {@code row} from {@code src},
+     * starting at index {@code srcOffset}.
+     *
+     * @param row       the row index
+     * @param src       the colours of the row
+     * @param srcOffset the index in {@code src} holding the colour of pixel (0, {@code row})
+     * @throws IllegalArgumentException unless {@code 0 <= row < length}
+     * @throws IllegalArgumentException if {@code src} is {@code null} or does not hold
+     *                                  {@code breadth} elements from {@code srcOffset}
+     */
+    public void setRGBRow(int row, int[] src, int srcOffset) {
+        validateRowIndex(row);
+        validateBuffer(src, srcOffset, breadth);
+        beforeWrite();
+        System.arraycopy(src, srcOffset, pixels, offset + physicalRow(row) * stride, breadth);
+        changed();
+    }
+
+    /**
+     * Copies the colours of the pixels inside {@code region} into {@code dst}.
+     * The region includes both its top-left and bottom-right corners, and the
+     * pixels are stored row by row, so that pixel ({@code col}, {@code row}) ends up at
+     * {@code dst[(row - region.yTopLeft) * w + (col - region.xTopLeft)]} where
+     * {@code w = region.xBottomRight - region.xTopLeft + 1}.
+     *
+     * @param region the region to read, is not null and lies within the picture
+     * @param dst    the destination array, or {@code null} to allocate a new one
+     * @return the array holding the region
+     * @throws IllegalArgumentException if {@code region} does not fit in the picture
+     * @throws IllegalArgumentException if {@code dst} is too small to hold the region
+     */
+    public int[] getRGBRegion(Quadrilateral region, int[] dst) {
+        validateRegion(region);
+        int w = region.xBottomRight - region.xTopLeft + 1;
+        int h = region.yBottomRight - region.yTopLeft + 1;
+        if (dst == null) {
+            dst = new int[w * h];
+        }
+        validateBuffer(dst, 0, w * h);
+        for (int y = 0; y < h; y++) {
+            int src = offset + physicalRow(region.yTopLeft + y) * stride + region.xTopLeft;
+            int out = y * w;
+            for (int x = 0; x < w; x++) {
+                dst[out + x] = OPAQUE | pixels[src + x];
+            }
+        }
+        return dst;
+    }
+
+    /**
+     * Sets the colours of the pixels inside {@code region} from {@code src}, which
+     * is laid out as described in {@link #getRGBRegion(Quadrilateral, int[])}.
+     *
+     * @param region the region to write, is not null and lies within the picture
+     * @param src    the colours of the region
+     * @throws IllegalArgumentException if {@code region} does not fit in the picture
+     * @throws IllegalArgumentException if {@code src} is {@code null} or too small
+     */
+    public void setRGBRegion(Quadrilateral region, int[] src) {
+        validateRegion(region);
+        int w = region.xBottomRight - region.xTopLeft + 1;
+        int h = region.yBottomRight - region.yTopLeft + 1;
+        validateBuffer(src, 0, w * h);
+        beforeWrite();
+        for (int y = 0; y < h; y++) {
+            System.arraycopy(src, y * w, pixels,
+                offset + physicalRow(region.yTopLeft + y) * stride + region.xTopLeft, w);
+        }
+        changed();
+    }
+
+    private void validateRegion(Quadrilateral region) {
+        if (region == null) {
+            throw new IllegalArgumentException("region is null");
+        }
+        if (region.xBottomRight >= breadth || region.yBottomRight >= length) {
+            throw new IllegalArgumentException("region does not fit in a "
+                + breadth + "-by-" + length + " picture");
+        }
+    }
+
+    private static void validateBuffer(int[] buffer, int from, int count) {
+        if (buffer == null) {
+            throw new IllegalArgumentException("buffer is null");
+        }
+        if (from < 0 || buffer.length - from < count) {
+            throw new IllegalArgumentException(
+                "buffer must hold " + count + " elements from index " + from);
         }
     }
 
@@ -420,11 +796,203 @@ public final class Picture implements ActionListener {
     public void setRGB(int col, int row, int rgb) {
         validateColumnIndex(col);
         validateRowIndex(row);
-        if (isOriginUpperLeft) {
-            picture.setRGB(col, row, rgb);
-        } else {
-            picture.setRGB(col, length - row - 1, rgb);
+        beforeWrite();
+        pixels[offset + physicalRow(row) * stride + col] = rgb;
+        changed();
+    }
+
+    /**
+     * Returns a view of a region of this picture. The view shares the raster of this
+     * picture instead of copying it, so creating it takes constant time and memory,
+     * whatever the size of the region; pixel (<em>col</em>, <em>row</em>) of the view is
+     * pixel ({@code region.xTopLeft} + <em>col</em>, {@code region.yTopLeft} + <em>row</em>)
+     * of this picture. The view has the origin of this picture.
+     * <p>
+     * The view and this picture behave as separate pictures: the first time either is
+     * changed through one of its set methods, it copies the pixels it shows into a raster
+     * of its own, so that the change is not seen by the other.
+     *
+     * @param region the region to show, is not null and lies within the picture
+     * @return a picture of the region, sharing the raster of this picture
+     * @throws IllegalArgumentException if {@code region} does not fit in the picture
+     */
+    public Picture view(Quadrilateral region) {
+        validateRegion(region);
+        int w = region.xBottomRight - region.xTopLeft + 1;
+        int h = region.yBottomRight - region.yTopLeft + 1;
+        synchronized (this) {
+            // the physical row of the top of the view: the region's bottom row if the origin is lower left
+            int top = physicalRow(isOriginUpperLeft ? region.yTopLeft : region.yBottomRight);
+            Picture view = new Picture(pixels, offset + top * stride + region.xTopLeft, stride, w, h);
+            view.isOriginUpperLeft = isOriginUpperLeft;
+            view.shared = true;
+            shared = true;
+            return view;
+        }
+    }
+
+    /**
+     * Gives this picture a raster of its own if it may be sharing one with a
+     * {@link #view(Quadrilateral) view} or a {@link #Picture(Picture) copy}. The pixels
+     * do not change.
+     * <p>
+     * The first set method called on a shared picture replaces its raster, which threads
+     * reading the picture at the same time may not see consistently. Code that changes a
+     * picture from several threads while also reading it, such as an operation that writes
+     * its result over its input band by band, calls this method first, on one thread.
+     */
+    public void ensureOwnRaster() {
+        beforeWrite();
+    }
+
+    /**
+     * Give this picture a raster of its own if it may be sharing one with a view.
+     */
+    private void beforeWrite() {
+        if (shared) {
+            synchronized (this) {
+                if (shared) {
+                    int[] copy = new int[breadth * length];
+                    for (int y = 0; y < length; y++) {
+                        System.arraycopy(pixels, offset + y * stride, copy, y * breadth, breadth);
+                    }
+                    pixels = copy;
+                    offset = 0;
+                    stride = breadth;
+                    picture = null;
+                    shared = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget everything derived from the pixels, because they have changed.
+     */
+    private void changed() {
+        pyramid = null;
+        hasDigest = false;
+    }
+
+    /**
+     * Returns a 64-bit digest of the content of this picture. Pictures that are
+     * {@link #equals(Object) equal} have the same digest, whatever their origin or raster
+     * layout; pictures that differ have the same digest with a probability of about
+     * 2<sup>-64</sup>, so a digest can key a cache of results computed from a picture.
+     * The digest is not cryptographic and must not be relied on against pictures crafted
+     * to collide.
+     * <p>
+     * The digest is computed in a single pass over the raster, and kept until the picture
+     * is changed through one of its set methods or its origin is changed. As with
+     * {@link #level(int)}, changes written directly into the raster are not noticed.
+     *
+     * @return the digest of the breadth, length and colours of this picture
+     */
+    public synchronized long digest() {
+        if (!hasDigest) {
+            long h = DIGEST_PRIME_1 ^ (((long) breadth << 32) | length);
+            for (int row = 0; row < length; row++) {
+                int start = offset + physicalRow(row) * stride;
+                long a = DIGEST_PRIME_2;
+                long b = DIGEST_PRIME_3;
+                int col = 0;
+                for (; col + 3 < breadth; col += 4) {
+                    a = digestRound(a, ((long) (pixels[start + col] & 0xFFFFFF) << 32)
+                        | (pixels[start + col + 1] & 0xFFFFFF));
+                    b = digestRound(b, ((long) (pixels[start + col + 2] & 0xFFFFFF) << 32)
+                        | (pixels[start + col + 3] & 0xFFFFFF));
+                }
+                for (; col < breadth; col++) {
+                    a = digestRound(a, pixels[start + col] & 0xFFFFFF);
+                }
+                h = digestRound(h, Long.rotateLeft(a, 7) + Long.rotateLeft(b, 12));
+            }
+            // spread every input bit over the whole digest
+            h ^= h >>> 33;
+            h *= DIGEST_PRIME_2;
+            h ^= h >>> 29;
+            h *= DIGEST_PRIME_3;
+            h ^= h >>> 32;
+            digest = h;
+            hasDigest = true;
+        }
+        return digest;
+    }
+
+    private static long digestRound(long accumulator, long value) {
+        return Long.rotateLeft(accumulator + value * DIGEST_PRIME_2, 31) * DIGEST_PRIME_1;
+    }
+
+    /**
+     * Returns the number of levels in the pyramid of this picture, from the picture
+     * itself down to a single pixel.
+     *
+     * @return 1 + the number of halvings it takes to reduce the larger dimension to 1
+     */
+    public int levels() {
+        int larger = Math.max(breadth, length);
+        return 33 - Integer.numberOfLeadingZeros(larger - 1);
+    }
+
+    /**
+     * Returns a level of the pyramid of this picture. Level 0 is this picture; level
+     * <em>k</em> + 1 is level <em>k</em> with its breadth and length halved, rounding up,
+     * where each pixel has the rounded mean of each colour channel of the 2-by-2 pixels
+     * (fewer at the right and bottom edges) that it covers. Levels always use the
+     * upper-left origin and show the picture the way its current origin does.
+     * <p>
+     * Levels are built when they are first asked for, one at a time from the level below,
+     * and kept with this picture until it is changed through one of its set methods or
+     * its origin is changed. Changes written directly into {@link #raster()}, or into an
+     * array shared through {@link #wrap(int[], int, int)}, are not noticed: a picture
+     * changed that way should be copied before its levels are asked for again.
+     * Levels are shared, and must not be changed.
+     *
+     * @param level the level, {@code 0 <= level < levels()}
+     * @return the picture at that level
+     * @throws IllegalArgumentException unless {@code 0 <= level < levels()}
+     */
+    public synchronized Picture level(int level) {
+        if (level < 0 || level >= levels()) {
+            throw new IllegalArgumentException("level must be between 0 and " + (levels() - 1));
+        }
+        if (level == 0) {
+            return this;
         }
+        int built = pyramid == null ? 0 : pyramid.length;
+        if (built < level) {
+            pyramid = pyramid == null ? new Picture[level] : Arrays.copyOf(pyramid, level);
+            for (int k = built + 1; k <= level; k++) {
+                pyramid[k - 1] = (k == 1 ? this : pyramid[k - 2]).halve();
+            }
+        }
+        return pyramid[level - 1];
+    }
+
+    /**
+     * Returns this picture with its breadth and length halved, as described in {@link #level(int)}.
+     */
+    private Picture halve() {
+        int halfBreadth = (breadth + 1) / 2;
+        int halfLength = (length + 1) / 2;
+        Picture half = new Picture(halfBreadth, halfLength);
+        for (int row = 0; row < halfLength; row++) {
+            int top = rowOffset(2 * row);
+            int bottom = 2 * row + 1 < length ? rowOffset(2 * row + 1) : top;
+            int out = half.rowOffset(row);
+            for (int col = 0; col < halfBreadth; col++) {
+                int left = 2 * col;
+                int right = left + 1 < breadth ? left + 1 : left;
+                int p = pixels[top + left], q = pixels[top + right];
+                int s = pixels[bottom + left], t = pixels[bottom + right];
+                // the same pixel may be counted twice at the edges, which leaves the mean unchanged
+                int r = (((p >> 16) & 0xFF) + ((q >> 16) & 0xFF) + ((s >> 16) & 0xFF) + ((t >> 16) & 0xFF) + 2) >> 2;
+                int g = (((p >> 8) & 0xFF) + ((q >> 8) & 0xFF) + ((s >> 8) & 0xFF) + ((t >> 8) & 0xFF) + 2) >> 2;
+                int b = ((p & 0xFF) + (q & 0xFF) + (s & 0xFF) + (t & 0xFF) + 2) >> 2;
+                half.pixels[out + col] = (r << 16) | (g << 8) | b;
+            }
+        }
+        return half;
     }
 
     /**
@@ -451,9 +1019,11 @@ public final class Picture implements ActionListener {
         if (this.length() != that.length()) {
             return false;
         }
-        for (int col = 0; col < breadth(); col++) {
-            for (int row = 0; row < length(); row++) {
-                if (this.getRGB(col, row) != that.getRGB(col, row)) {
+        for (int row = 0; row < length; row++) {
+            int a = this.offset + this.physicalRow(row) * this.stride;
+            int b = that.offset + that.physicalRow(row) * that.stride;
+            for (int col = 0; col < breadth; col++) {
+                if (((this.pixels[a + col] ^ that.pixels[b + col]) & 0xFFFFFF) != 0) {
                     return false;
                 }
             }
@@ -473,13 +1043,9 @@ public final class Picture implements ActionListener {
         StringBuilder sb = new StringBuilder();
         sb.append(breadth + "-by-" + length + " picture (RGB values given in hex)\n");
         for (int row = 0; row < length; row++) {
+            int start = offset + physicalRow(row) * stride;
             for (int col = 0; col < breadth; col++) {
-                int rgb = 0;
-                if (isOriginUpperLeft) {
-                    rgb = picture.getRGB(col, row);
-                } else {
-                    rgb = picture.getRGB(col, length - row - 1);
-                }
+                int rgb = pixels[start + col];
                 sb.append(String.format("#%06X ", rgb & 0xFFFFFF));
             }
             sb.append("\n");
@@ -489,6 +1055,7 @@ public final class Picture implements ActionListener {
 
     /**
      * This operation is not supported because pictures are mutable.
+     * Use {@link #digest()} to key a cache on the content of a picture.
      *
      * @return does not return a value
      * @throws UnsupportedOperationException if called
@@ -499,8 +1066,9 @@ public final class Picture implements ActionListener {
     }
 
     /**
-     * Saves the picture to a file in either PNG or JPEG format.
-     * The filetype extension must be either .png or .jpg.
+     * Saves the picture to a file in either PNG or JPEG format, or in the raw
+     * format of {@link #writeRaw(Path)}.
+     * The filetype extension must be either .png, .jpg or .raw.
      *
      * @param name the name of the file
      * @throws IllegalArgumentException if {@code name} is {@code null}
@@ -514,7 +1082,8 @@ public final class Picture implements ActionListener {
     }
 
     /**
-     * Saves the picture to a file in a PNG or JPEG picture format.
+     * Saves the picture to a file in a PNG or JPEG picture format, or in the raw
+     * format of {@link #writeRaw(Path)} if the name of the file ends in .raw.
      *
      * @param file the file
      * @throws IllegalArgumentException if {@code file} is {@code null}
@@ -528,15 +1097,120 @@ public final class Picture implements ActionListener {
             frame.setTitle(filename);
         }
         String suffix = filename.substring(filename.lastIndexOf('.') + 1);
-        if ("jpg".equalsIgnoreCase(suffix) || "png".equalsIgnoreCase(suffix)) {
+        if ("jpg".equalsIgnoreCase(suffix) || "png".equalsIgnoreCase(suffix)
+            || "raw".equalsIgnoreCase(suffix)) {
             try {
-                ImageIO.write(picture, suffix, file);
+                write(file.toPath());
             }
             catch (IOException e) {
                 e.printStackTrace();
             }
         } else {
-            System.out.println("Error: filename must end in .jpg or .png");
+            System.out.println("Error: filename must end in .jpg, .png or .raw");
+        }
+    }
+
+    /**
+     * Writes the picture to a file in PNG, JPEG or raw format, chosen by the extension
+     * of the file name. Unlike {@link #save(File)}, failures are reported to the caller.
+     *
+     * @param file the file to write, is not null and ends in .png, .jpg or .raw
+     * @throws IllegalArgumentException if the extension is not .png, .jpg or .raw
+     * @throws IOException              if the file cannot be written
+     */
+    public void write(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("argument to write() is null");
+        }
+        String name = file.getFileName().toString();
+        String suffix = name.substring(name.lastIndexOf('.') + 1);
+        if ("raw".equalsIgnoreCase(suffix)) {
+            writeRaw(file);
+        } else if ("jpg".equalsIgnoreCase(suffix) || "png".equalsIgnoreCase(suffix)) {
+            if (!ImageIO.write(toBufferedImage(), suffix, file.toFile())) {
+                throw new IOException("no writer for format: " + suffix);
+            }
+        } else {
+            throw new IllegalArgumentException("filename must end in .jpg, .png or .raw: " + name);
+        }
+    }
+
+    /**
+     * Writes the picture to a file in a raw, uncompressed format: a short header holding
+     * the breadth, length, origin, pixel layout and a checksum of the pixels, followed by
+     * the packed pixels, four bytes each. Nothing is encoded, so writing and reading the
+     * file back with {@link #readRaw(Path)} is limited only by the speed of the disk, and
+     * the file can also be mapped directly as the raster of a {@link MappedPicture}.
+     * An existing file is replaced.
+     *
+     * @param file the file to write, is not null
+     * @throws IOException if the file cannot be written
+     */
+    public void writeRaw(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("argument to writeRaw() is null");
+        }
+        int rowsPerChunk = (int) Math.max(1, RAW_CHUNK_BYTES / (4L * breadth));
+        ByteBuffer chunk = ByteBuffer.allocateDirect(4 * breadth * Math.min(rowsPerChunk, length))
+            .order(RasterFormat.ORDER);
+        IntBuffer ints = chunk.asIntBuffer();
+        CRC32C crc = new CRC32C();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long position = RasterFormat.HEADER_BYTES;
+            for (int y = 0; y < length; y += rowsPerChunk) {
+                int rows = Math.min(rowsPerChunk, length - y);
+                ints.clear();
+                for (int r = 0; r < rows; r++) {
+                    ints.put(pixels, offset + (y + r) * stride, breadth);
+                }
+                chunk.clear().limit(4 * breadth * rows);
+                crc.update(chunk.duplicate());
+                while (chunk.hasRemaining()) {
+                    position += channel.write(chunk, position);
+                }
+            }
+            // the header goes last, so that an interrupted write leaves no valid checksum
+            new RasterFormat(breadth, length, isOriginUpperLeft,
+                RasterFormat.checksum(crc.getValue())).write(channel);
+        }
+    }
+
+    /**
+     * Reads a picture from a file written by {@link #writeRaw(Path)}. The pixels are
+     * mapped from the file and copied into the raster in bulk, with no decoding.
+     *
+     * @param file the file to read, is not null
+     * @return the picture held by the file, with the origin it was written with
+     * @throws IOException if the file cannot be read, is not a raw picture file, or does
+     *                     not match its checksum
+     */
+    public static Picture readRaw(Path file) throws IOException {
+        if (file == null) {
+            throw new IllegalArgumentException("argument to readRaw() is null");
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            RasterFormat format = RasterFormat.read(channel);
+            int breadth = format.breadth;
+            int length = format.length;
+            int[] pixels = new int[Math.multiplyExact(breadth, length)];
+            int rowsPerChunk = (int) Math.max(1, RAW_CHUNK_BYTES / (4L * breadth));
+            CRC32C crc = new CRC32C();
+            for (int y = 0; y < length; y += rowsPerChunk) {
+                int rows = Math.min(rowsPerChunk, length - y);
+                MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY,
+                    RasterFormat.HEADER_BYTES + 4L * breadth * y, 4L * breadth * rows);
+                chunk.order(RasterFormat.ORDER).asIntBuffer().get(pixels, y * breadth, breadth * rows);
+                crc.update(chunk);
+            }
+            if (format.checksum != RasterFormat.NO_CHECKSUM
+                && format.checksum != RasterFormat.checksum(crc.getValue())) {
+                throw new IOException("raw picture file does not match its checksum: " + file);
+            }
+            Picture picture = new Picture(pixels, 0, breadth, breadth, length);
+            picture.isOriginUpperLeft = format.originUpperLeft;
+            picture.filename = file.getFileName().toString();
+            return picture;
         }
     }
 
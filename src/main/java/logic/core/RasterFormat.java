@@ -0,0 +1,164 @@
+package logic.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * The layout of raw raster files, shared by {@link MappedPicture} and the raw
+ * persistence of {@link Picture}.
+ * <p>
+ * A raster file starts with a {@value #HEADER_BYTES}-byte header, followed by the pixels
+ * row by row from the top row down, one little-endian 32-bit <code>int</code> per pixel
+ * in the encoding of {@link Picture#getRGB(int, int)}. All header fields are little-endian:
+ * <pre>
+ *  offset  size  field
+ *       0     4  magic, the bytes "BIPR"
+ *       4     2  version, currently 1
+ *       6     1  origin, 0 for upper left and 1 for lower left
+ *       7     1  layout, 0 for packed RGB ints
+ *       8     4  breadth
+ *      12     4  length
+ *      16     8  checksum of the pixel bytes, or 0 if none was recorded
+ *                (the CRC-32C of the pixel bytes, with bit 32 set)
+ *      24     8  reserved, 0
+ * </pre>
+ */
+final class RasterFormat {
+    static final int HEADER_BYTES = 32;
+    static final int MAGIC = 0x52504942;    // "BIPR" read as a little-endian int
+    static final short VERSION = 1;
+    static final byte ORIGIN_UPPER_LEFT = 0;
+    static final byte ORIGIN_LOWER_LEFT = 1;
+    static final byte LAYOUT_PACKED_RGB = 0;
+    static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    static final long NO_CHECKSUM = 0;
+    private static final int CHECKSUM_OFFSET = 16;
+
+    final int breadth;
+    final int length;
+    final boolean originUpperLeft;
+    final long checksum;
+
+    /*
+        Abstraction Function:
+            Represents the header of a raster file describing a breadth-by-length
+            picture with the given origin and pixel checksum.
+
+        Representation Invariant:
+            breadth >= 1, length >= 1
+     */
+
+    RasterFormat(int breadth, int length, boolean originUpperLeft, long checksum) {
+        if (breadth <= 0 || length <= 0) {
+            throw new IllegalArgumentException("breadth and length must be positive");
+        }
+        this.breadth = breadth;
+        this.length = length;
+        this.originUpperLeft = originUpperLeft;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Obtain the size of a raster file with this header.
+     *
+     * @return the number of bytes in the file
+     */
+    long fileBytes() {
+        return HEADER_BYTES + 4L * breadth * length;
+    }
+
+    /**
+     * Write this header at the start of a file.
+     *
+     * @param channel the file, is open for writing
+     * @throws IOException if the header cannot be written
+     */
+    void write(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+        header.putInt(MAGIC)
+            .putShort(VERSION)
+            .put(originUpperLeft ? ORIGIN_UPPER_LEFT : ORIGIN_LOWER_LEFT)
+            .put(LAYOUT_PACKED_RGB)
+            .putInt(breadth)
+            .putInt(length)
+            .putLong(checksum)
+            .putLong(0);
+        header.flip();
+        long position = 0;
+        while (header.hasRemaining()) {
+            position += channel.write(header, position);
+        }
+    }
+
+    /**
+     * Read the header at the start of a file.
+     *
+     * @param channel the file, is open for reading
+     * @return the header
+     * @throws IOException if the file is not a raster file this version understands
+     */
+    static RasterFormat read(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ORDER);
+        long position = 0;
+        while (header.hasRemaining()) {
+            int read = channel.read(header, position);
+            if (read < 0) {
+                throw new IOException("file is too short to be a raster file");
+            }
+            position += read;
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new IOException("not a raster file");
+        }
+        short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException("unsupported raster file version: " + version);
+        }
+        byte origin = header.get();
+        byte layout = header.get();
+        if (origin != ORIGIN_UPPER_LEFT && origin != ORIGIN_LOWER_LEFT) {
+            throw new IOException("invalid origin: " + origin);
+        }
+        if (layout != LAYOUT_PACKED_RGB) {
+            throw new IOException("unsupported raster layout: " + layout);
+        }
+        int breadth = header.getInt();
+        int length = header.getInt();
+        long checksum = header.getLong();
+        if (breadth <= 0 || length <= 0) {
+            throw new IOException("invalid dimensions: " + breadth + "-by-" + length);
+        }
+        RasterFormat format = new RasterFormat(breadth, length, origin == ORIGIN_UPPER_LEFT, checksum);
+        if (channel.size() < format.fileBytes()) {
+            throw new IOException("raster file is truncated");
+        }
+        return format;
+    }
+
+    /**
+     * Convert the CRC-32C of the pixel bytes into the value stored in the header.
+     *
+     * @param crc the CRC-32C of the pixel bytes
+     * @return the checksum field, which is never {@link #NO_CHECKSUM}
+     */
+    static long checksum(long crc) {
+        return (1L << 32) | (crc & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Mark a file as having no checksum, because its pixels are about to change.
+     *
+     * @param channel the file, is open for writing
+     * @throws IOException if the header cannot be written
+     */
+    static void clearChecksum(FileChannel channel) throws IOException {
+        ByteBuffer field = ByteBuffer.allocate(8).order(ORDER).putLong(0, NO_CHECKSUM);
+        long position = CHECKSUM_OFFSET;
+        while (field.hasRemaining()) {
+            position += channel.write(field, position);
+        }
+    }
+}
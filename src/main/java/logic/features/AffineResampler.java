@@ -0,0 +1,164 @@
+package logic.features;
+
+import logic.core.Picture;
+
+/**
+ * Resamples a picture through an {@link Affine} map by inverse mapping.
+ * <p>
+ * The source picture's centre (breadth / 2, length / 2) is mapped to the centre of the
+ * output picture. Output pixel (col, row) reads the source at
+ * (ia c + ib r + breadth / 2, ic c + id r + length / 2), where (c, r) is its offset from
+ * the output centre. The terms that depend on the row are computed once per row, and each
+ * row is first clipped to the span of columns whose source location lies inside the
+ * picture, so the inner loops read the raster directly without bounds tests. Pixels
+ * outside that span receive the fill colour.
+ */
+final class AffineResampler {
+
+    private static final int OPAQUE = 0xFF000000;
+
+    private AffineResampler() {
+    }
+
+    /**
+     * Resample {@code src} into a new {@code breadth}-by-{@code length} picture.
+     *
+     * @param src      the picture to transform, is not null
+     * @param map      the map to apply, is not null
+     * @param breadth  the breadth of the output, >= 1
+     * @param length   the length of the output, >= 1
+     * @param sampling how to read the source between pixels, is not null
+     * @param fill     the colour of output pixels that come from outside the source
+     * @param executor runs the rows of the output
+     * @return the transformed picture
+     */
+    static Picture resample(Picture src, Affine map, int breadth, int length,
+                            Sampling sampling, int fill, RowBandExecutor executor) {
+        int srcBreadth = src.breadth();
+        int srcLength = src.length();
+        int[] pixels = src.raster();
+        int[] rowOffsets = new int[srcLength];
+        for (int y = 0; y < srcLength; y++) {
+            rowOffsets[y] = src.rowOffset(y);
+        }
+        int centreCol = breadth / 2;
+        int centreRow = length / 2;
+        double srcCentreX = srcBreadth / 2;
+        double srcCentreY = srcLength / 2;
+        double ia = map.ia;
+        double ib = map.ib;
+        double ic = map.ic;
+        double id = map.id;
+
+        Picture out = new Picture(breadth, length);
+        executor.run(length, 0, (from, to) -> {
+            int[] line = new int[breadth];
+            for (int row = from; row < to; row++) {
+                int r = row - centreRow;
+                double rowX = r * ib;
+                double rowY = r * id;
+                int[] span = span(ia, ic, rowX, rowY, srcCentreX, srcCentreY,
+                    srcBreadth, srcLength, centreCol, breadth);
+                int lo = span[0];
+                int hi = span[1];
+                for (int col = 0; col < lo; col++) {
+                    line[col] = fill;
+                }
+                if (sampling == Sampling.NEAREST) {
+                    for (int col = lo; col < hi; col++) {
+                        int c = col - centreCol;
+                        int x = (int) (c * ia + rowX + srcCentreX);
+                        int y = (int) (c * ic + rowY + srcCentreY);
+                        line[col] = OPAQUE | pixels[rowOffsets[y] + x];
+                    }
+                } else {
+                    for (int col = lo; col < hi; col++) {
+                        int c = col - centreCol;
+                        double x = c * ia + rowX + srcCentreX;
+                        double y = c * ic + rowY + srcCentreY;
+                        line[col] = bilinear(pixels, rowOffsets, srcBreadth, srcLength, x, y);
+                    }
+                }
+                for (int col = hi; col < breadth; col++) {
+                    line[col] = fill;
+                }
+                out.setRGBRow(row, line);
+            }
+        });
+        return out;
+    }
+
+    /**
+     * Find the columns [lo, hi) of an output row whose source location (x, y) satisfies
+     * -1 < x < srcBreadth and -1 < y < srcLength, which is exactly when the truncated
+     * location is a pixel of the source. Source coordinates are monotonic along a row,
+     * so those columns are consecutive; they are estimated by solving the bounds and then
+     * settled with the same arithmetic as the resampling loop.
+     */
+    private static int[] span(double ia, double ic, double rowX, double rowY,
+                              double srcCentreX, double srcCentreY,
+                              int srcBreadth, int srcLength, int centreCol, int breadth) {
+        double[] bounds = {0, breadth};
+        if (!narrow(bounds, ia, rowX + srcCentreX, srcBreadth, centreCol)
+            || !narrow(bounds, ic, rowY + srcCentreY, srcLength, centreCol)) {
+            return new int[]{0, 0};
+        }
+        int first = (int) Math.max(0, Math.floor(bounds[0]) - 2);
+        int last = (int) Math.min(breadth, Math.ceil(bounds[1]) + 2);
+        while (first < last && !inside(first - centreCol, ia, ic, rowX, rowY,
+            srcCentreX, srcCentreY, srcBreadth, srcLength)) {
+            first++;
+        }
+        while (last > first && !inside(last - 1 - centreCol, ia, ic, rowX, rowY,
+            srcCentreX, srcCentreY, srcBreadth, srcLength)) {
+            last--;
+        }
+        return new int[]{first, last};
+    }
+
+    /**
+     * Intersect bounds with the columns where -1 < step (col - centreCol) + start < size.
+     *
+     * @return false if no column can satisfy the condition
+     */
+    private static boolean narrow(double[] bounds, double step, double start, int size, int centreCol) {
+        if (step == 0) {
+            return start > -1 && start < size;
+        }
+        double t1 = (-1 - start) / step + centreCol;
+        double t2 = (size - start) / step + centreCol;
+        bounds[0] = Math.max(bounds[0], Math.min(t1, t2));
+        bounds[1] = Math.min(bounds[1], Math.max(t1, t2));
+        return bounds[0] <= bounds[1] + 2;
+    }
+
+    private static boolean inside(int c, double ia, double ic, double rowX, double rowY,
+                                  double srcCentreX, double srcCentreY, int srcBreadth, int srcLength) {
+        double x = c * ia + rowX + srcCentreX;
+        double y = c * ic + rowY + srcCentreY;
+        return x > -1 && x < srcBreadth && y > -1 && y < srcLength;
+    }
+
+    private static int bilinear(int[] pixels, int[] rowOffsets, int srcBreadth, int srcLength,
+                                double x, double y) {
+        double u = Math.min(Math.max(x, 0), srcBreadth - 1);
+        double v = Math.min(Math.max(y, 0), srcLength - 1);
+        int x0 = (int) u;
+        int y0 = (int) v;
+        int x1 = Math.min(x0 + 1, srcBreadth - 1);
+        int y1 = Math.min(y0 + 1, srcLength - 1);
+        double fx = u - x0;
+        double fy = v - y0;
+        int p00 = pixels[rowOffsets[y0] + x0];
+        int p10 = pixels[rowOffsets[y0] + x1];
+        int p01 = pixels[rowOffsets[y1] + x0];
+        int p11 = pixels[rowOffsets[y1] + x1];
+        int rgb = OPAQUE;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            double top = ((p00 >> shift) & 0xFF) * (1 - fx) + ((p10 >> shift) & 0xFF) * fx;
+            double bottom = ((p01 >> shift) & 0xFF) * (1 - fx) + ((p11 >> shift) & 0xFF) * fx;
+            rgb |= (int) (top * (1 - fy) + bottom * fy + 0.5) << shift;
+        }
+        return rgb;
+    }
+}
@@ -0,0 +1,234 @@
+package logic.features;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This datatype represents a mutable set of 64-bit hashes, each stored with an id, that
+ * can be searched for the hashes within a given Hamming distance of a hash.
+ * <p>
+ * The hashes form a Burkhard-Keller tree: the children of a node are labelled with
+ * their distance to it, so by the triangle inequality a search for the hashes within
+ * distance r of h only visits the children of a node at distance d from h whose label
+ * is between d - r and d + r. For the small radii used to find near-duplicate
+ * {@link PerceptualHash perceptual hashes}, a search visits a small fraction of the tree.
+ * <p>
+ * Nodes are kept in parallel primitive arrays, with the children of a node chained
+ * through their siblings, so a tree of millions of hashes uses about 21 bytes per hash.
+ * A tree is not safe to use from several threads at once while it is being changed.
+ */
+public final class BKTree {
+
+    /**
+     * This datatype represents the <strong>immutable</strong> result of a search: a hash of
+     * the tree and its distance to the hash that was searched for.
+     */
+    public static final class Match {
+        private final int id;
+        private final long hash;
+        private final int distance;
+
+        /*
+            Abstraction Function:
+                Represents the hash added to a tree with the id id, which differs from
+                the hash searched for in distance bits.
+
+            Representation Invariant:
+                0 <= distance <= 64
+         */
+
+        private Match(int id, long hash, int distance) {
+            this.id = id;
+            this.hash = hash;
+            this.distance = distance;
+        }
+
+        /**
+         * @return the id the hash was added with
+         */
+        public int id() {
+            return id;
+        }
+
+        /**
+         * @return the hash
+         */
+        public long hash() {
+            return hash;
+        }
+
+        /**
+         * @return the Hamming distance between the hash and the hash searched for
+         */
+        public int distance() {
+            return distance;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Match)) {
+                return false;
+            }
+            Match that = (Match) other;
+            return id == that.id && hash == that.hash && distance == that.distance;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * id + Long.hashCode(hash)) + distance;
+        }
+
+        @Override
+        public String toString() {
+            return id + ": " + Long.toHexString(hash) + " at " + distance;
+        }
+    }
+
+    private static final int INITIAL_CAPACITY = 16;
+    private static final int NONE = -1;
+
+    private long[] hashes;
+    private int[] ids;
+    private int[] firstChild;
+    private int[] nextSibling;
+    private byte[] label;
+    private int size;
+
+    /*
+        Abstraction Function:
+            Represents the hashes hashes[0..size-1], where hashes[n] was added with the
+            id ids[n]. Node 0, if any, is the root. The children of node n are
+            firstChild[n], nextSibling[firstChild[n]], nextSibling[nextSibling[...]], ...
+            up to NONE, and label[c] is the distance from child c to its parent.
+
+        Representation Invariant:
+            0 <= size <= hashes.length == ids.length == firstChild.length
+                == nextSibling.length == label.length
+            every node but the root is the child of exactly one node, added before it
+            if c is a child of n then label[c] == Long.bitCount(hashes[c] ^ hashes[n])
+            no two children of a node have the same label
+     */
+
+    /**
+     * Create an empty tree.
+     */
+    public BKTree() {
+        hashes = new long[INITIAL_CAPACITY];
+        ids = new int[INITIAL_CAPACITY];
+        firstChild = new int[INITIAL_CAPACITY];
+        nextSibling = new int[INITIAL_CAPACITY];
+        label = new byte[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return the number of hashes in the tree
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add a hash to the tree. The same hash may be added more than once, with the
+     * same or different ids.
+     *
+     * @param hash the hash to add
+     * @param id   an id to report with the hash when it is found
+     */
+    public void add(long hash, int id) {
+        if (size == hashes.length) {
+            int capacity = 2 * size;
+            hashes = Arrays.copyOf(hashes, capacity);
+            ids = Arrays.copyOf(ids, capacity);
+            firstChild = Arrays.copyOf(firstChild, capacity);
+            nextSibling = Arrays.copyOf(nextSibling, capacity);
+            label = Arrays.copyOf(label, capacity);
+        }
+        int added = size++;
+        hashes[added] = hash;
+        ids[added] = id;
+        firstChild[added] = NONE;
+        nextSibling[added] = NONE;
+        if (added == 0) {
+            return;
+        }
+
+        int node = 0;
+        while (true) {
+            int distance = PerceptualHash.distance(hash, hashes[node]);
+            int child = childAt(node, distance);
+            if (child == NONE) {
+                label[added] = (byte) distance;
+                nextSibling[added] = firstChild[node];
+                firstChild[node] = added;
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Find the hashes within a Hamming distance of a hash.
+     *
+     * @param hash   the hash to look for
+     * @param radius the largest distance to report, >= 0
+     * @return the hashes at distance at most radius from hash, from nearest to farthest;
+     * hashes at the same distance are ordered by the order in which they were added
+     */
+    public List<Match> within(long hash, int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must not be negative");
+        }
+        List<Match> found = new ArrayList<>();
+        if (size == 0) {
+            return found;
+        }
+        int[] pending = new int[INITIAL_CAPACITY];
+        int count = 0;
+        pending[count++] = 0;
+        // node numbers of the matches, bucketed by distance, so they come out sorted
+        List<List<Integer>> byDistance = new ArrayList<>();
+        for (int d = 0; d <= Math.min(radius, 64); d++) {
+            byDistance.add(new ArrayList<>());
+        }
+
+        while (count > 0) {
+            int node = pending[--count];
+            int distance = PerceptualHash.distance(hash, hashes[node]);
+            if (distance <= radius) {
+                byDistance.get(distance).add(node);
+            }
+            for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+                if (Math.abs(label[child] - distance) <= radius) {
+                    if (count == pending.length) {
+                        pending = Arrays.copyOf(pending, 2 * count);
+                    }
+                    pending[count++] = child;
+                }
+            }
+        }
+
+        for (int d = 0; d < byDistance.size(); d++) {
+            List<Integer> nodes = byDistance.get(d);
+            nodes.sort(null);
+            for (int node : nodes) {
+                found.add(new Match(ids[node], hashes[node], d));
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Find the child of node whose label is distance.
+     *
+     * @return the child, or NONE if there is none
+     */
+    private int childAt(int node, int distance) {
+        for (int child = firstChild[node]; child != NONE; child = nextSibling[child]) {
+            if (label[child] == distance) {
+                return child;
+            }
+        }
+        return NONE;
+    }
+}
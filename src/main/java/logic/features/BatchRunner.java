@@ -0,0 +1,354 @@
+package logic.features;
+
+import logic.core.Picture;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Applies the same operation to many picture files, overlapping the decoding, the
+ * transformation and the encoding of different files.
+ * <p>
+ * Each of the three stages has its own pool of threads and a bounded number of slots.
+ * A file enters a stage only when the stage has a free slot, so a slow stage holds back
+ * the stages before it instead of letting decoded pictures pile up in memory: at most
+ * (threads + capacity) pictures wait in or are processed by each stage. With every stage
+ * busy, the time taken by a batch approaches that of its slowest stage.
+ * <p>
+ * A file that cannot be read, transformed or written is reported as a failed
+ * {@link Result}; the other files of the batch are still processed.
+ * <p>
+ * A runner owns its threads and must be closed after use.
+ */
+public final class BatchRunner implements AutoCloseable {
+
+    /**
+     * The order in which results are reported while a batch runs.
+     */
+    public enum Order {
+        /** Report results in the order of the input files. */
+        INPUT,
+        /** Report each result as soon as its file is done. */
+        COMPLETION
+    }
+
+    /**
+     * This datatype represents the <strong>immutable</strong> outcome of processing one file.
+     */
+    public static final class Result {
+        private final int index;
+        private final Path input;
+        private final Path output;
+        private final Throwable failure;
+
+        /*
+            Abstraction Function:
+                Represents the outcome of processing input, the index-th file of a batch,
+                into output: a success if failure is null, otherwise the error that
+                stopped it.
+
+            Representation Invariant:
+                index >= 0, input != null, output != null
+         */
+
+        private Result(int index, Path input, Path output, Throwable failure) {
+            this.index = index;
+            this.input = input;
+            this.output = output;
+            this.failure = failure;
+        }
+
+        /**
+         * @return the position of the file in the batch, starting at 0
+         */
+        public int index() {
+            return index;
+        }
+
+        /**
+         * @return the file that was read
+         */
+        public Path input() {
+            return input;
+        }
+
+        /**
+         * @return the file that the result was, or would have been, written to
+         */
+        public Path output() {
+            return output;
+        }
+
+        /**
+         * @return true if the file was read, transformed and written
+         */
+        public boolean succeeded() {
+            return failure == null;
+        }
+
+        /**
+         * @return the error that stopped the file, or null if it succeeded
+         */
+        public Throwable failure() {
+            return failure;
+        }
+
+        @Override
+        public String toString() {
+            return input + (failure == null ? " -> " + output : " failed: " + failure);
+        }
+    }
+
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private final Stage decode;
+    private final Stage transform;
+    private final Stage encode;
+
+    /*
+        Abstraction Function:
+            Represents a batch runner whose decode, transform and encode stages run on
+            the pools of decode, transform and encode respectively.
+
+        Representation Invariant:
+            decode, transform and encode are not null
+     */
+
+    /**
+     * Create a runner with one thread per processor for the transform stage, and
+     * half as many, but at least one, for each of the decode and encode stages.
+     */
+    public BatchRunner() {
+        this(Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            Runtime.getRuntime().availableProcessors(),
+            Math.max(1, Runtime.getRuntime().availableProcessors() / 2),
+            DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create a runner.
+     *
+     * @param decodeThreads    the number of threads that read files, >= 1
+     * @param transformThreads the number of threads that transform pictures, >= 1
+     * @param encodeThreads    the number of threads that write files, >= 1
+     * @param capacity         the number of pictures that can wait for each stage, >= 0
+     */
+    public BatchRunner(int decodeThreads, int transformThreads, int encodeThreads, int capacity) {
+        if (decodeThreads < 1 || transformThreads < 1 || encodeThreads < 1) {
+            throw new IllegalArgumentException("every stage needs at least one thread");
+        }
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        decode = new Stage("decode", decodeThreads, capacity);
+        transform = new Stage("transform", transformThreads, capacity);
+        encode = new Stage("encode", encodeThreads, capacity);
+    }
+
+    /**
+     * Process every PNG, JPEG and raw picture file in a directory, in order of file name,
+     * writing each result to a file of the same name in {@code outputDirectory}.
+     *
+     * @param inputDirectory  the directory to read, is not null
+     * @param outputDirectory the directory to write, is not null; it is created if needed
+     * @param operation       the operation to apply to each picture, is not null and is
+     *                        safe to call from several threads at once
+     * @return the result for each file, in order of file name
+     * @throws IOException if a directory cannot be listed or created
+     */
+    public List<Result> run(Path inputDirectory, Path outputDirectory,
+                            Function<Picture, Picture> operation) throws IOException {
+        List<Path> inputs = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(inputDirectory,
+            "*.{png,PNG,jpg,JPG,jpeg,JPEG,raw}")) {
+            for (Path file : files) {
+                inputs.add(file);
+            }
+        }
+        Collections.sort(inputs);
+        Files.createDirectories(outputDirectory);
+        return run(inputs, input -> outputDirectory.resolve(input.getFileName()),
+            operation, Order.INPUT, result -> { });
+    }
+
+    /**
+     * Process a list of picture files.
+     *
+     * @param inputs    the files to read, in PNG, JPEG or raw format; is not null
+     * @param outputFor gives the file each result is written to, whose extension selects
+     *                  its format as in {@link Picture#write(Path)}; is not null
+     * @param operation the operation to apply to each picture, is not null and is safe to
+     *                  call from several threads at once
+     * @param order     the order in which results are passed to {@code listener}
+     * @param listener  receives each result, on one thread at a time, while the batch runs;
+     *                  if it throws, the later results are still delivered to it
+     * @return the result for each file, in the order of {@code inputs}
+     * @throws RuntimeException the first exception thrown by {@code listener}, with the
+     *                          later ones suppressed, once every file has been processed
+     */
+    public List<Result> run(List<Path> inputs, Function<Path, Path> outputFor,
+                            Function<Picture, Picture> operation, Order order,
+                            Consumer<Result> listener) {
+        if (inputs == null || outputFor == null || operation == null || order == null || listener == null) {
+            throw new IllegalArgumentException("arguments must not be null");
+        }
+        Result[] results = new Result[inputs.size()];
+        Reporter reporter = new Reporter(results, order, listener);
+        try {
+            for (int i = 0; i < results.length; i++) {
+                Path input = inputs.get(i);
+                Path output = outputFor.apply(input);
+                int index = i;
+                decode.submit(() -> {
+                    Picture picture = read(input);
+                    transform.submit(() -> {
+                        Picture result = operation.apply(picture);
+                        encode.submit(() -> {
+                            result.write(output);
+                            reporter.report(new Result(index, input, output, null));
+                        }, e -> reporter.report(new Result(index, input, output, e)));
+                    }, e -> reporter.report(new Result(index, input, output, e)));
+                }, e -> reporter.report(new Result(index, input, output, e)));
+            }
+            reporter.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while running a batch", e);
+        }
+        reporter.rethrowListenerFailure();
+        return Arrays.asList(results);
+    }
+
+    private static Picture read(Path input) throws IOException {
+        String name = input.getFileName().toString();
+        if (name.toLowerCase().endsWith(".raw")) {
+            return Picture.readRaw(input);
+        }
+        return new Picture(new File(input.toString()));
+    }
+
+    /**
+     * Stops the threads of the runner once the batches that are running have finished.
+     */
+    @Override
+    public void close() {
+        decode.pool.shutdown();
+        transform.pool.shutdown();
+        encode.pool.shutdown();
+    }
+
+    /**
+     * A step of a stage, which may fail.
+     */
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    /**
+     * A pool of threads together with the slots that bound the work waiting for it.
+     */
+    private static final class Stage {
+        final ExecutorService pool;
+        final Semaphore slots;
+
+        Stage(String name, int threads, int capacity) {
+            AtomicInteger count = new AtomicInteger();
+            ThreadFactory factory = task -> {
+                Thread thread = new Thread(task, "batch-" + name + "-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            };
+            pool = Executors.newFixedThreadPool(threads, factory);
+            slots = new Semaphore(threads + capacity);
+        }
+
+        /**
+         * Run a step on the pool, waiting for a free slot first. If the step fails,
+         * or a later stage it submits to is interrupted, onFailure receives the error.
+         */
+        void submit(Step step, Consumer<Throwable> onFailure) throws InterruptedException {
+            slots.acquire();
+            pool.execute(() -> {
+                try {
+                    step.run();
+                } catch (Throwable e) {
+                    if (e instanceof InterruptedException) {
+                        Thread.currentThread().interrupt();
+                    }
+                    onFailure.accept(e);
+                } finally {
+                    slots.release();
+                }
+            });
+        }
+    }
+
+    /**
+     * Collects results and passes them to the listener in the requested order.
+     */
+    private static final class Reporter {
+        private final Result[] results;
+        private final Order order;
+        private final Consumer<Result> listener;
+        private final CountDownLatch remaining;
+        private int nextInOrder;
+        private RuntimeException listenerFailure;
+
+        Reporter(Result[] results, Order order, Consumer<Result> listener) {
+            this.results = results;
+            this.order = order;
+            this.listener = listener;
+            this.remaining = new CountDownLatch(results.length);
+        }
+
+        synchronized void report(Result result) {
+            results[result.index] = result;
+            if (order == Order.COMPLETION) {
+                deliver(result);
+            } else {
+                while (nextInOrder < results.length && results[nextInOrder] != null) {
+                    deliver(results[nextInOrder++]);
+                }
+            }
+            remaining.countDown();
+        }
+
+        private void deliver(Result result) {
+            try {
+                listener.accept(result);
+            } catch (RuntimeException e) {
+                // a failing listener must not stall the batch; run rethrows its failure
+                if (listenerFailure == null) {
+                    listenerFailure = e;
+                } else if (listenerFailure != e) {
+                    listenerFailure.addSuppressed(e);
+                }
+            }
+        }
+
+        void await() throws InterruptedException {
+            remaining.await();
+        }
+
+        synchronized void rethrowListenerFailure() {
+            if (listenerFailure != null) {
+                throw listenerFailure;
+            }
+        }
+    }
+}
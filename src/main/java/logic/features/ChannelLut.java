@@ -0,0 +1,248 @@
+package logic.features;
+
+import logic.core.LuminanceWeights;
+
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This datatype represents an <strong>immutable</strong> point operation on colours,
+ * compiled into lookup tables.
+ * <p>
+ * A lookup table maps each colour channel value (0 to 255) to a new value through a
+ * 256-entry table per channel. It can also start with a luminance stage that first
+ * replaces the colour (r, g, b) by the gray level y = round(wr(r) + wg(g) + wb(b)),
+ * clamped to [0, 255], where wr, wg and wb are per-channel weight tables; the output
+ * tables are then applied to (y, y, y). The gray level is rounded by
+ * {@link LuminanceWeights}, as {@link logic.core.Picture#luminance(int)} is.
+ * <p>
+ * Lookup tables compose with {@link #andThen(ChannelLut)} into a single lookup table,
+ * so a chain of point operations costs one table lookup per channel and pixel.
+ */
+public final class ChannelLut {
+    private static final int SIZE = 256;
+
+    private final int[] red;      // red[v]: new red value, pre-shifted to bits 16-23
+    private final int[] green;    // green[v]: new green value, pre-shifted to bits 8-15
+    private final int[] blue;     // blue[v]: new blue value
+    private final LuminanceWeights luminance;
+
+    /*
+        Abstraction Function:
+            If luminance is null, represents the operation that maps (r, g, b) to
+            (red[r] >> 16, green[g] >> 8, blue[b]).
+            Otherwise, represents the operation that maps (r, g, b) to
+            (red[y] >> 16, green[y] >> 8, blue[y]) where
+            y = min(255, max(0, luminance.round(r, g, b))).
+
+        Representation Invariant:
+            red, green and blue have 256 entries each
+            red[v] >> 16, green[v] >> 8 and blue[v] are in [0, 255], and other bits are 0
+     */
+
+    private ChannelLut(int[] red, int[] green, int[] blue, LuminanceWeights luminance) {
+        this.red = red;
+        this.green = green;
+        this.blue = blue;
+        this.luminance = luminance;
+    }
+
+    /**
+     * Obtain the lookup table that leaves every colour unchanged.
+     *
+     * @return the identity lookup table
+     */
+    public static ChannelLut identity() {
+        return of(IntUnaryOperator.identity());
+    }
+
+    /**
+     * Create a lookup table that applies the same table to every channel.
+     *
+     * @param table has 256 entries, each between 0 and 255
+     * @return the lookup table
+     */
+    public static ChannelLut of(int[] table) {
+        return of(table, table, table);
+    }
+
+    /**
+     * Create a lookup table with one table per channel.
+     *
+     * @param red   the table for the red channel, has 256 entries, each between 0 and 255
+     * @param green the table for the green channel, has 256 entries, each between 0 and 255
+     * @param blue  the table for the blue channel, has 256 entries, each between 0 and 255
+     * @return the lookup table
+     */
+    public static ChannelLut of(int[] red, int[] green, int[] blue) {
+        return new ChannelLut(shifted(red, 16), shifted(green, 8), shifted(blue, 0), null);
+    }
+
+    /**
+     * Create a lookup table by tabulating a function that is applied to every channel.
+     *
+     * @param curve maps each value between 0 and 255 to a value between 0 and 255
+     * @return the lookup table
+     */
+    public static ChannelLut of(IntUnaryOperator curve) {
+        return of(curve, curve, curve);
+    }
+
+    /**
+     * Create a lookup table by tabulating one function per channel.
+     *
+     * @param red   maps each red value between 0 and 255 to a value between 0 and 255
+     * @param green maps each green value between 0 and 255 to a value between 0 and 255
+     * @param blue  maps each blue value between 0 and 255 to a value between 0 and 255
+     * @return the lookup table
+     */
+    public static ChannelLut of(IntUnaryOperator red, IntUnaryOperator green, IntUnaryOperator blue) {
+        return of(tabulate(red), tabulate(green), tabulate(blue));
+    }
+
+    /**
+     * Create a lookup table that converts every colour to the gray level
+     * round(wr * r + wg * g + wb * b), clamped to [0, 255].
+     *
+     * @param wr the weight of the red channel
+     * @param wg the weight of the green channel
+     * @param wb the weight of the blue channel
+     * @return the lookup table
+     */
+    public static ChannelLut luminance(double wr, double wg, double wb) {
+        return luminance(LuminanceWeights.of(wr, wg, wb));
+    }
+
+    /**
+     * Create a lookup table that converts every colour to its gray level under a
+     * weighting, clamped to [0, 255].
+     *
+     * @param weights the weighting, is not null
+     * @return the lookup table
+     */
+    public static ChannelLut luminance(LuminanceWeights weights) {
+        if (weights == null) {
+            throw new IllegalArgumentException("weights is null");
+        }
+        ChannelLut gray = identity();
+        return new ChannelLut(gray.red, gray.green, gray.blue, weights);
+    }
+
+    /**
+     * Obtain the lookup table that applies this one and then {@code next}.
+     *
+     * @param next the lookup table to apply second, is not null
+     * @return the composed lookup table
+     */
+    public ChannelLut andThen(ChannelLut next) {
+        if (next.luminance == null) {
+            return new ChannelLut(compose(red, 16, next.red), compose(green, 8, next.green),
+                compose(blue, 0, next.blue), luminance);
+        }
+        if (luminance == null) {
+            // fold this table into the weights of next's luminance stage
+            LuminanceWeights weights = next.luminance.after(
+                unshifted(red, 16), unshifted(green, 8), unshifted(blue, 0));
+            return new ChannelLut(next.red, next.green, next.blue, weights);
+        }
+        // both start with a luminance stage, so the output of this one depends on y only
+        int[] r = new int[SIZE];
+        int[] g = new int[SIZE];
+        int[] b = new int[SIZE];
+        for (int y = 0; y < SIZE; y++) {
+            int y2 = next.gray(red[y] >> 16, green[y] >> 8, blue[y]);
+            r[y] = next.red[y2];
+            g[y] = next.green[y2];
+            b[y] = next.blue[y2];
+        }
+        return new ChannelLut(r, g, b, luminance);
+    }
+
+    /**
+     * Apply the lookup table to one colour.
+     *
+     * @param rgb the packed colour
+     * @return the new packed colour, with the alpha component set to 255
+     */
+    public int apply(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        if (luminance != null) {
+            int y = gray(r, g, b);
+            return 0xFF000000 | red[y] | green[y] | blue[y];
+        }
+        return 0xFF000000 | red[r] | green[g] | blue[b];
+    }
+
+    /**
+     * Apply the lookup table in place to {@code count} packed colours starting at {@code offset}.
+     *
+     * @param pixels the colours to change
+     * @param offset the index of the first colour
+     * @param count  the number of colours
+     */
+    public void applyInPlace(int[] pixels, int offset, int count) {
+        int[] red = this.red;
+        int[] green = this.green;
+        int[] blue = this.blue;
+        int end = offset + count;
+        if (luminance == null) {
+            for (int i = offset; i < end; i++) {
+                int rgb = pixels[i];
+                pixels[i] = 0xFF000000 | red[(rgb >> 16) & 0xFF] | green[(rgb >> 8) & 0xFF] | blue[rgb & 0xFF];
+            }
+        } else {
+            for (int i = offset; i < end; i++) {
+                int rgb = pixels[i];
+                int y = gray((rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+                pixels[i] = 0xFF000000 | red[y] | green[y] | blue[y];
+            }
+        }
+    }
+
+    private int gray(int r, int g, int b) {
+        long y = luminance.round(r, g, b);
+        return (int) Math.max(0, Math.min(SIZE - 1, y));
+    }
+
+    private static int[] tabulate(IntUnaryOperator curve) {
+        if (curve == null) {
+            throw new IllegalArgumentException("curve is null");
+        }
+        int[] table = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            table[v] = curve.applyAsInt(v);
+        }
+        return table;
+    }
+
+    private static int[] shifted(int[] table, int shift) {
+        if (table == null || table.length != SIZE) {
+            throw new IllegalArgumentException("a lookup table must have " + SIZE + " entries");
+        }
+        int[] result = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            if (table[v] < 0 || table[v] >= SIZE) {
+                throw new IllegalArgumentException("lookup table entry " + v + " is out of range: " + table[v]);
+            }
+            result[v] = table[v] << shift;
+        }
+        return result;
+    }
+
+    private static int[] unshifted(int[] table, int shift) {
+        int[] result = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            result[v] = table[v] >> shift;
+        }
+        return result;
+    }
+
+    private static int[] compose(int[] first, int shift, int[] second) {
+        int[] result = new int[SIZE];
+        for (int v = 0; v < SIZE; v++) {
+            result[v] = second[first[v] >> shift];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,289 @@
+package logic.features;
+
+import logic.core.Picture;
+
+import java.util.Arrays;
+
+/**
+ * This datatype represents an <strong>immutable</strong> labelling of the connected
+ * regions of a picture that have one given colour.
+ * <p>
+ * Two pixels of that colour are connected if they are 8-neighbours (they differ by at
+ * most one in both column and row). Every connected region receives a label between
+ * 0 and {@link #count()} - 1, and its size and bounding box are recorded.
+ * <p>
+ * The labelling is computed with the classic two-pass scanline algorithm: the first pass
+ * assigns provisional labels and records which of them touch in a union-find forest with
+ * path compression, and the second pass resolves every provisional label to its
+ * component and accumulates the statistics. Both passes are linear in the number of pixels,
+ * and the labels are kept in a single <code>int[]</code>.
+ */
+public final class ConnectedComponents {
+    /** The label of pixels that do not have the colour. */
+    public static final int BACKGROUND = -1;
+
+    private final int breadth;
+    private final int length;
+    private final int[] labels;
+    private final int[] sizes;
+    private final int[] minCols;
+    private final int[] minRows;
+    private final int[] maxCols;
+    private final int[] maxRows;
+
+    /*
+        Abstraction Function:
+            Represents the connected regions of a breadth-by-length picture, where
+            pixel (col, row) belongs to region labels[row * breadth + col], or to no
+            region if that entry is BACKGROUND. Region k has sizes[k] pixels and is bounded
+            by columns minCols[k]..maxCols[k] and rows minRows[k]..maxRows[k], inclusive.
+
+        Representation Invariant:
+            breadth >= 1, length >= 1
+            labels.length == breadth * length
+            every entry of labels is BACKGROUND or in [0, sizes.length)
+            sizes, minCols, minRows, maxCols and maxRows have the same length
+            sizes[k] >= 1 for every k
+     */
+
+    private ConnectedComponents(int breadth, int length, int[] labels, int[] sizes,
+                                int[] minCols, int[] minRows, int[] maxCols, int[] maxRows) {
+        this.breadth = breadth;
+        this.length = length;
+        this.labels = labels;
+        this.sizes = sizes;
+        this.minCols = minCols;
+        this.minRows = minRows;
+        this.maxCols = maxCols;
+        this.maxRows = maxRows;
+    }
+
+    /**
+     * Label the connected regions of {@code picture} whose pixels have exactly the colour
+     * {@code rgb}, in the encoding of {@link Picture#getRGB(int, int)}.
+     *
+     * @param picture the picture to label, is not null
+     * @param rgb     the colour of the regions
+     * @return the labelling of the regions
+     */
+    public static ConnectedComponents of(Picture picture, int rgb) {
+        if (picture == null) {
+            throw new IllegalArgumentException("picture is null");
+        }
+        int breadth = picture.breadth();
+        int length = picture.length();
+        int target = 0xFF000000 | rgb;
+        int[] labels = new int[breadth * length];
+        int[] parent = new int[Math.max(16, breadth)];
+        int next = 0;
+
+        // first pass: provisional labels, merged through the already-labelled neighbours
+        // to the west, north-west, north and north-east
+        int[] line = new int[breadth];
+        for (int row = 0; row < length; row++) {
+            picture.getRGBRow(row, line);
+            int base = row * breadth;
+            int above = base - breadth;
+            for (int col = 0; col < breadth; col++) {
+                if (line[col] != target) {
+                    labels[base + col] = BACKGROUND;
+                    continue;
+                }
+                int label = BACKGROUND;
+                if (col > 0) {
+                    label = join(parent, label, labels[base + col - 1]);
+                }
+                if (row > 0) {
+                    if (col > 0) {
+                        label = join(parent, label, labels[above + col - 1]);
+                    }
+                    label = join(parent, label, labels[above + col]);
+                    if (col + 1 < breadth) {
+                        label = join(parent, label, labels[above + col + 1]);
+                    }
+                }
+                if (label == BACKGROUND) {
+                    if (next == parent.length) {
+                        parent = Arrays.copyOf(parent, 2 * next);
+                    }
+                    parent[next] = next;
+                    label = next++;
+                }
+                labels[base + col] = label;
+            }
+        }
+
+        // number the roots consecutively, in order of first appearance
+        int[] component = new int[next];
+        int count = 0;
+        for (int p = 0; p < next; p++) {
+            int root = find(parent, p);
+            component[p] = root == p ? count++ : component[root];
+        }
+
+        // second pass: final labels and per-component statistics
+        int[] sizes = new int[count];
+        int[] minCols = new int[count];
+        int[] minRows = new int[count];
+        int[] maxCols = new int[count];
+        int[] maxRows = new int[count];
+        Arrays.fill(minCols, Integer.MAX_VALUE);
+        Arrays.fill(minRows, Integer.MAX_VALUE);
+        for (int row = 0; row < length; row++) {
+            int base = row * breadth;
+            for (int col = 0; col < breadth; col++) {
+                int provisional = labels[base + col];
+                if (provisional == BACKGROUND) {
+                    continue;
+                }
+                int k = component[provisional];
+                labels[base + col] = k;
+                sizes[k]++;
+                minCols[k] = Math.min(minCols[k], col);
+                minRows[k] = Math.min(minRows[k], row);
+                maxCols[k] = Math.max(maxCols[k], col);
+                maxRows[k] = Math.max(maxRows[k], row);
+            }
+        }
+        return new ConnectedComponents(breadth, length, labels, sizes, minCols, minRows, maxCols, maxRows);
+    }
+
+    /**
+     * Merge the sets of two provisional labels, either of which may be BACKGROUND,
+     * and return the root of the merged set.
+     */
+    private static int join(int[] parent, int a, int b) {
+        if (b == BACKGROUND) {
+            return a;
+        }
+        int rootB = find(parent, b);
+        if (a == BACKGROUND) {
+            return rootB;
+        }
+        int rootA = find(parent, a);
+        if (rootA == rootB) {
+            return rootA;
+        }
+        // the smaller label stays the root, so roots are met in label order
+        if (rootA < rootB) {
+            parent[rootB] = rootA;
+            return rootA;
+        }
+        parent[rootA] = rootB;
+        return rootB;
+    }
+
+    private static int find(int[] parent, int label) {
+        int root = label;
+        while (parent[root] != root) {
+            root = parent[root];
+        }
+        while (parent[label] != root) {
+            int up = parent[label];
+            parent[label] = root;
+            label = up;
+        }
+        return root;
+    }
+
+    /**
+     * Obtain the number of connected regions.
+     *
+     * @return the number of regions, >= 0
+     */
+    public int count() {
+        return sizes.length;
+    }
+
+    /**
+     * Obtain the region that a pixel belongs to.
+     *
+     * @param col the column index, 0 <= col < breadth of the picture
+     * @param row the row index, 0 <= row < length of the picture
+     * @return the label of the region containing the pixel, or {@link #BACKGROUND}
+     * if the pixel does not have the colour
+     */
+    public int label(int col, int row) {
+        if (col < 0 || col >= breadth || row < 0 || row >= length) {
+            throw new IllegalArgumentException("pixel (" + col + ", " + row + ") is outside the picture");
+        }
+        return labels[row * breadth + col];
+    }
+
+    /**
+     * Obtain the label of the region with the most pixels. Ties go to the region
+     * whose first pixel in row-major order comes first.
+     *
+     * @return the label of the largest region, or {@link #BACKGROUND} if there are no regions
+     */
+    public int largest() {
+        int best = BACKGROUND;
+        for (int k = 0; k < sizes.length; k++) {
+            if (best == BACKGROUND || sizes[k] > sizes[best]) {
+                best = k;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Obtain the number of pixels in a region.
+     *
+     * @param label the label of the region, 0 <= label < count()
+     * @return the number of pixels in the region
+     */
+    public int size(int label) {
+        validateLabel(label);
+        return sizes[label];
+    }
+
+    /**
+     * Obtain the leftmost column of a region.
+     *
+     * @param label the label of the region, 0 <= label < count()
+     * @return the smallest column index of a pixel in the region
+     */
+    public int minCol(int label) {
+        validateLabel(label);
+        return minCols[label];
+    }
+
+    /**
+     * Obtain the topmost row of a region.
+     *
+     * @param label the label of the region, 0 <= label < count()
+     * @return the smallest row index of a pixel in the region
+     */
+    public int minRow(int label) {
+        validateLabel(label);
+        return minRows[label];
+    }
+
+    /**
+     * Obtain the rightmost column of a region.
+     *
+     * @param label the label of the region, 0 <= label < count()
+     * @return the largest column index of a pixel in the region
+     */
+    public int maxCol(int label) {
+        validateLabel(label);
+        return maxCols[label];
+    }
+
+    /**
+     * Obtain the bottommost row of a region.
+     *
+     * @param label the label of the region, 0 <= label < count()
+     * @return the largest row index of a pixel in the region
+     */
+    public int maxRow(int label) {
+        validateLabel(label);
+        return maxRows[label];
+    }
+
+    private void validateLabel(int label) {
+        if (label < 0 || label >= sizes.length) {
+            throw new IllegalArgumentException("label must be between 0 and " + (sizes.length - 1) + ": " + label);
+        }
+    }
+}
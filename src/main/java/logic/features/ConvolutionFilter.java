@@ -0,0 +1,187 @@
+package logic.features;
+
+import logic.core.NestedMatrix;
+import logic.core.Picture;
+
+import java.util.Arrays;
+
+/**
+ * Convolves the colour channels of a picture with a kernel, either directly or through
+ * the fast Fourier transform.
+ * <p>
+ * With the kernel k of R rows and C columns anchored at its centre (C / 2, R / 2), the
+ * output channel at (x, y) is the sum over the kernel entries (r, c) of
+ * k(r, c) * in(x + C / 2 - c, y + R / 2 - r), rounded and clamped to [0, 255]; reads outside
+ * the picture repeat its border pixels. The direct method takes O(R * C) time per pixel,
+ * and the transform method O(log N) time per pixel for a padded picture of N pixels,
+ * whatever the size of the kernel; {@link #prefersTransform} compares the two.
+ */
+final class ConvolutionFilter {
+
+    /**
+     * The cost of one (padded) pixel of one transform, per log2 of the number of pixels,
+     * in multiply-adds of the direct method. Measured on 481x321 pictures, where the
+     * transform method catches up with the direct one at kernels of about 11x11.
+     */
+    private static final double TRANSFORM_COST = 2.0;
+
+    private ConvolutionFilter() {
+    }
+
+    /**
+     * Decide whether convolving a picture with a kernel is faster through the transform.
+     *
+     * @param breadth       the breadth of the picture
+     * @param length        the length of the picture
+     * @param kernelRows    the number of rows of the kernel
+     * @param kernelColumns the number of columns of the kernel
+     * @return true if {@link #transform} is expected to be faster than {@link #filterRows}
+     */
+    static boolean prefersTransform(int breadth, int length, int kernelRows, int kernelColumns) {
+        double direct = 3.0 * breadth * length * kernelRows * kernelColumns;
+        double padded = (double) paddedSize(breadth + kernelColumns - 1)
+            * paddedSize(length + kernelRows - 1);
+        // three channels are transformed forward and back, and the kernel forward once
+        double transform = 7 * TRANSFORM_COST * padded * (Math.log(padded) / Math.log(2));
+        return transform < direct;
+    }
+
+    /**
+     * Convolve the rows fromRow (inclusive) to toRow (exclusive) of a picture directly.
+     *
+     * @param source the picture to read, is not null
+     * @param target the picture to write, has the dimensions of source
+     * @param kernel the kernel, is not null
+     */
+    static void filterRows(Picture source, Picture target, NestedMatrix kernel, int fromRow, int toRow) {
+        int breadth = source.breadth();
+        int length = source.length();
+        int kernelRows = kernel.rows;
+        int kernelColumns = kernel.columns;
+        int anchorX = kernelColumns / 2;
+        int anchorY = kernelRows / 2;
+        int width = breadth + kernelColumns - 1;
+        int[] raster = source.raster();
+        int[] red = new int[width];
+        int[] green = new int[width];
+        int[] blue = new int[width];
+        double[] sumRed = new double[breadth];
+        double[] sumGreen = new double[breadth];
+        double[] sumBlue = new double[breadth];
+        int[] line = new int[breadth];
+
+        for (int y = fromRow; y < toRow; y++) {
+            Arrays.fill(sumRed, 0);
+            Arrays.fill(sumGreen, 0);
+            Arrays.fill(sumBlue, 0);
+            for (int r = 0; r < kernelRows; r++) {
+                int start = source.rowOffset(clamp(y + anchorY - r, length));
+                // red[x + j] is the red of in(x + anchorX - c, ...) for j = kernelColumns - 1 - c
+                for (int i = 0; i < width; i++) {
+                    int rgb = raster[start + clamp(i - (kernelColumns - 1 - anchorX), breadth)];
+                    red[i] = (rgb >> 16) & 0xFF;
+                    green[i] = (rgb >> 8) & 0xFF;
+                    blue[i] = rgb & 0xFF;
+                }
+                for (int j = 0; j < kernelColumns; j++) {
+                    double weight = kernel.get(r, kernelColumns - 1 - j);
+                    if (weight == 0) {
+                        continue;
+                    }
+                    for (int x = 0; x < breadth; x++) {
+                        sumRed[x] += weight * red[x + j];
+                        sumGreen[x] += weight * green[x + j];
+                        sumBlue[x] += weight * blue[x + j];
+                    }
+                }
+            }
+            for (int x = 0; x < breadth; x++) {
+                line[x] = 0xFF000000 | (clampChannel(sumRed[x]) << 16) | (clampChannel(sumGreen[x]) << 8)
+                    | clampChannel(sumBlue[x]);
+            }
+            target.setRGBRow(y, line);
+        }
+    }
+
+    /**
+     * Convolve a whole picture through the fast Fourier transform. The picture, extended
+     * by its repeated border, and the kernel are padded to power-of-two dimensions large
+     * enough that the circular convolution of the transform does not wrap around.
+     *
+     * @param source the picture to read, is not null
+     * @param target the picture to write, has the dimensions of source
+     * @param kernel the kernel, is not null
+     */
+    static void transform(Picture source, Picture target, NestedMatrix kernel) {
+        int breadth = source.breadth();
+        int length = source.length();
+        int kernelRows = kernel.rows;
+        int kernelColumns = kernel.columns;
+        int width = breadth + kernelColumns - 1;
+        int height = length + kernelRows - 1;
+        int paddedWidth = paddedSize(width);
+        int paddedHeight = paddedSize(height);
+        int half = paddedWidth / 2 + 1;
+        int shiftX = kernelColumns - 1 - kernelColumns / 2;
+        int shiftY = kernelRows - 1 - kernelRows / 2;
+
+        double[] values = new double[paddedWidth * paddedHeight];
+        for (int r = 0; r < kernelRows; r++) {
+            for (int c = 0; c < kernelColumns; c++) {
+                values[r * paddedWidth + c] = kernel.get(r, c);
+            }
+        }
+        double[] kernelRe = new double[half * paddedHeight];
+        double[] kernelIm = new double[half * paddedHeight];
+        FFTPlan.transformReal2D(values, paddedWidth, paddedHeight, kernelRe, kernelIm);
+
+        int[] raster = source.raster();
+        double[] re = new double[half * paddedHeight];
+        double[] im = new double[half * paddedHeight];
+        int[][] channels = new int[3][breadth * length];
+        for (int shift = 16, channel = 0; channel < 3; shift -= 8, channel++) {
+            Arrays.fill(values, 0);
+            for (int y = 0; y < height; y++) {
+                int start = source.rowOffset(clamp(y - shiftY, length));
+                for (int x = 0; x < width; x++) {
+                    values[y * paddedWidth + x] = (raster[start + clamp(x - shiftX, breadth)] >> shift) & 0xFF;
+                }
+            }
+            FFTPlan.transformReal2D(values, paddedWidth, paddedHeight, re, im);
+            for (int i = 0; i < re.length; i++) {
+                double product = re[i] * kernelRe[i] - im[i] * kernelIm[i];
+                im[i] = re[i] * kernelIm[i] + im[i] * kernelRe[i];
+                re[i] = product;
+            }
+            FFTPlan.inverseReal2D(re, im, paddedWidth, paddedHeight, values);
+            // output (x, y) is the full convolution at (x + kernelColumns - 1, y + kernelRows - 1)
+            for (int y = 0; y < length; y++) {
+                int from = (y + kernelRows - 1) * paddedWidth + kernelColumns - 1;
+                for (int x = 0; x < breadth; x++) {
+                    channels[channel][y * breadth + x] = clampChannel(values[from + x]);
+                }
+            }
+        }
+
+        int[] line = new int[breadth];
+        for (int y = 0; y < length; y++) {
+            for (int x = 0, i = y * breadth; x < breadth; x++, i++) {
+                line[x] = 0xFF000000 | (channels[0][i] << 16) | (channels[1][i] << 8) | channels[2][i];
+            }
+            target.setRGBRow(y, line);
+        }
+    }
+
+    private static int paddedSize(int n) {
+        return n == 1 ? 1 : Integer.highestOneBit(n - 1) << 1;
+    }
+
+    private static int clamp(int index, int size) {
+        return index < 0 ? 0 : (index >= size ? size - 1 : index);
+    }
+
+    private static int clampChannel(double sum) {
+        long value = Math.round(sum);
+        return value < 0 ? 0 : (value > 255 ? 255 : (int) value);
+    }
+}
@@ -1,28 +1,58 @@
 package logic.features;
 
+import logic.core.GrayPicture;
 import logic.core.NestedMatrix;
+import logic.core.Picture;
 
 /**
- * This datatype represents the output of a spatial Discrete Fourier Transform,
- * and holds the amplitude and phase matrix obtained from the DFT.
+ * This datatype represents the output of a spatial Discrete Fourier Transform: a
+ * breadth-by-length array of complex coefficients F(u, v), read through their real and
+ * imaginary parts or their amplitude and phase.
+ * <p>
+ * Entry [u][v] of each matrix describes the frequency u along the breadth of the
+ * transformed picture and v along its length. The output of {@link PictureConvertor#dft()}
+ * holds only the complex coefficients with u &lt;= breadth / 2: the transform of a real
+ * picture is Hermitian, F(u, v) = conj(F(breadth - u, (length - v) % length)), so the other
+ * half follows from them. Amplitudes and phases are derived from the coefficients when they
+ * are asked for, and the full matrices are built only by {@link #amplitude()} and
+ * {@link #phase()}, once.
  */
 public class DFTOutput {
-    private NestedMatrix amplitude;
-    private NestedMatrix phase;
+    private final int breadth;
+    private final int length;
+    private final int half;
+    // polar form, given or derived on demand
+    private volatile NestedMatrix amplitude;
+    private volatile NestedMatrix phase;
+    // Hermitian half of the complex form, or null when the polar form was given
+    private final double[] re;
+    private final double[] im;
 
     /*
         Abstraction Function:
-            Represents the output of the (spatial) DFT applied to an picture.
-            amplitude is a matrix that represents the amplitude portion of the DFT output.
-            phase is a matrix that represents the phase portion of the DFT output.
+            Represents the output of the (spatial) DFT applied to an picture of
+            breadth * length pixels.
+            If re is null, amplitude and phase are breadth-by-length matrices, and entry
+            [u][v] of the output has amplitude amplitude.get(u, v) and phase phase.get(u, v).
+            Otherwise, for u <= breadth / 2 entry [u][v] is the complex number
+            re[v * half + u] + i im[v * half + u], and for u > breadth / 2 it is the
+            conjugate of entry [breadth - u][(length - v) % length]; amplitude and phase,
+            if not null, hold the amplitudes and phases of those numbers.
 
         Note:
-            A DFT can usually be represented by a matrix of complex numbers but
-            we use the amplitude & phase representation using two matrices.
+            The output of a transform is held as complex numbers, and only the half
+            u <= breadth / 2 of them, since the other half are their conjugates. The
+            full amplitude & phase matrices are derived from them on demand and cached, and
+            only hold the output itself when it was given in that form.
 
         Representation Invariant:
-            amplitude.breadth == phase.breadth
-            amplitude.length == phase.breadth
+            breadth >= 1 and length >= 1
+            half == breadth / 2 + 1
+            re == null or re.length == im.length == half * length
+            amplitude == null or amplitude.rows == breadth and amplitude.columns == length
+            phase == null or phase.rows == breadth and phase.columns == length
+            re != null or (amplitude != null and phase != null)
+            re and im are never changed after construction
      */
 
     /**
@@ -39,6 +69,200 @@ public class DFTOutput {
                 "amplitude and phase matrices should have the same dimensions"
             );
         }
+        breadth = amplitude.rows;
+        length = amplitude.columns;
+        half = breadth / 2 + 1;
+        re = null;
+        im = null;
+    }
+
+    /**
+     * Create a DFTOutput from the Hermitian half of the transform of a real picture,
+     * as computed by {@link FFTPlan#transformReal2D}. The arrays are not copied.
+     *
+     * @param breadth the breadth of the picture, >= 1
+     * @param length  the length of the picture, >= 1
+     * @param re      the real parts of F(u, v) for u <= breadth / 2, at v * (breadth / 2 + 1) + u
+     * @param im      the imaginary parts, laid out as re
+     */
+    DFTOutput(int breadth, int length, double[] re, double[] im) {
+        this.breadth = breadth;
+        this.length = length;
+        this.half = breadth / 2 + 1;
+        this.re = re;
+        this.im = im;
+    }
+
+    /**
+     * @return the breadth of the transformed picture, the number of frequencies u
+     */
+    public int breadth() {
+        return breadth;
+    }
+
+    /**
+     * @return the length of the transformed picture, the number of frequencies v
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Obtain the real part of an entry of the output.
+     *
+     * @param u the frequency along the breadth, 0 <= u < breadth
+     * @param v the frequency along the length, 0 <= v < length
+     * @return the real part of F(u, v)
+     */
+    public double real(int u, int v) {
+        checkEntry(u, v);
+        if (re == null) {
+            return amplitude.get(u, v) * Math.cos(phase.get(u, v));
+        }
+        return re[index(u, v)];
+    }
+
+    /**
+     * Obtain the imaginary part of an entry of the output.
+     *
+     * @param u the frequency along the breadth, 0 <= u < breadth
+     * @param v the frequency along the length, 0 <= v < length
+     * @return the imaginary part of F(u, v)
+     */
+    public double imaginary(int u, int v) {
+        checkEntry(u, v);
+        if (re == null) {
+            return amplitude.get(u, v) * Math.sin(phase.get(u, v));
+        }
+        double value = im[index(u, v)];
+        return u < half ? value : -value;
+    }
+
+    /**
+     * Obtain the amplitude of an entry of the output.
+     *
+     * @param u the frequency along the breadth, 0 <= u < breadth
+     * @param v the frequency along the length, 0 <= v < length
+     * @return the amplitude |F(u, v)|
+     */
+    public double amplitude(int u, int v) {
+        checkEntry(u, v);
+        if (re == null) {
+            return amplitude.get(u, v);
+        }
+        int i = index(u, v);
+        return Math.sqrt(re[i] * re[i] + im[i] * im[i]);
+    }
+
+    /**
+     * Obtain the phase of an entry of the output.
+     *
+     * @param u the frequency along the breadth, 0 <= u < breadth
+     * @param v the frequency along the length, 0 <= v < length
+     * @return the phase of F(u, v) in radians, in the range [-pi, pi]
+     */
+    public double phase(int u, int v) {
+        checkEntry(u, v);
+        if (re == null) {
+            return phase.get(u, v);
+        }
+        int i = index(u, v);
+        double imaginary = u < half ? im[i] : -im[i];
+        // adding 0.0 turns -0.0 into 0.0, so real negative entries have phase pi
+        return Math.atan2(imaginary + 0.0, re[i]);
+    }
+
+    /**
+     * @return the breadth-by-length matrix whose entry at (u, v) is {@link #amplitude(int, int)}
+     */
+    public NestedMatrix amplitude() {
+        NestedMatrix result = amplitude;
+        if (result == null) {
+            result = NestedMatrix.tabulate(breadth, length, this::amplitude);
+            amplitude = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return the breadth-by-length matrix whose entry at (u, v) is {@link #phase(int, int)}
+     */
+    public NestedMatrix phase() {
+        NestedMatrix result = phase;
+        if (result == null) {
+            result = NestedMatrix.tabulate(breadth, length, this::phase);
+            phase = result;
+        }
+        return result;
+    }
+
+    /**
+     * Transform the output back into a picture: the inverse of {@link PictureConvertor#dft()}.
+     * <p>
+     * The gray level of each pixel is the real part of the inverse transform, rounded and
+     * clamped to [0, 255]; the imaginary part, which is zero for the output of
+     * {@link PictureConvertor#dft()}, is dropped. The inverse of the transform of a picture
+     * is therefore its grayscale version, up to rounding.
+     *
+     * @return a breadth-by-length gray picture, with red, green and blue equal at every pixel
+     */
+    public Picture inverse() {
+        double[] values = new double[breadth * length];
+        DFTOutput hermitian = hermitian();
+        FFTPlan.inverseReal2D(hermitian.re, hermitian.im, breadth, length, values);
+        byte[] levels = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            levels[i] = (byte) Math.max(0, Math.min(255, Math.round(values[i])));
+        }
+        return GrayPicture.wrap(levels, breadth, length).toPicture();
+    }
+
+    /**
+     * Filter the output in the frequency domain, multiplying each entry by the weight
+     * a mask gives its frequency. For example, <code>dft.filter(FrequencyMask.lowPass(0.1)).inverse()</code>
+     * blurs a picture by removing its details finer than about ten pixels.
+     *
+     * @param mask the mask to apply, is not null
+     * @return the filtered output
+     */
+    public DFTOutput filter(FrequencyMask mask) {
+        if (mask == null) {
+            throw new IllegalArgumentException("mask must not be null");
+        }
+        DFTOutput hermitian = hermitian();
+        double[] filteredRe = new double[hermitian.re.length];
+        double[] filteredIm = new double[hermitian.im.length];
+        for (int v = 0, i = 0; v < length; v++) {
+            double fy = (double) (v <= length / 2 ? v : v - length) / length;
+            for (int u = 0; u < half; u++, i++) {
+                double weight = mask.weight((double) u / breadth, fy);
+                filteredRe[i] = hermitian.re[i] * weight;
+                filteredIm[i] = hermitian.im[i] * weight;
+            }
+        }
+        return new DFTOutput(breadth, length, filteredRe, filteredIm);
+    }
+
+    /**
+     * Obtain the output in the compact complex form. An output given by amplitude and
+     * phase is replaced by its Hermitian part, (F(u, v) + conj(F(-u, -v))) / 2, which is
+     * itself when it is the transform of a real picture.
+     */
+    private DFTOutput hermitian() {
+        if (re != null) {
+            return this;
+        }
+        double[] hermitianRe = new double[half * length];
+        double[] hermitianIm = new double[half * length];
+        for (int v = 0, i = 0; v < length; v++) {
+            for (int u = 0; u < half; u++, i++) {
+                int mirrorU = (breadth - u) % breadth;
+                int mirrorV = (length - v) % length;
+                hermitianRe[i] = (real(u, v) + real(mirrorU, mirrorV)) / 2;
+                hermitianIm[i] = (imaginary(u, v) - imaginary(mirrorU, mirrorV)) / 2;
+            }
+        }
+        return new DFTOutput(breadth, length, hermitianRe, hermitianIm);
     }
 
     @Override
@@ -47,11 +271,38 @@ public class DFTOutput {
             return false;
         }
         DFTOutput other = (DFTOutput) o;
-        return amplitude.equals(other.amplitude) && phase.equals(other.phase);
+        if (breadth != other.breadth || length != other.length) {
+            return false;
+        }
+        for (int u = 0; u < breadth; u++) {
+            for (int v = 0; v < length; v++) {
+                if (Math.abs(amplitude(u, v) - other.amplitude(u, v)) > NestedMatrix.epsilon
+                    || Math.abs(phase(u, v) - other.phase(u, v)) > NestedMatrix.epsilon) {
+                    return false;
+                }
+            }
+        }
+        return true;
     }
 
     @Override
     public int hashCode() {
-        return amplitude.hashCode();
+        return breadth * length;
+    }
+
+    /**
+     * Find the stored coefficient that entry [u][v] is, or is the conjugate of.
+     */
+    private int index(int u, int v) {
+        if (u < half) {
+            return v * half + u;
+        }
+        return ((length - v) % length) * half + (breadth - u);
+    }
+
+    private void checkEntry(int u, int v) {
+        if (u < 0 || u >= breadth || v < 0 || v >= length) {
+            throw new IndexOutOfBoundsException("[" + u + "][" + v + "] is outside the output");
+        }
     }
 }
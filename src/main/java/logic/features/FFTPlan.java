@@ -0,0 +1,427 @@
+package logic.features;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * This datatype represents a precomputed plan for the fast Fourier transform
+ * of complex sequences of one fixed length.
+ * <p>
+ * Lengths that are powers of two are transformed with an iterative radix-2
+ * algorithm. Every other length is transformed with Bluestein's algorithm,
+ * which rewrites the transform as a convolution that is evaluated with a
+ * radix-2 transform of a larger, padded length. Either way the cost is
+ * O(n log n).
+ * <p>
+ * Plans are immutable and are shared through {@link #forLength(int)}, so the
+ * twiddle factors for a given length are computed only once and reused by
+ * every picture of that size. Plans for powers of two, of which there are at most 31,
+ * are kept for good; plans for other lengths are kept for the few lengths used most
+ * recently, so a long run over pictures of many sizes does not keep them all.
+ */
+public final class FFTPlan {
+
+    /** The number of plans for lengths that are not powers of two kept by {@link #forLength(int)}. */
+    private static final int RECENT_PLANS = 16;
+
+    private static final ConcurrentMap<Integer, FFTPlan> POWER_OF_TWO_PLANS = new ConcurrentHashMap<>();
+    // guarded by itself, iterates from the least to the most recently used plan
+    private static final LinkedHashMap<Integer, FFTPlan> BLUESTEIN_PLANS = new LinkedHashMap<>(16, 0.75f, true);
+
+    private final int n;
+
+    // radix-2 plans
+    private final int[] bitReverse;
+    private final double[] twiddleRe;
+    private final double[] twiddleIm;
+
+    // Bluestein plans
+    private final FFTPlan padded;
+    private final double[] chirpRe;
+    private final double[] chirpIm;
+    private final double[] filterRe;
+    private final double[] filterIm;
+
+    /*
+        Abstraction Function:
+            Represents the discrete Fourier transform of length n,
+            X[k] = sum over j of x[j] * exp(-2 pi i j k / n).
+            If n is a power of two, twiddleRe[k] + i twiddleIm[k] = exp(-2 pi i k / n)
+            for 0 <= k < n / 2 and bitReverse is the radix-2 input permutation.
+            Otherwise chirpRe[k] + i chirpIm[k] = exp(-pi i k^2 / n) and
+            filterRe + i filterIm is the transform (by padded) of the conjugate chirp
+            laid out for a circular convolution of length padded.n.
+
+        Representation Invariant:
+            n >= 1
+            exactly one of bitReverse and padded is null
+            padded == null or padded.n >= 2 * n - 1 and padded.n is a power of two
+     */
+
+    private FFTPlan(int n) {
+        this.n = n;
+        if (Integer.bitCount(n) == 1) {
+            bitReverse = new int[n];
+            int bits = Integer.numberOfTrailingZeros(n);
+            for (int i = 0; i < n; i++) {
+                bitReverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            }
+            twiddleRe = new double[n / 2];
+            twiddleIm = new double[n / 2];
+            for (int k = 0; k < n / 2; k++) {
+                double angle = -2 * Math.PI * k / n;
+                twiddleRe[k] = Math.cos(angle);
+                twiddleIm[k] = Math.sin(angle);
+            }
+            padded = null;
+            chirpRe = chirpIm = filterRe = filterIm = null;
+        } else {
+            bitReverse = null;
+            twiddleRe = twiddleIm = null;
+            padded = forLength(Integer.highestOneBit(2 * n - 1) << 1);
+            int m = padded.n;
+            chirpRe = new double[n];
+            chirpIm = new double[n];
+            for (int k = 0; k < n; k++) {
+                // reduce k^2 modulo 2n before scaling to keep the angle accurate
+                long k2 = ((long) k * k) % (2L * n);
+                double angle = -Math.PI * k2 / n;
+                chirpRe[k] = Math.cos(angle);
+                chirpIm[k] = Math.sin(angle);
+            }
+            filterRe = new double[m];
+            filterIm = new double[m];
+            filterRe[0] = chirpRe[0];
+            filterIm[0] = -chirpIm[0];
+            for (int k = 1; k < n; k++) {
+                filterRe[k] = filterRe[m - k] = chirpRe[k];
+                filterIm[k] = filterIm[m - k] = -chirpIm[k];
+            }
+            padded.transform(filterRe, filterIm, false);
+        }
+    }
+
+    /**
+     * Obtain the plan for transforms of a given length, creating it if it is not cached.
+     *
+     * @param n the length of the sequences to transform, n >= 1
+     * @return the plan for length n
+     */
+    public static FFTPlan forLength(int n) {
+        if (n < 1) {
+            throw new IllegalArgumentException("transform length must be positive");
+        }
+        if (Integer.bitCount(n) == 1) {
+            return POWER_OF_TWO_PLANS.computeIfAbsent(n, FFTPlan::new);
+        }
+        synchronized (BLUESTEIN_PLANS) {
+            FFTPlan plan = BLUESTEIN_PLANS.get(n);
+            if (plan != null) {
+                return plan;
+            }
+        }
+        // built outside the lock, so two threads may both build it; either plan will do
+        FFTPlan plan = new FFTPlan(n);
+        synchronized (BLUESTEIN_PLANS) {
+            FFTPlan existing = BLUESTEIN_PLANS.putIfAbsent(n, plan);
+            Iterator<FFTPlan> oldest = BLUESTEIN_PLANS.values().iterator();
+            while (BLUESTEIN_PLANS.size() > RECENT_PLANS) {
+                oldest.next();
+                oldest.remove();
+            }
+            return existing != null ? existing : plan;
+        }
+    }
+
+    /**
+     * Obtain the length of the sequences this plan transforms.
+     *
+     * @return the transform length
+     */
+    public int length() {
+        return n;
+    }
+
+    /**
+     * Transform the complex sequence held in the first {@code length()} entries of
+     * {@code re} and {@code im} in place. The forward transform uses the kernel
+     * exp(-2 pi i j k / n) and is unscaled; the inverse transform uses
+     * exp(+2 pi i j k / n) and divides by n, so that it undoes the forward transform.
+     *
+     * @param re      the real parts, has at least {@code length()} entries
+     * @param im      the imaginary parts, has at least {@code length()} entries
+     * @param inverse true for the inverse transform, false for the forward transform
+     */
+    public void transform(double[] re, double[] im, boolean inverse) {
+        transform(re, im, inverse, newWorkspace());
+    }
+
+    /**
+     * Obtain scratch space for {@link #transform(double[], double[], boolean, double[][])},
+     * which can be reused by every transform of this plan on one thread.
+     *
+     * @return the scratch space, or null if the plan needs none
+     */
+    private double[][] newWorkspace() {
+        return padded == null ? null : new double[2][padded.n];
+    }
+
+    private void transform(double[] re, double[] im, boolean inverse, double[][] workspace) {
+        if (re.length < n || im.length < n) {
+            throw new IllegalArgumentException("arrays are shorter than the transform length " + n);
+        }
+        if (inverse) {
+            // IDFT(x) = conj(DFT(conj(x))) / n
+            for (int i = 0; i < n; i++) {
+                im[i] = -im[i];
+            }
+        }
+        if (bitReverse != null) {
+            radix2(re, im);
+        } else {
+            bluestein(re, im, workspace);
+        }
+        if (inverse) {
+            double scale = 1.0 / n;
+            for (int i = 0; i < n; i++) {
+                re[i] *= scale;
+                im[i] = -im[i] * scale;
+            }
+        }
+    }
+
+    private void radix2(double[] re, double[] im) {
+        for (int i = 0; i < n; i++) {
+            int j = bitReverse[i];
+            if (j > i) {
+                double t = re[i];
+                re[i] = re[j];
+                re[j] = t;
+                t = im[i];
+                im[i] = im[j];
+                im[j] = t;
+            }
+        }
+        for (int size = 2; size <= n; size <<= 1) {
+            int half = size >> 1;
+            int step = n / size;
+            for (int start = 0; start < n; start += size) {
+                for (int k = 0, t = 0; k < half; k++, t += step) {
+                    int a = start + k;
+                    int b = a + half;
+                    double wr = twiddleRe[t];
+                    double wi = twiddleIm[t];
+                    double xr = re[b] * wr - im[b] * wi;
+                    double xi = re[b] * wi + im[b] * wr;
+                    re[b] = re[a] - xr;
+                    im[b] = im[a] - xi;
+                    re[a] += xr;
+                    im[a] += xi;
+                }
+            }
+        }
+    }
+
+    private void bluestein(double[] re, double[] im, double[][] workspace) {
+        int m = padded.n;
+        double[] ar = workspace[0];
+        double[] ai = workspace[1];
+        for (int k = 0; k < n; k++) {
+            ar[k] = re[k] * chirpRe[k] - im[k] * chirpIm[k];
+            ai[k] = re[k] * chirpIm[k] + im[k] * chirpRe[k];
+        }
+        for (int k = n; k < m; k++) {
+            ar[k] = 0;
+            ai[k] = 0;
+        }
+        padded.transform(ar, ai, false);
+        for (int k = 0; k < m; k++) {
+            double r = ar[k] * filterRe[k] - ai[k] * filterIm[k];
+            ai[k] = ar[k] * filterIm[k] + ai[k] * filterRe[k];
+            ar[k] = r;
+        }
+        padded.transform(ar, ai, true);
+        for (int k = 0; k < n; k++) {
+            re[k] = ar[k] * chirpRe[k] - ai[k] * chirpIm[k];
+            im[k] = ar[k] * chirpIm[k] + ai[k] * chirpRe[k];
+        }
+    }
+
+    /**
+     * Transform a {@code width}-by-{@code height} complex array, stored row by row,
+     * in place by transforming every row and then every column.
+     *
+     * @param re      the real parts, has at least width * height entries
+     * @param im      the imaginary parts, has at least width * height entries
+     * @param width   the number of columns, >= 1
+     * @param height  the number of rows, >= 1
+     * @param inverse true for the inverse transform, false for the forward transform
+     */
+    public static void transform2D(double[] re, double[] im, int width, int height, boolean inverse) {
+        FFTPlan rows = forLength(width);
+        FFTPlan columns = forLength(height);
+        double[] lineRe = new double[Math.max(width, height)];
+        double[] lineIm = new double[lineRe.length];
+        double[][] rowWorkspace = rows.newWorkspace();
+        double[][] columnWorkspace = columns.newWorkspace();
+
+        for (int y = 0; y < height; y++) {
+            int start = y * width;
+            System.arraycopy(re, start, lineRe, 0, width);
+            System.arraycopy(im, start, lineIm, 0, width);
+            rows.transform(lineRe, lineIm, inverse, rowWorkspace);
+            System.arraycopy(lineRe, 0, re, start, width);
+            System.arraycopy(lineIm, 0, im, start, width);
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0, i = x; y < height; y++, i += width) {
+                lineRe[y] = re[i];
+                lineIm[y] = im[i];
+            }
+            columns.transform(lineRe, lineIm, inverse, columnWorkspace);
+            for (int y = 0, i = x; y < height; y++, i += width) {
+                re[i] = lineRe[y];
+                im[i] = lineIm[y];
+            }
+        }
+    }
+
+    /**
+     * Transform a real {@code width}-by-{@code height} array, stored row by row, keeping
+     * only the columns 0 &lt;= x &lt;= width / 2 of the result. The transform of real input
+     * is Hermitian, X[x][y] = conj(X[width - x][(height - y) % height]) for 0 &lt; x &lt; width,
+     * so the other columns follow from these.
+     * <p>
+     * Rows are transformed two at a time, as the real and imaginary parts of one complex
+     * row, and only the kept columns are transformed afterwards, so this takes about half
+     * the time of {@link #transform2D} on the same array. Entries that are real for every
+     * real input, at x and y equal to 0 or to half the width or height, get imaginary
+     * parts of exactly zero.
+     *
+     * @param values the real array, has at least width * height entries, is not changed
+     * @param width  the number of columns, >= 1
+     * @param height the number of rows, >= 1
+     * @param re     receives the real parts of the kept columns, row by row, and has at
+     *               least (width / 2 + 1) * height entries
+     * @param im     receives the imaginary parts, laid out as re
+     */
+    public static void transformReal2D(double[] values, int width, int height, double[] re, double[] im) {
+        int half = width / 2 + 1;
+        if (values.length < width * height || re.length < half * height || im.length < half * height) {
+            throw new IllegalArgumentException("arrays are shorter than the transform needs");
+        }
+        FFTPlan rows = forLength(width);
+        FFTPlan columns = forLength(height);
+        double[] lineRe = new double[Math.max(width, height)];
+        double[] lineIm = new double[lineRe.length];
+        double[][] rowWorkspace = rows.newWorkspace();
+        double[][] columnWorkspace = columns.newWorkspace();
+
+        for (int y = 0; y < height; y += 2) {
+            boolean pair = y + 1 < height;
+            System.arraycopy(values, y * width, lineRe, 0, width);
+            if (pair) {
+                System.arraycopy(values, (y + 1) * width, lineIm, 0, width);
+            } else {
+                Arrays.fill(lineIm, 0, width, 0);
+            }
+            rows.transform(lineRe, lineIm, false, rowWorkspace);
+            // with z = a + i b, A[k] = (Z[k] + conj(Z[-k])) / 2 and B[k] = (Z[k] - conj(Z[-k])) / 2i
+            for (int x = 0, i = y * half; x < half; x++, i++) {
+                int mirror = x == 0 ? 0 : width - x;
+                re[i] = (lineRe[x] + lineRe[mirror]) / 2;
+                im[i] = (lineIm[x] - lineIm[mirror]) / 2;
+                if (pair) {
+                    re[i + half] = (lineIm[x] + lineIm[mirror]) / 2;
+                    im[i + half] = (lineRe[mirror] - lineRe[x]) / 2;
+                }
+            }
+        }
+        for (int x = 0; x < half; x++) {
+            for (int y = 0, i = x; y < height; y++, i += half) {
+                lineRe[y] = re[i];
+                lineIm[y] = im[i];
+            }
+            columns.transform(lineRe, lineIm, false, columnWorkspace);
+            for (int y = 0, i = x; y < height; y++, i += half) {
+                re[i] = lineRe[y];
+                im[i] = lineIm[y];
+            }
+        }
+        for (int x = 0; x < half; x += Math.max(1, width / 2)) {
+            if (2 * x % width == 0) {
+                im[x] = 0;
+                if (height % 2 == 0) {
+                    im[height / 2 * half + x] = 0;
+                }
+            }
+        }
+    }
+
+    /**
+     * Undo {@link #transformReal2D}: compute the real {@code width}-by-{@code height} array
+     * whose transform has the given columns 0 &lt;= x &lt;= width / 2, the other columns being
+     * their Hermitian mirror. If the columns given are not exactly those of the transform
+     * of a real array, the result is the real part of the inverse transform of the
+     * Hermitian array they describe.
+     *
+     * @param re     the real parts of the columns, row by row, has at least
+     *               (width / 2 + 1) * height entries, is not changed
+     * @param im     the imaginary parts, laid out as re, is not changed
+     * @param width  the number of columns of the result, >= 1
+     * @param height the number of rows of the result, >= 1
+     * @param values receives the result, row by row, and has at least width * height entries
+     */
+    public static void inverseReal2D(double[] re, double[] im, int width, int height, double[] values) {
+        int half = width / 2 + 1;
+        if (values.length < width * height || re.length < half * height || im.length < half * height) {
+            throw new IllegalArgumentException("arrays are shorter than the transform needs");
+        }
+        FFTPlan rows = forLength(width);
+        FFTPlan columns = forLength(height);
+        double[] lineRe = new double[Math.max(width, height)];
+        double[] lineIm = new double[lineRe.length];
+        double[][] rowWorkspace = rows.newWorkspace();
+        double[][] columnWorkspace = columns.newWorkspace();
+        double[] spectrumRe = new double[half * height];
+        double[] spectrumIm = new double[half * height];
+
+        for (int x = 0; x < half; x++) {
+            for (int y = 0, i = x; y < height; y++, i += half) {
+                lineRe[y] = re[i];
+                lineIm[y] = im[i];
+            }
+            columns.transform(lineRe, lineIm, true, columnWorkspace);
+            // the rows of a Hermitian array are the transforms of real rows, so these are real
+            boolean real = 2 * x % width == 0;
+            for (int y = 0, i = x; y < height; y++, i += half) {
+                spectrumRe[i] = lineRe[y];
+                spectrumIm[i] = real ? 0 : lineIm[y];
+            }
+        }
+        for (int y = 0; y < height; y += 2) {
+            boolean pair = y + 1 < height;
+            int a = y * half;
+            int b = a + half;
+            // Z = A + i B, so that the inverse transform of Z is a + i b
+            for (int x = 0; x < width; x++) {
+                int k = x < half ? x : width - x;
+                double sign = x < half ? 1 : -1;
+                double ar = spectrumRe[a + k];
+                double ai = sign * spectrumIm[a + k];
+                double br = pair ? spectrumRe[b + k] : 0;
+                double bi = pair ? sign * spectrumIm[b + k] : 0;
+                lineRe[x] = ar - bi;
+                lineIm[x] = ai + br;
+            }
+            rows.transform(lineRe, lineIm, true, rowWorkspace);
+            System.arraycopy(lineRe, 0, values, y * width, width);
+            if (pair) {
+                System.arraycopy(lineIm, 0, values, (y + 1) * width, width);
+            }
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package logic.features;
+
+import java.util.function.DoubleBinaryOperator;
+
+/**
+ * This datatype represents an <strong>immutable</strong> filter in the frequency domain:
+ * a weight by which each coefficient of a {@link DFTOutput} is multiplied.
+ * <p>
+ * Weights depend on the signed frequency (fx, fy) of a coefficient in cycles per pixel,
+ * where entry [u][v] of the transform of a breadth-by-length picture has
+ * fx = u / breadth for u &lt;= breadth / 2 and fx = (u - breadth) / breadth otherwise,
+ * and likewise fy for v and length. Both lie in [-0.5, 0.5], and the distance
+ * sqrt(fx^2 + fy^2) from the zero frequency is at most about 0.707.
+ * <p>
+ * Every mask weighs (fx, fy) and (-fx, -fy) alike, so filtering the transform of a picture
+ * keeps it the transform of a real picture. The masks are ideal: their weights are 0 or 1,
+ * which keeps or removes frequencies exactly but can add ringing near sharp edges.
+ */
+public final class FrequencyMask {
+
+    private final DoubleBinaryOperator weight;
+
+    /*
+        Abstraction Function:
+            Represents the filter that multiplies the coefficient at frequency (fx, fy)
+            by weight.applyAsDouble(fx, fy).
+
+        Representation Invariant:
+            weight.applyAsDouble(fx, fy) == weight.applyAsDouble(-fx, -fy) for all fx, fy
+     */
+
+    private FrequencyMask(DoubleBinaryOperator weight) {
+        this.weight = weight;
+    }
+
+    /**
+     * Create a mask that keeps the frequencies no farther than a cutoff from zero.
+     *
+     * @param cutoff the largest distance kept, in cycles per pixel, >= 0
+     * @return the low-pass mask
+     */
+    public static FrequencyMask lowPass(double cutoff) {
+        checkDistance(cutoff);
+        return new FrequencyMask((fx, fy) -> Math.hypot(fx, fy) <= cutoff ? 1 : 0);
+    }
+
+    /**
+     * Create a mask that keeps the frequencies farther than a cutoff from zero. It keeps
+     * exactly the frequencies that {@link #lowPass(double)} with the same cutoff removes.
+     *
+     * @param cutoff the largest distance removed, in cycles per pixel, >= 0
+     * @return the high-pass mask
+     */
+    public static FrequencyMask highPass(double cutoff) {
+        checkDistance(cutoff);
+        return new FrequencyMask((fx, fy) -> Math.hypot(fx, fy) > cutoff ? 1 : 0);
+    }
+
+    /**
+     * Create a mask that keeps the frequencies whose distance from zero is more than low
+     * and at most high, as <code>highPass(low).and(lowPass(high))</code> does.
+     *
+     * @param low  the largest distance removed below the band, in cycles per pixel, >= 0
+     * @param high the largest distance kept, in cycles per pixel, >= low
+     * @return the band-pass mask
+     */
+    public static FrequencyMask bandPass(double low, double high) {
+        checkDistance(low);
+        checkDistance(high);
+        if (high < low) {
+            throw new IllegalArgumentException("the band must not end before it starts");
+        }
+        return new FrequencyMask((fx, fy) -> {
+            double distance = Math.hypot(fx, fy);
+            return distance > low && distance <= high ? 1 : 0;
+        });
+    }
+
+    /**
+     * Create a mask that removes the frequencies near a given one, and near its opposite,
+     * and keeps all others. Notches remove periodic patterns such as scan lines or
+     * halftone screens; several are combined with {@link #and(FrequencyMask)}.
+     *
+     * @param fx     the frequency to remove along the breadth, in cycles per pixel
+     * @param fy     the frequency to remove along the length, in cycles per pixel
+     * @param radius the largest distance from (fx, fy) or (-fx, -fy) removed, >= 0
+     * @return the notch mask
+     */
+    public static FrequencyMask notch(double fx, double fy, double radius) {
+        checkDistance(radius);
+        if (!Double.isFinite(fx) || !Double.isFinite(fy)) {
+            throw new IllegalArgumentException("the frequency must be finite");
+        }
+        return new FrequencyMask((x, y) ->
+            Math.hypot(x - fx, y - fy) <= radius || Math.hypot(x + fx, y + fy) <= radius ? 0 : 1);
+    }
+
+    /**
+     * Combine this mask with another, so that a frequency is weighed by both.
+     *
+     * @param other the other mask, is not null
+     * @return the mask whose weight at each frequency is the product of the weights
+     * of the instance and other
+     */
+    public FrequencyMask and(FrequencyMask other) {
+        if (other == null) {
+            throw new IllegalArgumentException("other must not be null");
+        }
+        return new FrequencyMask((fx, fy) -> weight.applyAsDouble(fx, fy) * other.weight.applyAsDouble(fx, fy));
+    }
+
+    /**
+     * Obtain the weight of a frequency.
+     *
+     * @param fx the frequency along the breadth, in cycles per pixel
+     * @param fy the frequency along the length, in cycles per pixel
+     * @return the weight the coefficient at (fx, fy) is multiplied by
+     */
+    public double weight(double fx, double fy) {
+        return weight.applyAsDouble(fx, fy);
+    }
+
+    private static void checkDistance(double distance) {
+        if (!(distance >= 0) || Double.isInfinite(distance)) {
+            throw new IllegalArgumentException("distances must be finite and not negative");
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package logic.features;
+
+import logic.core.Picture;
+
+/**
+ * Exact, lossless rearrangements of the pixels of a picture: flips, transposes and
+ * rotations by multiples of 90 degrees.
+ * <p>
+ * Kernels copy raw raster entries and never decode colours. Transposing kernels walk the
+ * output in square tiles of {@value #TILE} by {@value #TILE} pixels, so that the source
+ * rows read by a tile and the output rows written by it both stay in cache; a plain
+ * row-by-row transpose touches a new cache line on every read once the picture is wider
+ * than the cache.
+ */
+final class GeometryKernels {
+
+    static final int TILE = 64;
+
+    private GeometryKernels() {
+    }
+
+    /**
+     * Write rows [from, to) of {@code src} with its row order reversed into {@code dst},
+     * or with its column order reversed as well if {@code reverseColumns}.
+     *
+     * @param src            the picture to flip, is not null
+     * @param dst            the picture receiving the result, with the same dimensions as src
+     * @param reverseColumns true to also reverse the order of the columns
+     * @param from           the first output row to produce
+     * @param to             one past the last output row to produce
+     */
+    static void flipRows(Picture src, Picture dst, boolean reverseColumns, int from, int to) {
+        int breadth = src.breadth();
+        int length = src.length();
+        int[] in = src.raster();
+        int[] out = dst.raster();
+        for (int row = from; row < to; row++) {
+            int s = src.rowOffset(length - 1 - row);
+            int d = dst.rowOffset(row);
+            if (reverseColumns) {
+                for (int col = 0, last = s + breadth - 1; col < breadth; col++) {
+                    out[d + col] = in[last - col];
+                }
+            } else {
+                System.arraycopy(in, s, out, d, breadth);
+            }
+        }
+    }
+
+    /**
+     * Write rows [from, to) of a transpose of {@code src} into {@code dst}: output pixel
+     * (col, row) is source pixel (x, y) with x = row, or breadth - 1 - row if
+     * {@code reverseX}, and y = col, or length - 1 - col if {@code reverseY}.
+     *
+     * @param src      the picture to transpose, is not null
+     * @param dst      the picture receiving the result, with src's dimensions swapped
+     * @param reverseX true to read source columns from right to left
+     * @param reverseY true to read source rows from bottom to top
+     * @param from     the first output row to produce
+     * @param to       one past the last output row to produce
+     */
+    static void transposeRows(Picture src, Picture dst, boolean reverseX, boolean reverseY,
+                              int from, int to) {
+        int srcBreadth = src.breadth();
+        int srcLength = src.length();
+        int[] in = src.raster();
+        int[] out = dst.raster();
+        // sourceRows[col]: offset of the source row read by output column col
+        int[] sourceRows = new int[srcLength];
+        for (int col = 0; col < srcLength; col++) {
+            sourceRows[col] = src.rowOffset(reverseY ? srcLength - 1 - col : col);
+        }
+        for (int rowTile = from; rowTile < to; rowTile += TILE) {
+            int rowEnd = Math.min(to, rowTile + TILE);
+            for (int colTile = 0; colTile < srcLength; colTile += TILE) {
+                int colEnd = Math.min(srcLength, colTile + TILE);
+                for (int row = rowTile; row < rowEnd; row++) {
+                    int x = reverseX ? srcBreadth - 1 - row : row;
+                    int d = dst.rowOffset(row);
+                    for (int col = colTile; col < colEnd; col++) {
+                        out[d + col] = in[sourceRows[col] + x];
+                    }
+                }
+            }
+        }
+    }
+}
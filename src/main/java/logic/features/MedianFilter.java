@@ -0,0 +1,316 @@
+package logic.features;
+
+import logic.core.Picture;
+
+import java.util.Arrays;
+
+/**
+ * Median filtering of pictures, one colour channel at a time, over square windows
+ * of side 2 * radius + 1.
+ * <p>
+ * Windows are clipped to the picture, so pixels near the border take the median of
+ * fewer values. When a clipped window holds an even number of values, the median is
+ * the mean of the two middle values, rounded down.
+ * <p>
+ * Radius 1 uses a median-of-9 sorting network for interior pixels. Larger radii use
+ * the Perreault-H&eacute;bert algorithm: one 256-bin histogram per column, and a kernel
+ * histogram that slides along each row by adding and removing whole column histograms.
+ * The kernel histogram is split into 16 coarse and 256 fine bins, and fine bins are only
+ * brought up to date for the coarse bin that holds the median. The cost per pixel
+ * therefore does not depend on the radius.
+ */
+final class MedianFilter {
+
+    private static final int BINS = 256;
+    private static final int COARSE = 16;
+
+    private MedianFilter() {
+    }
+
+    /**
+     * Write the median-filtered rows [from, to) of {@code src} into {@code dst}.
+     *
+     * @param src    the picture to filter, is not null
+     * @param dst    the picture receiving the result, with the same dimensions as src
+     * @param radius the radius of the window, >= 1
+     * @param from   the first row to produce
+     * @param to     one past the last row to produce
+     */
+    static void filterRows(Picture src, Picture dst, int radius, int from, int to) {
+        if (radius == 1) {
+            median3x3(src, dst, from, to);
+        } else {
+            new HistogramMedian(src, radius, from, to).filterInto(dst);
+        }
+    }
+
+    private static void median3x3(Picture src, Picture dst, int from, int to) {
+        int breadth = src.breadth();
+        int length = src.length();
+        int[] above = new int[breadth];
+        int[] centre = new int[breadth];
+        int[] below = new int[breadth];
+        int[] out = new int[breadth];
+        int[] window = new int[9];
+
+        for (int row = from; row < to; row++) {
+            boolean interiorRow = row > 0 && row < length - 1;
+            src.getRGBRow(row, centre);
+            if (interiorRow) {
+                src.getRGBRow(row - 1, above);
+                src.getRGBRow(row + 1, below);
+            }
+            for (int col = 0; col < breadth; col++) {
+                if (interiorRow && col > 0 && col < breadth - 1) {
+                    int rgb = 0;
+                    for (int shift = 16; shift >= 0; shift -= 8) {
+                        int median = median9(
+                            above[col - 1] >> shift & 0xFF, above[col] >> shift & 0xFF,
+                            above[col + 1] >> shift & 0xFF, centre[col - 1] >> shift & 0xFF,
+                            centre[col] >> shift & 0xFF, centre[col + 1] >> shift & 0xFF,
+                            below[col - 1] >> shift & 0xFF, below[col] >> shift & 0xFF,
+                            below[col + 1] >> shift & 0xFF);
+                        rgb |= median << shift;
+                    }
+                    out[col] = rgb;
+                } else {
+                    out[col] = clippedMedian(src, col, row, window);
+                }
+            }
+            dst.setRGBRow(row, out);
+        }
+    }
+
+    /**
+     * Median of nine values with a fixed network of 19 compare-exchanges.
+     */
+    private static int median9(int p0, int p1, int p2, int p3, int p4, int p5, int p6, int p7, int p8) {
+        int t;
+        t = Math.min(p1, p2); p2 = Math.max(p1, p2); p1 = t;
+        t = Math.min(p4, p5); p5 = Math.max(p4, p5); p4 = t;
+        t = Math.min(p7, p8); p8 = Math.max(p7, p8); p7 = t;
+        t = Math.min(p0, p1); p1 = Math.max(p0, p1); p0 = t;
+        t = Math.min(p3, p4); p4 = Math.max(p3, p4); p3 = t;
+        t = Math.min(p6, p7); p7 = Math.max(p6, p7); p6 = t;
+        t = Math.min(p1, p2); p2 = Math.max(p1, p2); p1 = t;
+        t = Math.min(p4, p5); p5 = Math.max(p4, p5); p4 = t;
+        t = Math.min(p7, p8); p8 = Math.max(p7, p8); p7 = t;
+        p3 = Math.max(p0, p3);
+        p5 = Math.min(p5, p8);
+        t = Math.min(p4, p7); p7 = Math.max(p4, p7); p4 = t;
+        p6 = Math.max(p3, p6);
+        p4 = Math.max(p1, p4);
+        p2 = Math.min(p2, p5);
+        p4 = Math.min(p4, p7);
+        t = Math.min(p4, p2); p2 = Math.max(p4, p2); p4 = t;
+        p4 = Math.max(p6, p4);
+        return Math.min(p4, p2);
+    }
+
+    /**
+     * Median of the 3x3 window around a border pixel, clipped to the picture.
+     */
+    private static int clippedMedian(Picture src, int col, int row, int[] window) {
+        int rgb = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int count = 0;
+            for (int y = Math.max(0, row - 1); y <= Math.min(src.length() - 1, row + 1); y++) {
+                for (int x = Math.max(0, col - 1); x <= Math.min(src.breadth() - 1, col + 1); x++) {
+                    int value = src.getRGB(x, y) >> shift & 0xFF;
+                    int i = count++;
+                    while (i > 0 && window[i - 1] > value) {
+                        window[i] = window[i - 1];
+                        i--;
+                    }
+                    window[i] = value;
+                }
+            }
+            int median = count % 2 == 0
+                ? (window[count / 2] + window[count / 2 - 1]) / 2
+                : window[count / 2];
+            rgb |= median << shift;
+        }
+        return rgb;
+    }
+
+    /**
+     * Perreault-H&eacute;bert median filter over one band of rows.
+     */
+    private static final class HistogramMedian {
+        private final int breadth;
+        private final int length;
+        private final int radius;
+        private final int from;
+        private final int to;
+        private final int firstInputRow;
+        private final byte[][] channels;         // the input rows of the band, one plane per channel
+
+        private final int[] columns;             // columns[c * BINS + v]: count of v in column c
+        private final int[] columnsCoarse;       // columnsCoarse[c * COARSE + b]: count of v >> 4 == b in column c
+        private final int[] kernelCoarse = new int[COARSE];
+        private final int[] kernelFine = new int[BINS];
+        private final int[] fineColumn = new int[COARSE];  // window start column kernelFine[b] reflects
+
+        HistogramMedian(Picture src, int radius, int from, int to) {
+            this.breadth = src.breadth();
+            this.length = src.length();
+            this.radius = radius;
+            this.from = from;
+            this.to = to;
+            this.firstInputRow = Math.max(0, from - radius);
+            int lastInputRow = Math.min(length, to + radius);
+            int rows = lastInputRow - firstInputRow;
+            channels = new byte[3][rows * breadth];
+            int[] line = new int[breadth];
+            for (int y = 0; y < rows; y++) {
+                src.getRGBRow(firstInputRow + y, line);
+                for (int x = 0; x < breadth; x++) {
+                    channels[0][y * breadth + x] = (byte) (line[x] >> 16);
+                    channels[1][y * breadth + x] = (byte) (line[x] >> 8);
+                    channels[2][y * breadth + x] = (byte) line[x];
+                }
+            }
+            columns = new int[breadth * BINS];
+            columnsCoarse = new int[breadth * COARSE];
+        }
+
+        void filterInto(Picture dst) {
+            int[][] medians = new int[3][];
+            for (int c = 0; c < 3; c++) {
+                medians[c] = filterChannel(channels[c]);
+            }
+            int[] out = new int[breadth];
+            for (int row = from; row < to; row++) {
+                int start = (row - from) * breadth;
+                for (int col = 0; col < breadth; col++) {
+                    out[col] = medians[0][start + col] << 16
+                        | medians[1][start + col] << 8
+                        | medians[2][start + col];
+                }
+                dst.setRGBRow(row, out);
+            }
+        }
+
+        private int[] filterChannel(byte[] plane) {
+            int[] result = new int[(to - from) * breadth];
+            Arrays.fill(columns, 0);
+            Arrays.fill(columnsCoarse, 0);
+            int top = Math.max(0, from - radius);
+            int bottom = Math.min(length - 1, from + radius);
+            for (int y = top; y <= bottom; y++) {
+                addRow(plane, y, 1);
+            }
+
+            for (int row = from; row < to; row++) {
+                if (row > from) {
+                    if (row - radius - 1 >= 0) {
+                        addRow(plane, row - radius - 1, -1);
+                    }
+                    if (row + radius < length) {
+                        addRow(plane, row + radius, 1);
+                    }
+                }
+                int windowRows = Math.min(length - 1, row + radius) - Math.max(0, row - radius) + 1;
+                filterRow(result, (row - from) * breadth, windowRows);
+            }
+            return result;
+        }
+
+        private void addRow(byte[] plane, int y, int delta) {
+            int start = (y - firstInputRow) * breadth;
+            for (int x = 0; x < breadth; x++) {
+                int v = plane[start + x] & 0xFF;
+                columns[x * BINS + v] += delta;
+                columnsCoarse[x * COARSE + (v >> 4)] += delta;
+            }
+        }
+
+        private void filterRow(int[] result, int start, int windowRows) {
+            Arrays.fill(kernelCoarse, 0);
+            Arrays.fill(fineColumn, Integer.MIN_VALUE);
+            for (int x = 0; x <= Math.min(breadth - 1, radius); x++) {
+                addColumnCoarse(x, 1);
+            }
+
+            for (int col = 0; col < breadth; col++) {
+                if (col > 0) {
+                    if (col - radius - 1 >= 0) {
+                        addColumnCoarse(col - radius - 1, -1);
+                    }
+                    if (col + radius < breadth) {
+                        addColumnCoarse(col + radius, 1);
+                    }
+                }
+                int count = windowRows * (Math.min(breadth - 1, col + radius) - Math.max(0, col - radius) + 1);
+                int median;
+                if (count % 2 == 0) {
+                    median = (kth(count / 2, col) + kth(count / 2 - 1, col)) / 2;
+                } else {
+                    median = kth(count / 2, col);
+                }
+                result[start + col] = median;
+            }
+        }
+
+        private void addColumnCoarse(int x, int delta) {
+            int base = x * COARSE;
+            for (int b = 0; b < COARSE; b++) {
+                kernelCoarse[b] += delta * columnsCoarse[base + b];
+            }
+        }
+
+        /**
+         * Returns the value of rank k (counting from 0) in the window centred on column col.
+         */
+        private int kth(int k, int col) {
+            int b = 0;
+            while (k >= kernelCoarse[b]) {
+                k -= kernelCoarse[b];
+                b++;
+            }
+            updateFine(b, col);
+            int v = b * COARSE;
+            while (k >= kernelFine[v]) {
+                k -= kernelFine[v];
+                v++;
+            }
+            return v;
+        }
+
+        /**
+         * Bring the fine bins of coarse bin b up to date for the window centred on column col.
+         */
+        private void updateFine(int b, int col) {
+            int last = fineColumn[b];
+            if (last == col) {
+                return;
+            }
+            int lo = b * COARSE;
+            if (last == Integer.MIN_VALUE || col - last > 2 * radius + 1) {
+                for (int v = lo; v < lo + COARSE; v++) {
+                    kernelFine[v] = 0;
+                }
+                for (int x = Math.max(0, col - radius); x <= Math.min(breadth - 1, col + radius); x++) {
+                    addColumnFine(x, lo, 1);
+                }
+            } else {
+                for (int c = last + 1; c <= col; c++) {
+                    if (c - radius - 1 >= 0) {
+                        addColumnFine(c - radius - 1, lo, -1);
+                    }
+                    if (c + radius < breadth) {
+                        addColumnFine(c + radius, lo, 1);
+                    }
+                }
+            }
+            fineColumn[b] = col;
+        }
+
+        private void addColumnFine(int x, int lo, int delta) {
+            int base = x * BINS;
+            for (int v = lo; v < lo + COARSE; v++) {
+                kernelFine[v] += delta * columns[base + v];
+            }
+        }
+    }
+}
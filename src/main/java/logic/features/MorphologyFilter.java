@@ -0,0 +1,146 @@
+package logic.features;
+
+import logic.core.Picture;
+
+/**
+ * Grayscale erosion (running minimum) and dilation (running maximum) of pictures,
+ * one colour channel at a time, over rectangular structuring elements of
+ * (2 * horizontalRadius + 1) columns by (2 * verticalRadius + 1) rows centred on
+ * each pixel. Structuring elements are clipped to the picture.
+ * <p>
+ * The filter is separable: a horizontal pass is followed by a vertical pass. Each
+ * pass uses the van Herk/Gil-Werman algorithm, which splits the padded input into
+ * blocks the size of the window and combines a running prefix within each block with
+ * a running suffix within the previous block. That takes three comparisons per pixel
+ * per pass, whatever the radius.
+ */
+final class MorphologyFilter {
+
+    private MorphologyFilter() {
+    }
+
+    /**
+     * Write rows [from, to) of the erosion or dilation of {@code src} into {@code dst}.
+     *
+     * @param src              the picture to filter, is not null
+     * @param dst              the picture receiving the result, with the same dimensions as src
+     * @param horizontalRadius the horizontal radius of the structuring element, >= 0
+     * @param verticalRadius   the vertical radius of the structuring element, >= 0
+     * @param dilate           true for a running maximum, false for a running minimum
+     * @param from             the first row to produce
+     * @param to               one past the last row to produce
+     */
+    static void filterRows(Picture src, Picture dst, int horizontalRadius, int verticalRadius,
+                           boolean dilate, int from, int to) {
+        int breadth = src.breadth();
+        int length = src.length();
+        int identity = dilate ? 0 : 255;
+        int firstRow = Math.max(0, from - verticalRadius);
+        int lastRow = Math.min(length, to + verticalRadius);
+        int rows = lastRow - firstRow;
+
+        // horizontal pass over every input row the band needs, one plane per channel
+        int[][] planes = new int[3][rows * breadth];
+        int[] line = new int[breadth];
+        int[] padded = new int[breadth + 2 * horizontalRadius];
+        int[] prefix = new int[padded.length];
+        int[] suffix = new int[padded.length];
+        for (int y = 0; y < rows; y++) {
+            src.getRGBRow(firstRow + y, line);
+            for (int c = 0; c < 3; c++) {
+                int shift = 16 - 8 * c;
+                for (int x = 0; x < horizontalRadius; x++) {
+                    padded[x] = identity;
+                    padded[padded.length - 1 - x] = identity;
+                }
+                for (int x = 0; x < breadth; x++) {
+                    padded[horizontalRadius + x] = (line[x] >> shift) & 0xFF;
+                }
+                runningExtremum(padded, prefix, suffix, 2 * horizontalRadius + 1, dilate,
+                    planes[c], y * breadth, breadth);
+            }
+        }
+
+        // vertical pass, a whole row at a time
+        int window = 2 * verticalRadius + 1;
+        int span = (to - from) + 2 * verticalRadius;
+        int[][] result = new int[3][];
+        for (int c = 0; c < 3; c++) {
+            result[c] = verticalPass(planes[c], breadth, length, firstRow, from, to,
+                verticalRadius, window, span, identity, dilate);
+        }
+
+        for (int row = from; row < to; row++) {
+            int start = (row - from) * breadth;
+            for (int x = 0; x < breadth; x++) {
+                line[x] = result[0][start + x] << 16 | result[1][start + x] << 8 | result[2][start + x];
+            }
+            dst.setRGBRow(row, line);
+        }
+    }
+
+    /**
+     * One-dimensional van Herk/Gil-Werman filter: out[outOffset + i] is the extremum of
+     * in[i .. i + window - 1] for 0 <= i < count.
+     */
+    private static void runningExtremum(int[] in, int[] prefix, int[] suffix, int window,
+                                        boolean max, int[] out, int outOffset, int count) {
+        int n = count + window - 1;
+        for (int i = 0; i < n; i++) {
+            prefix[i] = (i % window == 0) ? in[i] : combine(prefix[i - 1], in[i], max);
+        }
+        for (int i = n - 1; i >= 0; i--) {
+            suffix[i] = (i % window == window - 1 || i == n - 1) ? in[i] : combine(suffix[i + 1], in[i], max);
+        }
+        for (int i = 0; i < count; i++) {
+            out[outOffset + i] = combine(suffix[i], prefix[i + window - 1], max);
+        }
+    }
+
+    /**
+     * Vertical van Herk/Gil-Werman filter applied to whole rows at once. Position p of the
+     * padded column corresponds to picture row from - radius + p; rows outside the picture
+     * hold the identity.
+     */
+    private static int[] verticalPass(int[] plane, int breadth, int length, int firstRow,
+                                      int from, int to, int radius, int window, int span,
+                                      int identity, boolean max) {
+        int[] prefix = new int[span * breadth];
+        int[] suffix = new int[span * breadth];
+        for (int p = 0; p < span; p++) {
+            int row = from - radius + p;
+            int base = p * breadth;
+            boolean inside = row >= 0 && row < length;
+            int src = (row - firstRow) * breadth;
+            boolean restart = p % window == 0;
+            for (int x = 0; x < breadth; x++) {
+                int v = inside ? plane[src + x] : identity;
+                prefix[base + x] = restart ? v : combine(prefix[base - breadth + x], v, max);
+            }
+        }
+        for (int p = span - 1; p >= 0; p--) {
+            int row = from - radius + p;
+            int base = p * breadth;
+            boolean inside = row >= 0 && row < length;
+            int src = (row - firstRow) * breadth;
+            boolean restart = p % window == window - 1 || p == span - 1;
+            for (int x = 0; x < breadth; x++) {
+                int v = inside ? plane[src + x] : identity;
+                suffix[base + x] = restart ? v : combine(suffix[base + breadth + x], v, max);
+            }
+        }
+        int[] out = new int[(to - from) * breadth];
+        for (int i = 0; i < to - from; i++) {
+            int s = i * breadth;
+            int g = (i + window - 1) * breadth;
+            for (int x = 0; x < breadth; x++) {
+                out[s + x] = combine(suffix[s + x], prefix[g + x], max);
+            }
+        }
+        return out;
+    }
+
+    private static int combine(int a, int b, boolean max) {
+        return max ? Math.max(a, b) : Math.min(a, b);
+    }
+}
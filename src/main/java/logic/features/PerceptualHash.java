@@ -0,0 +1,202 @@
+package logic.features;
+
+import logic.core.Picture;
+
+import java.util.Arrays;
+
+/**
+ * Perceptual hashes of pictures: 64-bit fingerprints that change little when a picture
+ * is rescaled, recompressed or slightly retouched, so that near-duplicates can be found
+ * by comparing hashes instead of pixels.
+ * <p>
+ * Every hash starts from a small grid of the mean luminance, as computed by
+ * {@link Picture#luminance(int)}, of equal shares of the picture, and sets one bit
+ * per cell of an 8-by-8 grid, row by row from the most significant bit:
+ * <ul>
+ *     <li>{@link #averageHash(Picture)} sets the bits of the cells brighter than the
+ *     mean of all cells;</li>
+ *     <li>{@link #differenceHash(Picture)} sets the bits of the cells brighter than
+ *     their right neighbour, in a grid one cell wider;</li>
+ *     <li>{@link #perceptualHash(Picture)} takes the discrete cosine transform of a
+ *     32-by-32 grid, computed with {@link FFTPlan}, and sets the bits of the 8-by-8
+ *     lowest frequencies whose coefficient is above their median.</li>
+ * </ul>
+ * Two hashes are compared by their Hamming {@link #distance(long, long)}; pictures
+ * whose hashes differ in only a few bits are likely to look alike. {@link BKTree}
+ * finds the stored hashes within a given distance of a hash.
+ */
+public final class PerceptualHash {
+
+    private static final int SIDE = 8;
+    private static final int DCT_SIDE = 32;
+
+    private PerceptualHash() {
+    }
+
+    /**
+     * Compute the average hash of a picture.
+     *
+     * @param picture the picture to hash, is not null
+     * @return the hash, whose bit 63 - (row * 8 + col) is set if cell (col, row) of an
+     * 8-by-8 grid is brighter than the mean of the grid
+     */
+    public static long averageHash(Picture picture) {
+        double[] cells = meanLuminance(picture, SIDE, SIDE);
+        double mean = 0;
+        for (double cell : cells) {
+            mean += cell;
+        }
+        mean /= cells.length;
+        return threshold(cells, mean);
+    }
+
+    /**
+     * Compute the difference hash of a picture.
+     *
+     * @param picture the picture to hash, is not null
+     * @return the hash, whose bit 63 - (row * 8 + col) is set if cell (col, row) of a
+     * 9-by-8 grid is brighter than cell (col + 1, row)
+     */
+    public static long differenceHash(Picture picture) {
+        double[] cells = meanLuminance(picture, SIDE + 1, SIDE);
+        long hash = 0;
+        for (int row = 0; row < SIDE; row++) {
+            for (int col = 0; col < SIDE; col++) {
+                int i = row * (SIDE + 1) + col;
+                hash = (hash << 1) | (cells[i] > cells[i + 1] ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Compute the DCT-based perceptual hash of a picture.
+     *
+     * @param picture the picture to hash, is not null
+     * @return the hash, whose bit 63 - (v * 8 + u) is set if coefficient (u, v) of the
+     * discrete cosine transform of a 32-by-32 grid is above the median of the
+     * coefficients with u, v < 8; coefficient (0, 0) is left out of the median,
+     * because it only measures the overall brightness
+     */
+    public static long perceptualHash(Picture picture) {
+        double[] cells = meanLuminance(picture, DCT_SIDE, DCT_SIDE);
+        dct2D(cells, DCT_SIDE);
+
+        double[] low = new double[SIDE * SIDE];
+        for (int v = 0; v < SIDE; v++) {
+            System.arraycopy(cells, v * DCT_SIDE, low, v * SIDE, SIDE);
+        }
+        double[] sorted = new double[low.length - 1];
+        System.arraycopy(low, 1, sorted, 0, sorted.length);
+        Arrays.sort(sorted);
+        // 63 coefficients, so the median is the middle one and 31 of them lie above it
+        double median = sorted[sorted.length / 2];
+        return threshold(low, median);
+    }
+
+    /**
+     * Compute the Hamming distance between two hashes.
+     *
+     * @param hash1 the first hash
+     * @param hash2 the second hash
+     * @return the number of bits in which hash1 and hash2 differ, between 0 and 64
+     */
+    public static int distance(long hash1, long hash2) {
+        return Long.bitCount(hash1 ^ hash2);
+    }
+
+    /**
+     * Compute the mean luminance of each cell of a grid laid over a picture. The cells
+     * cover equal shares of the picture and are never empty: when the picture has fewer
+     * pixels than the grid has cells, neighbouring cells share pixels.
+     *
+     * @param picture the picture to measure, is not null
+     * @param columns the number of columns of the grid, >= 1
+     * @param rows    the number of rows of the grid, >= 1
+     * @return the mean luminance of cell (col, row) at index row * columns + col
+     */
+    static double[] meanLuminance(Picture picture, int columns, int rows) {
+        int breadth = picture.breadth();
+        int length = picture.length();
+        int[] raster = picture.raster();
+        double[] cells = new double[columns * rows];
+        for (int cellRow = 0; cellRow < rows; cellRow++) {
+            int top = cellStart(cellRow, length, rows);
+            int bottom = cellEnd(cellRow, length, rows);
+            for (int cellCol = 0; cellCol < columns; cellCol++) {
+                int left = cellStart(cellCol, breadth, columns);
+                int right = cellEnd(cellCol, breadth, columns);
+                long sum = 0;
+                for (int row = top; row < bottom; row++) {
+                    int start = picture.rowOffset(row);
+                    for (int col = left; col < right; col++) {
+                        sum += Picture.luminance(raster[start + col]);
+                    }
+                }
+                cells[cellRow * columns + cellCol] = (double) sum / ((bottom - top) * (right - left));
+            }
+        }
+        return cells;
+    }
+
+    private static int cellStart(int cell, int pixels, int cells) {
+        return Math.min((int) ((long) cell * pixels / cells), pixels - 1);
+    }
+
+    private static int cellEnd(int cell, int pixels, int cells) {
+        return Math.max((int) ((long) (cell + 1) * pixels / cells), cellStart(cell, pixels, cells) + 1);
+    }
+
+    private static long threshold(double[] values, double limit) {
+        long hash = 0;
+        for (double value : values) {
+            hash = (hash << 1) | (value > limit ? 1 : 0);
+        }
+        return hash;
+    }
+
+    /**
+     * Replace a side-by-side array, stored row by row, with its unnormalised 2D
+     * DCT-II, transforming every row and then every column.
+     */
+    private static void dct2D(double[] values, int side) {
+        double[] line = new double[side];
+        for (int row = 0; row < side; row++) {
+            System.arraycopy(values, row * side, line, 0, side);
+            dct(line);
+            System.arraycopy(line, 0, values, row * side, side);
+        }
+        for (int col = 0; col < side; col++) {
+            for (int row = 0; row < side; row++) {
+                line[row] = values[row * side + col];
+            }
+            dct(line);
+            for (int row = 0; row < side; row++) {
+                values[row * side + col] = line[row];
+            }
+        }
+    }
+
+    /**
+     * Replace x with its DCT-II, X[k] = sum over j of x[j] cos(pi (2j + 1) k / 2n),
+     * using a complex FFT of the same length: the even entries of x in order followed
+     * by the odd entries in reverse order have the transform V, and
+     * X[k] = Re(exp(-pi i k / 2n) V[k]).
+     */
+    private static void dct(double[] x) {
+        int n = x.length;
+        double[] re = new double[n];
+        double[] im = new double[n];
+        for (int j = 0; j < (n + 1) / 2; j++) {
+            re[j] = x[2 * j];
+        }
+        for (int j = 0; j < n / 2; j++) {
+            re[n - 1 - j] = x[2 * j + 1];
+        }
+        FFTPlan.forLength(n).transform(re, im, false);
+        for (int k = 0; k < n; k++) {
+            double angle = -Math.PI * k / (2 * n);
+            x[k] = re[k] * Math.cos(angle) - im[k] * Math.sin(angle);
+        }
+    }
+}
@@ -1,12 +1,18 @@
 package logic.features;
 
+import logic.core.GrayPicture;
+import logic.core.IntegralImage;
+import logic.core.LuminanceWeights;
+import logic.core.MappedPicture;
+import logic.core.NestedMatrix;
 import logic.core.Picture;
 import logic.core.PictureProcessingException;
 import logic.core.Quadrilateral ;
 
 import java.awt.Color;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Function;
 
 /**
  * This datatype (or class) provides operations for transforming an picture.
@@ -18,13 +24,29 @@ import java.util.HashMap;
  *     <li></li>
  * </ul>
  * </p>
+ *
+ * <p>By default every operation runs on the calling thread. A convertor obtained from
+ * {@link #parallel()} or {@link #parallel(ForkJoinPool)} splits the per-pixel operations
+ * into bands of rows that are processed concurrently; the output is identical to the
+ * sequential output.</p>
  */
 
 public class PictureConvertor {
 
+    static final ChannelLut GRAYSCALE_LUT = ChannelLut.luminance(LuminanceWeights.NTSC);
+    static final ChannelLut RED_LUT = ChannelLut.of(v -> v, v -> 0, v -> 0);
+    static final ChannelLut NEGATIVE_LUT = ChannelLut.of(v -> 255 - v);
+    static final ChannelLut POSTERIZE_LUT = ChannelLut.of(PictureConvertor::posterizeColorSetter);
+
+    private static final int WHITE = 0xFFFFFFFF;
+    private static final int STREAM_BAND_PIXELS = 1 << 20;
+    private static final int MAX_SKEW = 45;
+    private static final int SKEW_COARSE_SIDE = 256;
+
     private Picture picture;
     private int breadth;
     private int length;
+    private final RowBandExecutor executor;
 
     /**
      * Creates an PictureConvertor with an picture. The provided picture is
@@ -33,9 +55,68 @@ public class PictureConvertor {
      * @param img is not null
      */
     public PictureConvertor(Picture img) {
+        this(img, RowBandExecutor.SEQUENTIAL);
+    }
+
+    /**
+     * Creates an PictureConvertor with an picture whose operations run on
+     * the given pool.
+     *
+     * @param img  is not null
+     * @param pool the pool to split operations over, or null to run them on the calling thread
+     */
+    public PictureConvertor(Picture img, ForkJoinPool pool) {
+        this(img, pool == null ? RowBandExecutor.SEQUENTIAL : new RowBandExecutor(pool));
+    }
+
+    PictureConvertor(Picture img, RowBandExecutor executor) {
         picture = img;
         this.breadth = picture.breadth();
         this.length = picture.length();
+        this.executor = executor;
+    }
+
+    /**
+     * Obtain a convertor for the same picture whose operations run in parallel
+     * on the common fork-join pool.
+     *
+     * @return a parallel convertor for the instance.
+     */
+    public PictureConvertor parallel() {
+        return parallel(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Obtain a convertor for the same picture whose operations run in parallel
+     * on the given pool.
+     *
+     * @param pool the pool to run on, is not null
+     * @return a parallel convertor for the instance.
+     */
+    public PictureConvertor parallel(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("pool is null");
+        }
+        return new PictureConvertor(picture, new RowBandExecutor(pool));
+    }
+
+    /**
+     * Start a lazily evaluated chain of operations on the picture. Consecutive per-pixel
+     * operations in the chain are fused into a single pass over the picture.
+     *
+     * @return an empty pipeline whose input is the instance's picture.
+     */
+    public PicturePipeline pipeline() {
+        return new PicturePipeline(picture, executor);
+    }
+
+    /**
+     * Obtain a convertor for the same picture whose operations run on the calling thread.
+     *
+     * @return a sequential convertor for the instance.
+     */
+    public PictureConvertor sequential() {
+        return new PictureConvertor(picture, RowBandExecutor.SEQUENTIAL);
     }
 
     /**
@@ -44,15 +125,20 @@ public class PictureConvertor {
      * @return the grayscale version of the instance.
      */
     public Picture grayscale() {
-        Picture gsPicture = new Picture(breadth, length);
-        for (int col = 0; col < breadth; col++) {
-            for (int row = 0; row < length; row++) {
-                Color color = picture.get(col, row);
-                Color gray = Picture.toGray(color);
-                gsPicture.set(col, row, gray);
-            }
-        }
-        return gsPicture;
+        return applyLut(GRAYSCALE_LUT);
+    }
+
+    /**
+     * Write the grayscale version of the picture, as in {@link #grayscale()}, into a
+     * picture of the same dimensions.
+     *
+     * @param destination receives the result, is not null and has the dimensions of the
+     *                    instance; it may be the instance's picture itself, which is
+     *                    then changed in place.
+     * @return destination.
+     */
+    public Picture grayscale(Picture destination) {
+        return applyLut(GRAYSCALE_LUT, destination);
     }
 
     /**
@@ -62,17 +148,59 @@ public class PictureConvertor {
      * @param color
      */
     public Picture red(Color color) {
-        Picture redPicture = new Picture(breadth, length);
-        for (int col = 0; col < breadth; col++) {
-            for (int row = 0; row < length; row++) {
-                int originalPixel = picture.getRGB(col, row);
-                int alpha = (originalPixel >> 24) & 0xFF;
-                int red = (originalPixel >> 16) & 0xFF;
-                int desiredColor = (alpha << 24) | (red << 16) | (0 << 8) | (0);
-                redPicture.setRGB(col, row, desiredColor);
+        return applyLut(RED_LUT);
+    }
+
+    /**
+     * Apply an operation to a memory-mapped picture one band of rows at a time, writing
+     * the result into another mapped picture of the same dimensions. Only one band, with
+     * {@code halo} extra rows above and below it, is on the heap at any time, so the peak
+     * heap use depends on the breadth of the picture but not on its length.
+     * <p>
+     * The operation must keep the dimensions of the picture, and must compute every pixel
+     * from pixels at most {@code halo} rows away: 0 for per-pixel operations such as
+     * {@link #grayscale()} or {@link #applyLut(ChannelLut)}, and the radius for
+     * neighbourhood operations such as {@link #denoise(int)} or {@link #weather(int)}.
+     * The result is then the same as applying the operation to the whole picture at once.
+     *
+     * @param source    the picture to read, is not null
+     * @param target    the picture to write, is not null and has the dimensions of source;
+     *                  it may be source itself only if halo is 0
+     * @param halo      the number of rows the operation looks above and below a pixel, >= 0
+     * @param operation the operation to apply to each band, is not null
+     */
+    public static void stream(MappedPicture source, MappedPicture target, int halo,
+                              Function<PictureConvertor, Picture> operation) {
+        int bandRows = Math.max(1, Math.max(STREAM_BAND_PIXELS / source.breadth(), halo));
+        stream(source, target, halo, operation, bandRows);
+    }
+
+    static void stream(MappedPicture source, MappedPicture target, int halo,
+                       Function<PictureConvertor, Picture> operation, int bandRows) {
+        if (source.breadth() != target.breadth() || source.length() != target.length()) {
+            throw new IllegalArgumentException("source and target must have the same dimensions");
+        }
+        if (halo < 0) {
+            throw new IllegalArgumentException("halo must not be negative");
+        }
+        if (halo > 0 && source == target) {
+            throw new IllegalArgumentException("an operation with a halo cannot stream in place");
+        }
+        int length = source.length();
+        for (int from = 0; from < length; from += bandRows) {
+            int to = Math.min(length, from + bandRows);
+            int top = Math.max(0, from - halo);
+            int bottom = Math.min(length, to + halo);
+            Picture band = source.readRows(top, bottom);
+            Picture result = operation.apply(new PictureConvertor(band));
+            if (result.breadth() != band.breadth() || result.length() != band.length()) {
+                throw new IllegalArgumentException("a streamed operation must keep the dimensions of the picture");
+            }
+            int[] line = new int[result.breadth()];
+            for (int row = from; row < to; row++) {
+                target.setRGBRow(row, result.getRGBRow(row - top, line));
             }
         }
-        return redPicture;
     }
 
     /**
@@ -81,21 +209,81 @@ public class PictureConvertor {
      * @return the mirror picture of the instance.
      */
     public Picture mirror() {
-        Picture mirrored = new Picture(picture);
-        Color color;
-
-
-        for (int i = 0; i < length; i++){
-            for (int j = 0; j < breadth/2; j++){
-                color = mirrored.get(j,i);
-                mirrored.set(j,i,mirrored.get(breadth -j-1 , i));
-                mirrored.set(breadth -j-1 ,i, color);
+        Picture mirrored = new Picture(breadth, length);
+        int[] line = new int[breadth];
+        int[] reversed = new int[breadth];
+
+        for (int row = 0; row < length; row++) {
+            picture.getRGBRow(row, line);
+            for (int col = 0, last = breadth - 1; col < breadth; col++) {
+                reversed[col] = line[last - col];
             }
+            mirrored.setRGBRow(row, reversed);
         }
 
         return mirrored;
     }
 
+    /**
+     * Returns the picture of an instance flipped upside down: row <code>row</code> of
+     * the result is row <code>length - 1 - row</code> of the instance.
+     *
+     * @return the vertically flipped picture of the instance.
+     */
+    public Picture flipVertical() {
+        Picture flipped = new Picture(breadth, length);
+        executor.run(length, 0, (from, to) -> GeometryKernels.flipRows(picture, flipped, false, from, to));
+        return flipped;
+    }
+
+    /**
+     * Returns the transpose of an instance: pixel (col, row) of the result is
+     * pixel (row, col) of the instance.
+     *
+     * @return the transposed picture of the instance, with breadth and length swapped.
+     */
+    public Picture transpose() {
+        return transposed(false, false);
+    }
+
+    /**
+     * Rotate an picture by exactly 90 degrees, in the same direction as
+     * {@link #rotate(double)}. No pixel is lost or resampled.
+     *
+     * @return the rotated picture, with breadth and length swapped.
+     */
+    public Picture rotate90() {
+        return transposed(false, true);
+    }
+
+    /**
+     * Rotate an picture by exactly 180 degrees. No pixel is lost or resampled.
+     *
+     * @return the rotated picture.
+     */
+    public Picture rotate180() {
+        Picture rotated = new Picture(breadth, length);
+        executor.run(length, 0, (from, to) -> GeometryKernels.flipRows(picture, rotated, true, from, to));
+        return rotated;
+    }
+
+    /**
+     * Rotate an picture by exactly 270 degrees, in the same direction as
+     * {@link #rotate(double)}. No pixel is lost or resampled.
+     *
+     * @return the rotated picture, with breadth and length swapped.
+     */
+    public Picture rotate270() {
+        return transposed(true, false);
+    }
+
+    private Picture transposed(boolean reverseX, boolean reverseY) {
+        Picture result = new Picture(length, breadth);
+        executor.run(breadth, 0, (from, to) ->
+            GeometryKernels.transposeRows(picture, result, reverseX, reverseY, from, to));
+        return result;
+    }
+
     /**
      * <p>Returns the negative version of an instance.<br />
      * If the colour of a pixel is (r, g, b) then the colours of the same pixel
@@ -104,29 +292,20 @@ public class PictureConvertor {
      * @return the negative of the instance.
      */
     public Picture negative() {
-        Picture negative = new Picture(picture);
-
-        for (int i = 0; i < length; i++) {
-
-            for (int j = 0; j < breadth; j++)
-            {
-                int originalPixel = negative.getRGB(j, i);
-                int a = (originalPixel >> 24) & 0xFF;
-                int r = (originalPixel >> 16) & 0xFF;
-                int g = (originalPixel>> 8) & 0xFF;
-                int b = originalPixel & 0xFF;
-
-                //converting to negative
-                r = 255 - r;
-                g = 255 - g;
-                b = 255 - b;
-
-                //setting values
-                originalPixel= (a << 24) | (r << 16) | (g << 8) | b;
-                negative.setRGB(j, i, originalPixel);
-            }
-        }
-        return negative;
+        return applyLut(NEGATIVE_LUT);
+    }
+
+    /**
+     * Write the negative version of the picture, as in {@link #negative()}, into a
+     * picture of the same dimensions.
+     *
+     * @param destination receives the result, is not null and has the dimensions of the
+     *                    instance; it may be the instance's picture itself, which is
+     *                    then changed in place.
+     * @return destination.
+     */
+    public Picture negative(Picture destination) {
+        return applyLut(NEGATIVE_LUT, destination);
     }
 
     /**
@@ -142,32 +321,99 @@ public class PictureConvertor {
      * @return the posterized version of the instance.
      */
     public Picture posterize() {
-        int col;
-        int r, g, b;
-        int desiredColor;
+        return applyLut(POSTERIZE_LUT);
+    }
 
-        for (int i = 0; i < length; i++) {
-            for (int j = 0; j < breadth; j++) {
-                col = picture.getRGB(j, i);
-                r = (col >> 16) & 0xFF;
-                g = (col >> 8) & 0xFF;
-                b = (col) & 0xFF;
+    /**
+     * Write the posterized version of the picture, as in {@link #posterize()}, into a
+     * picture of the same dimensions.
+     *
+     * @param destination receives the result, is not null and has the dimensions of the
+     *                    instance; it may be the instance's picture itself, which is
+     *                    then changed in place.
+     * @return destination.
+     */
+    public Picture posterize(Picture destination) {
+        return applyLut(POSTERIZE_LUT, destination);
+    }
 
-                r = posterizeColorSetter(r);
-                g = posterizeColorSetter(g);
-                b = posterizeColorSetter(b);
+    /**
+     * Apply the same 256-entry lookup table to every colour channel of every pixel.
+     * This can be used to apply tone curves such as gamma or contrast adjustments.
+     *
+     * @param table maps each channel value to its new value, has 256 entries,
+     *              each between 0 and 255.
+     * @return the transformed version of the instance.
+     */
+    public Picture applyLut(int[] table) {
+        return applyLut(ChannelLut.of(table));
+    }
 
-                desiredColor = (r <<16) | (g << 8) | b;
-                picture.setRGB(j, i, desiredColor);
+    /**
+     * Apply a separate 256-entry lookup table to each colour channel of every pixel.
+     *
+     * @param red maps each red value to its new value, has 256 entries, each between 0 and 255.
+     * @param green maps each green value to its new value, has 256 entries, each between 0 and 255.
+     * @param blue maps each blue value to its new value, has 256 entries, each between 0 and 255.
+     * @return the transformed version of the instance.
+     */
+    public Picture applyChannelLut(int[] red, int[] green, int[] blue) {
+        return applyLut(ChannelLut.of(red, green, blue));
+    }
 
-            }
+    /**
+     * Apply a compiled point operation to every pixel. Point operations can be combined
+     * with {@link ChannelLut#andThen(ChannelLut)} so that a whole chain of them is applied
+     * in a single pass.
+     *
+     * @param lut the point operation, is not null.
+     * @return the transformed version of the instance.
+     */
+    public Picture applyLut(ChannelLut lut) {
+        if (lut == null) {
+            throw new IllegalArgumentException("lut is null");
         }
+        return applyLut(lut, new Picture(breadth, length));
+    }
 
-        return picture;
+    /**
+     * Apply a lookup table to every colour channel of every pixel, as in
+     * {@link #applyLut(ChannelLut)}, writing the result into a picture of the same
+     * dimensions. Reusing destinations lets a chain of operations alternate between two
+     * pictures instead of allocating one per step.
+     *
+     * @param lut         the table to apply, is not null.
+     * @param destination receives the result, is not null and has the dimensions of the
+     *                    instance; it may be the instance's picture itself, which is
+     *                    then changed in place.
+     * @return destination.
+     */
+    public Picture applyLut(ChannelLut lut, Picture destination) {
+        if (lut == null || destination == null) {
+            throw new IllegalArgumentException("lut and destination must not be null");
+        }
+        if (destination.breadth() != breadth || destination.length() != length) {
+            throw new IllegalArgumentException("destination must have the dimensions of the picture");
+        }
+        Picture out = destination;
+        // bands may still read the instance while the first of them writes a shared destination
+        out.ensureOwnRaster();
+        executor.run(length, 0, (from, to) -> {
+            int[] line = new int[breadth];
+            for (int row = from; row < to; row++) {
+                picture.getRGBRow(row, line);
+                lut.applyInPlace(line, 0, breadth);
+                out.setRGBRow(row, line);
+            }
+        });
+        return out;
     }
 
     /**
      * Clip the picture given a rectangle that represents the region to be retained.
+     * <p>
+     * The result is a {@link Picture#view(Quadrilateral) view} that shares the pixels of
+     * the picture, so no pixel is copied until the result or the picture is changed.
      *
      * @param clippingBox is not null.
      * @return a clipped version of the instance.
@@ -175,20 +421,73 @@ public class PictureConvertor {
      *                                  within the picture.
      */
     public Picture clip(Quadrilateral  clippingBox) throws PictureProcessingException{
-        int breadth = clippingBox.xBottomRight - clippingBox.xTopLeft + 1;
-        int length = clippingBox.yBottomRight - clippingBox.yTopLeft + 1;
-        if (breadth > this.breadth || length > this.length){
-            throw new PictureProcessingException();
+        checkRegion(clippingBox);
+        return picture.view(clippingBox);
+    }
+
+    /**
+     * Obtain a convertor for a region of the picture, with the same threads as this one.
+     * Its operations read only the region and produce a picture of the region, as if the
+     * region were the whole picture: neighbourhood operations such as
+     * {@link #denoise(int)} treat the edges of the region as edges of the picture. Use
+     * {@link #apply(Quadrilateral, int, Function)} to let them look beyond the region.
+     *
+     * @param region the region to operate on, is not null.
+     * @return a convertor for a view of the region.
+     * @throws PictureProcessingException if the region does not fit completely
+     *                                  within the picture.
+     */
+    public PictureConvertor region(Quadrilateral region) throws PictureProcessingException {
+        checkRegion(region);
+        return new PictureConvertor(picture.view(region), executor);
+    }
+
+    /**
+     * Apply an operation to a region of the picture only, and obtain the result for that
+     * region. The operation is applied to the region grown by {@code halo} pixels on each
+     * side (as far as the picture allows), and the result is the part of its output that
+     * covers the region, so it is the same as applying the operation to the whole picture
+     * and clipping the output to the region, at the cost of the region alone.
+     * <p>
+     * As in {@link #stream(MappedPicture, MappedPicture, int, Function)}, the operation must
+     * keep the dimensions of the picture, and must compute every pixel from pixels at most
+     * {@code halo} pixels away: 0 for per-pixel operations and the radius for
+     * neighbourhood operations.
+     *
+     * @param region    the region to operate on, is not null.
+     * @param halo      the number of pixels the operation looks around a pixel, >= 0.
+     * @param operation the operation to apply, is not null.
+     * @return the result of the operation for the region.
+     * @throws PictureProcessingException if the region does not fit completely
+     *                                  within the picture.
+     */
+    public Picture apply(Quadrilateral region, int halo, Function<PictureConvertor, Picture> operation)
+        throws PictureProcessingException {
+        checkRegion(region);
+        if (halo < 0) {
+            throw new IllegalArgumentException("halo must not be negative");
         }
-        Picture clippedPicture = new Picture(breadth, length);
-        Color color;
-        for (int i = 0; i < length; i++) {
-            for (int j = 0; j < breadth; j++) {
-                color = picture.get(j + clippingBox.xTopLeft, i + clippingBox.yTopLeft);
-                clippedPicture.set(j, i, color);
-            }
+        int left = Math.max(0, region.xTopLeft - halo);
+        int top = Math.max(0, region.yTopLeft - halo);
+        Quadrilateral grown = new Quadrilateral(left, top,
+            Math.min(breadth - 1, region.xBottomRight + halo), Math.min(length - 1, region.yBottomRight + halo));
+        Picture input = picture.view(grown);
+        Picture result = operation.apply(new PictureConvertor(input, executor));
+        if (result.breadth() != input.breadth() || result.length() != input.length()) {
+            throw new IllegalArgumentException("a region operation must keep the dimensions of the picture");
+        }
+        if (input.breadth() == region.xBottomRight - region.xTopLeft + 1
+            && input.length() == region.yBottomRight - region.yTopLeft + 1) {
+            return result;
+        }
+        return result.view(new Quadrilateral(region.xTopLeft - left, region.yTopLeft - top,
+            region.xBottomRight - left, region.yBottomRight - top));
+    }
+
+    private void checkRegion(Quadrilateral region) throws PictureProcessingException {
+        if (region.xBottomRight >= this.breadth || region.yBottomRight >= this.length) {
+            throw new PictureProcessingException();
         }
-        return clippedPicture;
     }
 
     /**
@@ -199,49 +498,28 @@ public class PictureConvertor {
      * @return a denoised version of the instance.
      */
     public Picture denoise() {
-        Picture orgPicture = new Picture(picture);
-        Picture denoisedPicture = new Picture(breadth,length);
-
-        ArrayList<Integer> ArrayR = new ArrayList<>();
-        ArrayList<Integer> ArrayG = new ArrayList<>();
-        ArrayList<Integer> ArrayB = new ArrayList<>();
-
-        for (int row = 0; row < length; row++){
-            for (int col = 0; col < breadth; col++){
-                for (int innerRow = row - 1; innerRow <= row + 1 ; innerRow++){
-                    for (int innerCol = col - 1; innerCol <= col + 1; innerCol++){
-                        if (innerRow < 0 || innerRow >= length){
-                            break;
-                        }
-                        if (innerCol < 0 || innerCol >= breadth){
-                            continue;
-                        }
-                        int color = orgPicture.getRGB(innerCol,innerRow);
-
-                        ArrayR.add((color >> 16) & 0xFF);
-                        ArrayG.add((color >> 8) & 0xFF);
-                        ArrayB.add((color) & 0xFF);
-                    }
-                }
-
-                sortAscending(ArrayR);
-                sortAscending(ArrayG);
-                sortAscending(ArrayB);
-
-                double medianR = findMedian(ArrayR);
-                double medianG = findMedian(ArrayG);
-                double medianB = findMedian(ArrayB);
-
-                int rgbColor = (int)(medianR) << 16 | (int)(medianG) << 8 | (int)(medianB);
-
-                denoisedPicture.setRGB(col,row,rgbColor);
+        return denoise(1);
+    }
 
-                ArrayR.clear();
-                ArrayG.clear();
-                ArrayB.clear();
-            }
+    /**
+     * Denoise an picture by replacing each pixel by the median value of the pixels in the
+     * square of side <code>2 * radius + 1</code> centred on it. During this process, each
+     * colour channel is handled separately. Near the border only the pixels of the square
+     * that lie within the picture are used; when there is an even number of them, the
+     * median is the mean of the two middle values, rounded down.
+     * <p>
+     * The running time per pixel does not depend on the radius.
+     *
+     * @param radius the radius of the square, >= 1.
+     * @return a denoised version of the instance.
+     */
+    public Picture denoise(int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("radius must be at least 1");
         }
-
+        Picture denoisedPicture = new Picture(breadth,length);
+        executor.run(length, radius,
+            (from, to) -> MedianFilter.filterRows(picture, denoisedPicture, radius, from, to));
         return denoisedPicture;
     }
 
@@ -253,19 +531,121 @@ public class PictureConvertor {
      * @return a weathered version of the picture.
      */
     public Picture weather() {
-        int desiredRGB;
+        return weather(1);
+    }
 
-        Picture weathered = new Picture(breadth, length);
+    /**
+     * Returns a weathered (eroded) version of the picture by replacing each pixel by the
+     * minimum value of the pixels in the square of side <code>2 * radius + 1</code> centred
+     * on it. During this process, each colour channel is handled separately.
+     *
+     * @param radius the radius of the square, >= 0.
+     * @return a weathered version of the picture.
+     */
+    public Picture weather(int radius) {
+        return weather(radius, radius);
+    }
 
-        for(int row = 0; row < length; row++){
-            for(int col = 0; col < breadth; col++){
-                desiredRGB = smallestNeighbouringRGB(row,col);
-                weathered.setRGB(col, row, desiredRGB);
-            }
-        }
+    /**
+     * Returns a weathered (eroded) version of the picture by replacing each pixel by the
+     * minimum value of the pixels in the rectangle of <code>2 * horizontalRadius + 1</code>
+     * columns and <code>2 * verticalRadius + 1</code> rows centred on it. Only the part of
+     * the rectangle inside the picture is considered. During this process, each colour
+     * channel is handled separately.
+     * <p>
+     * The running time per pixel does not depend on the size of the rectangle.
+     *
+     * @param horizontalRadius the horizontal radius of the rectangle, >= 0.
+     * @param verticalRadius the vertical radius of the rectangle, >= 0.
+     * @return a weathered version of the picture.
+     */
+    public Picture weather(int horizontalRadius, int verticalRadius) {
+        return morphology(horizontalRadius, verticalRadius, false);
+    }
+
+    /**
+     * Returns a dilated version of the picture by replacing each pixel by the maximum value
+     * of the pixels in the square of side <code>2 * radius + 1</code> centred on it. During
+     * this process, each colour channel is handled separately.
+     *
+     * @param radius the radius of the square, >= 0.
+     * @return a dilated version of the picture.
+     */
+    public Picture dilate(int radius) {
+        return dilate(radius, radius);
+    }
+
+    /**
+     * Returns a dilated version of the picture by replacing each pixel by the maximum value
+     * of the pixels in the rectangle of <code>2 * horizontalRadius + 1</code> columns and
+     * <code>2 * verticalRadius + 1</code> rows centred on it. Only the part of the rectangle
+     * inside the picture is considered. During this process, each colour channel is handled
+     * separately.
+     *
+     * @param horizontalRadius the horizontal radius of the rectangle, >= 0.
+     * @param verticalRadius the vertical radius of the rectangle, >= 0.
+     * @return a dilated version of the picture.
+     */
+    public Picture dilate(int horizontalRadius, int verticalRadius) {
+        return morphology(horizontalRadius, verticalRadius, true);
+    }
+
+    /**
+     * Returns the morphological opening of the picture: the dilation of its weathered
+     * version with the same square. Opening removes bright details smaller than the square.
+     *
+     * @param radius the radius of the square, >= 0.
+     * @return the opening of the picture.
+     */
+    public Picture open(int radius) {
+        return open(radius, radius);
+    }
+
+    /**
+     * Returns the morphological opening of the picture: the dilation of its weathered
+     * version with the same rectangle.
+     *
+     * @param horizontalRadius the horizontal radius of the rectangle, >= 0.
+     * @param verticalRadius the vertical radius of the rectangle, >= 0.
+     * @return the opening of the picture.
+     */
+    public Picture open(int horizontalRadius, int verticalRadius) {
+        Picture eroded = weather(horizontalRadius, verticalRadius);
+        return new PictureConvertor(eroded, executor).dilate(horizontalRadius, verticalRadius);
+    }
+
+    /**
+     * Returns the morphological closing of the picture: the weathered version of its
+     * dilation with the same square. Closing removes dark details smaller than the square.
+     *
+     * @param radius the radius of the square, >= 0.
+     * @return the closing of the picture.
+     */
+    public Picture close(int radius) {
+        return close(radius, radius);
+    }
 
-        return weathered;
+    /**
+     * Returns the morphological closing of the picture: the weathered version of its
+     * dilation with the same rectangle.
+     *
+     * @param horizontalRadius the horizontal radius of the rectangle, >= 0.
+     * @param verticalRadius the vertical radius of the rectangle, >= 0.
+     * @return the closing of the picture.
+     */
+    public Picture close(int horizontalRadius, int verticalRadius) {
+        Picture dilated = dilate(horizontalRadius, verticalRadius);
+        return new PictureConvertor(dilated, executor).weather(horizontalRadius, verticalRadius);
+    }
 
+    private Picture morphology(int horizontalRadius, int verticalRadius, boolean dilate) {
+        if (horizontalRadius < 0 || verticalRadius < 0) {
+            throw new IllegalArgumentException("radius must not be negative");
+        }
+        Picture out = new Picture(breadth, length);
+        executor.run(length, verticalRadius, (from, to) -> MorphologyFilter.filterRows(
+            picture, out, horizontalRadius, verticalRadius, dilate, from, to));
+        return out;
     }
 
     /**
@@ -274,7 +654,7 @@ public class PictureConvertor {
      * by the average value of all pixels in that square.
      * During this process, each colour channel is handled separately.
      *
-     * @param boxSize the dimension of the square box, > 1.
+     * @param boxSize the dimension of the square box, >= 1.
      * @return the box paint version of the instance.
      * When the original picture is not a perfect multiple of boxSize * boxSize,
      * the bottom rows and right columns are obtained by averaging the pixels that
@@ -284,50 +664,78 @@ public class PictureConvertor {
      * bottom-right corner will use a 2 x 2 box.
      */
     public Picture boxPaint(int boxSize) {
-        Picture boxPaint = new Picture(picture);
-        int color;
-        int r=0;
-        int g=0;
-        int b=0;
-        int boxDesired;
-        int avgR=0;
-        int avgG=0;
-        int avgB=0;
-
-        for (int i = 0; i < length; i++) {
-            for (int j = 0; j < breadth; j++) {
-                for (int k = i; k <= boxSize; k++) {
-                    for (int l = j; l <= boxSize; l++) {
-
-                        color = picture.getRGB(l, k);
-                        r += (color >> 16) & 0xFF;
-                        g += (color >> 8) & 0xFF;
-                        b += (color) & 0xFF;
+        if (boxSize < 1) {
+            throw new IllegalArgumentException("boxSize must be positive");
+        }
+        IntegralImage sums = new IntegralImage(picture);
+        Picture boxPaint = new Picture(breadth, length);
+        int boxRows = (length + boxSize - 1) / boxSize;
+
+        executor.run(boxRows, 0, (from, to) -> {
+            int[] line = new int[breadth];
+            for (int box = from; box < to; box++) {
+                int top = box * boxSize;
+                int bottom = Math.min(length, top + boxSize) - 1;
+                for (int left = 0; left < breadth; left += boxSize) {
+                    int right = Math.min(breadth, left + boxSize) - 1;
+                    int average = sums.meanRGB(left, top, right, bottom);
+                    for (int col = left; col <= right; col++) {
+                        line[col] = average;
                     }
                 }
-                avgR=r/(boxSize*boxSize);
-                avgG=g/(boxSize*boxSize);
-                avgB = b/(boxSize*boxSize);
-                for (int k = i; k <= boxSize; k++) {
-                    for (int l = j; l <= boxSize; l++) {
-
-                        if (k < 0 || k >= length) {
-                             //adding exceptions
-
-                        }
-                        if (l < 0 || l >= breadth) {
-                            continue;
-                        }
-                        boxDesired = (avgR << 16) | (8 << avgG) | (avgB);
-                        boxPaint.setRGB(l, k, boxDesired);
-                    }
-
+                for (int row = top; row <= bottom; row++) {
+                    boxPaint.setRGBRow(row, line);
                 }
             }
+        });
+
+        return boxPaint;
+    }
+
+    /**
+     * Convolve each colour channel of the picture with a kernel. The kernel is anchored
+     * at its centre entry (columns / 2, rows / 2), and output channel values are rounded
+     * and clamped to [0, 255]. Near the border, the picture is taken to repeat its border
+     * pixels. For example, a 3-by-3 kernel whose entries are all 1/9 replaces each pixel by
+     * the mean of its neighbourhood.
+     * <p>
+     * Small kernels are applied directly, which takes time proportional to the number
+     * of kernel entries per pixel. Large kernels, such as the blurs of more than a few
+     * pixels' radius, are applied by multiplying transforms, which takes time proportional
+     * to the logarithm of the size of the picture per pixel, whatever the kernel; the
+     * method expected to be faster is chosen for each call. Both give the same result,
+     * up to rounding of values that lie almost exactly halfway between two integers.
+     *
+     * @param kernel the kernel, is not null.
+     * @return the convolved version of the instance.
+     */
+    public Picture convolve(NestedMatrix kernel) {
+        if (kernel == null) {
+            throw new IllegalArgumentException("kernel is null");
+        }
+        if (ConvolutionFilter.prefersTransform(breadth, length, kernel.rows, kernel.columns)) {
+            return convolveByTransform(kernel);
         }
+        return convolveDirectly(kernel);
+    }
 
+    /**
+     * Convolve the picture as {@link #convolve(NestedMatrix)} does, directly.
+     */
+    Picture convolveDirectly(NestedMatrix kernel) {
+        Picture convolved = new Picture(breadth, length);
+        executor.run(length, kernel.rows / 2,
+            (from, to) -> ConvolutionFilter.filterRows(picture, convolved, kernel, from, to));
+        return convolved;
+    }
 
-        return boxPaint;
+    /**
+     * Convolve the picture as {@link #convolve(NestedMatrix)} does, through the transform.
+     */
+    Picture convolveByTransform(NestedMatrix kernel) {
+        Picture convolved = new Picture(breadth, length);
+        ConvolutionFilter.transform(picture, convolved, kernel);
+        return convolved;
     }
 
     /**
@@ -335,72 +743,124 @@ public class PictureConvertor {
      * The centre of an picture is the pixel at (breadth/2, length/2). The new regions
      * that may be created are given the colour white (<code>#ffffff</code>) with
      * maximum transparency (alpha = 255).
+     * <p>
+     * Rotations by exactly 0, 90, 180, 270 and 360 degrees move every pixel without
+     * resampling, as in {@link #rotate90()}, {@link #rotate180()} and {@link #rotate270()}.
      *
      * @param degrees the angle to rotate the picture by, 0 <= degrees <= 360.
      * @return a rotate version of the instance.
      */
     public Picture rotate(double degrees) {
-        int original_breadth = breadth;
-        int original_length = length;
-        int new_breadth =  (int) (Math.abs(Math.cos(degrees * Math.PI/180)*breadth) +
-                               Math.abs(Math.cos((90-degrees) * Math.PI/180)*length));
+        return rotate(degrees, Sampling.NEAREST);
+    }
 
-        int new_length = (int) (Math.abs(Math.sin(degrees * Math.PI/180)*breadth) +
-                                Math.abs(Math.sin((90-degrees) * Math.PI/180)*length));
+    /**
+     * Rotate an picture by the given angle (degrees) about the centre of the picture,
+     * as in {@link #rotate(double)}, reading the picture with the given sampling.
+     *
+     * @param degrees  the angle to rotate the picture by, 0 <= degrees <= 360.
+     * @param sampling how to read the picture between pixels, is not null.
+     * @return a rotate version of the instance.
+     */
+    public Picture rotate(double degrees, Sampling sampling) {
+        if (degrees == 0 || degrees == 360) {
+            return new Picture(picture);
+        } else if (degrees == 90) {
+            return rotate90();
+        } else if (degrees == 180) {
+            return rotate180();
+        } else if (degrees == 270) {
+            return rotate270();
+        }
+        return AffineResampler.resample(picture, Affine.rotation(degrees),
+            rotatedBreadth(breadth, length, degrees), rotatedLength(breadth, length, degrees),
+            sampling, WHITE, executor);
+    }
 
-        int startPosCol = new_breadth/2-breadth/2;
-        int startPosRow = new_length/2-length/2;
+    /**
+     * Transform an picture by a linear map about the centre of the picture, using
+     * nearest-neighbour sampling.
+     *
+     * @param map the map to apply, is not null.
+     * @return the transformed picture, as described in {@link #transform(Affine, Sampling)}.
+     */
+    public Picture transform(Affine map) {
+        return transform(map, Sampling.NEAREST);
+    }
 
-        Picture outPicture = new Picture(new_breadth,new_length);
-        for(int i = 0; i < outPicture.length(); i++){
-            for(int j = 0; j < outPicture.breadth(); j++){
-                outPicture.set(j,i,Color.WHITE);
-            }
-        }
-        for (int col = 0; col < new_breadth; col++) {
-            for (int row = 0; row < new_length; row++) {
-                int original_x = (int) ((col - breadth / 2 -startPosCol) * Math.cos(degrees * Math.PI / 180) +
-                    (row - length / 2 -startPosRow) * Math.sin(degrees * Math.PI / 180) + original_breadth / 2);
-                int original_y = (int) (-(col - breadth / 2 - startPosCol) * Math.sin(degrees * Math.PI / 180) +
-                    (row - length / 2 - startPosRow) * Math.cos(degrees * Math.PI / 180) + original_length / 2);
-                if (original_x >= 0 && original_y >= 0 &&
-                    original_x < original_breadth &&
-                    original_y < original_length) {
-                    outPicture.set(col, row, picture.get(original_x, original_y));
-                }
-            }
-        }
-        return outPicture;
+    /**
+     * Transform an picture by a linear map about the centre of the picture.
+     * The output is just large enough to hold the transformed picture, and its centre
+     * is the image of the centre of the picture. The new regions that may be created
+     * are given the colour white, as in {@link #rotate(double)}.
+     * <p>
+     * A map composed with {@link Affine#andThen(Affine)} is applied in a single pass,
+     * so it reads the picture only once however many steps it has.
+     *
+     * @param map      the map to apply, is not null.
+     * @param sampling how to read the picture between pixels, is not null.
+     * @return the transformed picture.
+     */
+    public Picture transform(Affine map, Sampling sampling) {
+        return AffineResampler.resample(picture, map,
+            map.transformedBreadth(breadth, length), map.transformedLength(breadth, length),
+            sampling, WHITE, executor);
+    }
+
+    /**
+     * Obtain the breadth of a breadth-by-length picture after {@link #rotate(double)}.
+     */
+    static int rotatedBreadth(int breadth, int length, double degrees) {
+        return (int) (Math.abs(Math.cos(degrees * Math.PI/180)*breadth) +
+            Math.abs(Math.cos((90-degrees) * Math.PI/180)*length));
+    }
+
+    /**
+     * Obtain the length of a breadth-by-length picture after {@link #rotate(double)}.
+     */
+    static int rotatedLength(int breadth, int length, double degrees) {
+        return (int) (Math.abs(Math.sin(degrees * Math.PI/180)*breadth) +
+            Math.abs(Math.sin((90-degrees) * Math.PI/180)*length));
     }
 
     /**
      * Compute the discrete Fourier transform of the picture and return the
      * amplitude and phase matrices as a DFTOutput instance.
+     * <p>
+     * The transform is applied to the grayscale intensities f(x, y) of the picture,
+     * where x is the column and y is the row, and entry [u][v] of each matrix
+     * describes F(u, v) = sum over x, y of f(x, y) exp(-2 pi i (u x / breadth + v y / length)).
+     * The phase is measured in radians in the range [-pi, pi].
+     * It is computed with a separable fast Fourier transform of real input in O(N log N)
+     * time for N = breadth * length, and only the half of it that the other half is the
+     * conjugate of is kept.
      *
      * @return the amplitude and phase of the DFT of the instance.
      */
     public DFTOutput dft() {
-        Picture greyImg = grayscale();
-        double sumReal = 0.0;
-        double sumImaginary = 0.0;
-        double[][] magnitude  = new double[breadth][length];
-        double[][] phase = new double[breadth][length];
-
-        for(int u = 0; u < breadth; u++){
-            for(int v = 0; v < length; v++){
-                for (int x = 0; x < breadth; x++){
-                    for (int y = 0; y < length; y++){
-                        sumReal += Math.cos(2*Math.PI*((u*x)/(double)breadth + (v*y)/(double)length)) * greyImg.get(y,x).getBlue();
-                        sumImaginary += Math.sin(2*Math.PI * ((u*x)/(double)breadth + (v*y)/(double)length)) * greyImg.get(y,x).getBlue();
-                    }
-                }
-                magnitude[u][v] = Math.sqrt(Math.pow(sumReal,2) + Math.pow(sumImaginary,2));
-                phase[u][v] = Math.atan(sumImaginary/sumReal);
-            }
-        }
+        return dft(GrayPicture.of(picture));
+    }
 
+    /**
+     * Compute the discrete Fourier transform of a gray picture, as described in {@link #dft()}.
+     *
+     * @param gray the gray picture to transform, is not null.
+     * @return the amplitude and phase of the DFT of the gray picture.
+     */
+    public static DFTOutput dft(GrayPicture gray) {
+        int breadth = gray.breadth();
+        int length = gray.length();
+        byte[] levels = gray.raster();
+        double[] values = new double[breadth * length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = levels[i] & 0xFF;
+        }
 
-        return new DFTOutput(magnitude,phase);
+        int half = breadth / 2 + 1;
+        double[] re = new double[half * length];
+        double[] im = new double[half * length];
+        FFTPlan.transformReal2D(values, breadth, length, re, im);
+        return new DFTOutput(breadth, length, re, im);
     }
 
     /**
@@ -426,40 +886,29 @@ public class PictureConvertor {
     public Picture greenScreen(Color screenColour, Picture backgroundPicture) {
         Picture outGreenScreen = new Picture(picture);
         int sC = screenColour.getRGB();
-        int breadthMin = breadth-1;
-        int lengthMin = length-1;
-        int breadthMax = 0;
-        int lengthMax = 0;
-        int count = 0;
-        HashMap largestConnected = new HashMap();
-        HashMap currentConnected = new HashMap();
-        for(int row = 0; row < length; row++){
-            for(int col = 0; col < breadth; col++){
-                if(outGreenScreen.getRGB(col,row) == sC){
-                    if(! largestConnected.containsKey(row + ""+col)){
-                        currentConnected = connectedRegion(row,col,sC);
-                        if(currentConnected.size() > largestConnected.size()){
-                            largestConnected = new HashMap(currentConnected);
-                        }
-                    }
-                }
-            }
+        ConnectedComponents regions = ConnectedComponents.of(picture, sC);
+        int screen = regions.largest();
+        if (screen == ConnectedComponents.BACKGROUND) {
+            return outGreenScreen;
         }
 
-        for(int i = 0; i < length; i++){
-            for(int j = 0; j < breadth; j++){
-                if(largestConnected.containsKey(i+""+j)){
-                    if(count == 0){
-                        lengthMin = i;
-                        breadthMin = j;
-                    }
-                    if(count == largestConnected.size()-1){
-                        lengthMax = i;
-                        breadthMax = j;
-                    }
-                    count++;
+        int breadthMin = regions.minCol(screen);
+        int lengthMin = regions.minRow(screen);
+        int breadthMax = regions.maxCol(screen);
+        int lengthMax = regions.maxRow(screen);
+        int backgroundBreadth = backgroundPicture.breadth();
+        int backgroundLength = backgroundPicture.length();
+        int[] line = new int[breadth];
+        int[] backgroundLine = new int[backgroundBreadth];
+        for (int row = lengthMin; row <= lengthMax; row++) {
+            outGreenScreen.getRGBRow(row, line);
+            backgroundPicture.getRGBRow((row - lengthMin) % backgroundLength, backgroundLine);
+            for (int col = breadthMin; col <= breadthMax; col++) {
+                if (line[col] == sC) {
+                    line[col] = backgroundLine[(col - breadthMin) % backgroundBreadth];
                 }
             }
+            outGreenScreen.setRGBRow(row, line);
         }
         return outGreenScreen;
     }
@@ -467,75 +916,110 @@ public class PictureConvertor {
     /**
      * Align (appropriately rotate) an picture of text that was improperly aligned.
      * This transformation can work properly only with text pictures.
+     * <p>
+     * The picture is rotated back by {@link #estimateSkew()}, with bilinear sampling,
+     * as in {@link #transform(Affine, Sampling)}.
      *
      * @return the aligned picture.
      */
     public Picture alignTextPicture() {
-        // TODO: Implement this method
-        return null;
-    }
-
-    private void sortAscending(ArrayList<Integer> arr){
-        for (int i = 0; i < arr.size(); i++){
-            for (int j = arr.size() -1; j > i; j--){
-                if (arr.get(i) > arr.get(j)){
-                    int temp = arr.get(j);
-                    arr.set(j,arr.get(i));
-                    arr.set(i,temp);
-                }
-            }
+        double skew = estimateSkew();
+        if (skew == 0) {
+            return new Picture(picture);
         }
+        return transform(Affine.rotation(-skew), Sampling.BILINEAR);
     }
 
-    private double findMedian(ArrayList<Integer> arr){
-        double median;
-        if (arr.size() % 2 == 0){
-            median = (arr.get(arr.size()/2) + arr.get(arr.size()/2-1))/2;
-        }else {
-            median = arr.get(arr.size()/2);
+    /**
+     * Estimate the angle by which the lines of an picture of text are rotated, in the
+     * same direction as {@link #rotate(double)}.
+     * <p>
+     * The pixels darker than the mean luminance of the picture are taken to be ink, and
+     * for each candidate angle they are counted along lines at that angle; the angle
+     * whose counts are most uneven, with full lines of text and empty gaps between them,
+     * is the estimate. The search runs coarse to fine: every whole degree between
+     * -{@value #MAX_SKEW} and {@value #MAX_SKEW} is tried on a level of the picture's
+     * pyramid ({@link Picture#level(int)}) no larger than {@value #SKEW_COARSE_SIDE}
+     * pixels on a side, and only the tenths of a degree within one degree of the best
+     * of those are tried at full resolution.
+     *
+     * @return the angle in degrees, between -{@value #MAX_SKEW} and {@value #MAX_SKEW}
+     * and a multiple of 0.1, or 0 if the picture has no ink.
+     */
+    public double estimateSkew() {
+        int larger = Math.max(breadth, length);
+        int level = 0;
+        while (((larger - 1) >> level) + 1 > SKEW_COARSE_SIDE) {
+            level++;
         }
-        return median;
+        int coarse = bestSkew(picture.level(level), -10 * MAX_SKEW, 10 * MAX_SKEW, 10);
+        int fine = level == 0 ? coarse : bestSkew(picture,
+            Math.max(-10 * MAX_SKEW, coarse - 10), Math.min(10 * MAX_SKEW, coarse + 10), 1);
+        return fine / 10.0;
     }
 
     /**
-     * Finds the smallest value of R, G, and B in an picture
-     * from a set of neighbouring pixels (including itself)
-     * @param (row,col) index of pixel in the picture
-     * @return RGB value representing the smallest value of R, G, and B in neighbours
+     * Find the angle, in tenths of a degree, between from and to in steps of step, along
+     * which the ink of a picture is counted most unevenly. Ties go to the angle nearest 0.
      */
-    private int smallestNeighbouringRGB(int row, int col){
-        int minR = 255;
-        int minG = 255;
-        int minB = 255;
-        int r,g,b;
-        int color;
-        int smallestRGB;
+    private static int bestSkew(Picture picture, int from, int to, int step) {
+        int breadth = picture.breadth();
+        int length = picture.length();
+        int[] raster = picture.raster();
+        long total = 0;
+        for (int row = 0; row < length; row++) {
+            int start = picture.rowOffset(row);
+            for (int col = 0; col < breadth; col++) {
+                total += Picture.luminance(raster[start + col]);
+            }
+        }
+        double mean = (double) total / ((long) breadth * length);
 
-        for(int neighbourRow = row-1; neighbourRow <= row+1; neighbourRow++){
-            for(int neighbourCol = col-1; neighbourCol <= col+1; neighbourCol++){
-                if(neighbourRow < 0 || neighbourRow >= length){
-                    break;
-                }
-                if(neighbourCol < 0 || neighbourCol >= breadth){
-                    continue;
-                }
-                color = picture.getRGB(neighbourCol, neighbourRow);
-                r = (color >> 16) & 0xFF;
-                g = (color >> 8) & 0xFF;
-                b = (color) & 0xFF;
-                if(r < minR){
-                    minR = r;
-                }
-                if(g < minG){
-                    minG = g;
-                }
-                if(b < minB){
-                    minB = b;
+        // the coordinates of the ink, relative to the centre of the picture
+        int count = 0;
+        float[] xs = new float[16];
+        float[] ys = new float[16];
+        for (int row = 0; row < length; row++) {
+            int start = picture.rowOffset(row);
+            for (int col = 0; col < breadth; col++) {
+                if (Picture.luminance(raster[start + col]) < mean) {
+                    if (count == xs.length) {
+                        xs = Arrays.copyOf(xs, 2 * count);
+                        ys = Arrays.copyOf(ys, 2 * count);
+                    }
+                    xs[count] = col - breadth / 2f;
+                    ys[count] = row - length / 2f;
+                    count++;
                 }
             }
         }
-        smallestRGB = (minR << 16) | (minG << 8) | minB;
-        return smallestRGB;
+        if (count == 0) {
+            return 0;
+        }
+
+        int reach = (int) Math.ceil(Math.hypot(breadth, length) / 2) + 1;
+        int[] counts = new int[2 * reach + 1];
+        int best = 0;
+        long bestScore = -1;
+        for (int angle = from; angle <= to; angle += step) {
+            double radians = angle * Math.PI / 1800;
+            float sin = (float) Math.sin(radians);
+            float cos = (float) Math.cos(radians);
+            Arrays.fill(counts, 0);
+            for (int i = 0; i < count; i++) {
+                // the distance of the ink from the line at this angle through the centre
+                counts[reach + Math.round(cos * ys[i] - sin * xs[i])]++;
+            }
+            long score = 0;
+            for (int c : counts) {
+                score += (long) c * c;
+            }
+            if (score > bestScore || (score == bestScore && Math.abs(angle) < Math.abs(best))) {
+                best = angle;
+                bestScore = score;
+            }
+        }
+        return best;
     }
 
     /**
@@ -544,7 +1028,7 @@ public class PictureConvertor {
      * @param colorChannel color channel value ranging from 0-255
      * @return posterized version of color value as specified in posterize method
      */
-    private int posterizeColorSetter(int colorChannel) {
+    private static int posterizeColorSetter(int colorChannel) {
         if (colorChannel <= 64) {
             return 32;
         } else if (colorChannel <= 128) {
@@ -554,45 +1038,4 @@ public class PictureConvertor {
         }
 
     }
-
-    /**
-     *Finds the largest connected (neighbouring pixels) region by color values
-     *starting from given index
-     * @param row index of the starting row pixel
-     * @param col index of the starting column pixel
-     * @param RGB the color value that creates the connecting region
-     * @return a HashMap which contains the indexes of connecting region as the keys and
-     * the keys point to the input color value
-     * returns an empty Hashmap if RGB value doesn't exist at given starting index
-     */
-    private HashMap connectedRegion(int row, int col, int RGB) {
-        HashMap connected = new HashMap();
-
-        if (picture.getRGB(col, row) != RGB) {
-            return connected;
-        }else{
-            connected.put(row+""+col, picture.getRGB(col,row));
-        }
-
-        for (int i = row - 1; i <= row + 1; i++) {
-            for (int j = col - 1; j <= col + 1; j++) {
-                if (i < 0 || i >= length) {
-                    break;
-                }
-                if (j < 0 || j >= breadth ||
-                    i == row && j == col ||
-                    connected.containsKey(i + "" + j)) {
-                    continue;
-                }
-                if (picture.getRGB(j, i) == RGB) {
-                    connected.put(i + "" + j, picture.getRGB(j, i));
-                    row = i;
-                    col = j;
-                    i = row-1;
-                    break;
-                }
-            }
-        }
-        return connected;
-    }
 }
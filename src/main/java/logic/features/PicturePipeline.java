@@ -0,0 +1,377 @@
+package logic.features;
+
+import logic.core.Picture;
+import logic.core.PictureProcessingException;
+import logic.core.Quadrilateral;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * This datatype represents a chain of {@link PictureConvertor} operations that is
+ * recorded now and evaluated later.
+ * <p>
+ * Nothing is computed until {@link #toPicture()} or {@link #save(String)} is called.
+ * Consecutive per-pixel operations (grayscale, red, negative, posterize, lookup tables
+ * and custom {@link #map(IntUnaryOperator)} stages) are fused into one pass over the
+ * picture, with no intermediate pictures between them. Consecutive lookup-table stages
+ * are folded into a single lookup table before the pass. Neighbourhood and geometric
+ * operations are fusion barriers: the fused operations before them are applied in one
+ * pass, and per-pixel operations that follow them are applied in place on their output.
+ * A chain therefore allocates at most one picture per barrier, plus one for the result.
+ * <p>
+ * The input picture is read when the pipeline is evaluated and is never changed.
+ * A pipeline can be evaluated more than once.
+ */
+public final class PicturePipeline {
+
+    private final Picture source;
+    private final RowBandExecutor executor;
+    private final List<Stage> stages = new ArrayList<>();
+    private int breadth;
+    private int length;
+
+    /*
+        Abstraction Function:
+            Represents the picture obtained by applying stages, in order, to source.
+            breadth and length are the dimensions of that picture.
+
+        Representation Invariant:
+            source != null, executor != null
+            breadth >= 1, length >= 1
+     */
+
+    /**
+     * A recorded operation: either a per-pixel function of the packed colour,
+     * or an operation on a whole picture.
+     */
+    private static final class Stage {
+        final ChannelLut lut;
+        final IntUnaryOperator point;
+        final Function<PictureConvertor, Picture> barrier;
+
+        Stage(ChannelLut lut, IntUnaryOperator point, Function<PictureConvertor, Picture> barrier) {
+            this.lut = lut;
+            this.point = point;
+            this.barrier = barrier;
+        }
+    }
+
+    PicturePipeline(Picture source, RowBandExecutor executor) {
+        this.source = source;
+        this.executor = executor;
+        this.breadth = source.breadth();
+        this.length = source.length();
+    }
+
+    /**
+     * Append a grayscale conversion, as in {@link PictureConvertor#grayscale()}.
+     *
+     * @return this pipeline
+     */
+    public PicturePipeline grayscale() {
+        return applyLut(PictureConvertor.GRAYSCALE_LUT);
+    }
+
+    /**
+     * Append a reds-only conversion, as in {@link PictureConvertor#red(java.awt.Color)}.
+     *
+     * @return this pipeline
+     */
+    public PicturePipeline red() {
+        return applyLut(PictureConvertor.RED_LUT);
+    }
+
+    /**
+     * Append a negative, as in {@link PictureConvertor#negative()}.
+     *
+     * @return this pipeline
+     */
+    public PicturePipeline negative() {
+        return applyLut(PictureConvertor.NEGATIVE_LUT);
+    }
+
+    /**
+     * Append a posterization, as in {@link PictureConvertor#posterize()}.
+     * Unlike that method, the input picture is not changed.
+     *
+     * @return this pipeline
+     */
+    public PicturePipeline posterize() {
+        return applyLut(PictureConvertor.POSTERIZE_LUT);
+    }
+
+    /**
+     * Append a lookup-table point operation, as in {@link PictureConvertor#applyLut(ChannelLut)}.
+     *
+     * @param lut the point operation, is not null
+     * @return this pipeline
+     */
+    public PicturePipeline applyLut(ChannelLut lut) {
+        if (lut == null) {
+            throw new IllegalArgumentException("lut is null");
+        }
+        int last = stages.size() - 1;
+        if (last >= 0 && stages.get(last).lut != null) {
+            stages.set(last, new Stage(stages.get(last).lut.andThen(lut), null, null));
+        } else {
+            stages.add(new Stage(lut, null, null));
+        }
+        return this;
+    }
+
+    /**
+     * Append a custom per-pixel operation. The operation receives each colour in the
+     * encoding of {@link Picture#getRGB(int, int)} and returns the new colour; it must
+     * not depend on the location of the pixel and must be safe to call from several threads.
+     *
+     * @param operation the per-pixel operation, is not null
+     * @return this pipeline
+     */
+    public PicturePipeline map(IntUnaryOperator operation) {
+        if (operation == null) {
+            throw new IllegalArgumentException("operation is null");
+        }
+        stages.add(new Stage(null, operation, null));
+        return this;
+    }
+
+    /**
+     * Append a mirror, as in {@link PictureConvertor#mirror()}.
+     *
+     * @return this pipeline
+     */
+    public PicturePipeline mirror() {
+        return barrier(PictureConvertor::mirror);
+    }
+
+    /**
+     * Append a vertical flip, as in {@link PictureConvertor#flipVertical()}.
+     *
+     * @return this pipeline
+     */
+    public PicturePipeline flipVertical() {
+        return barrier(PictureConvertor::flipVertical);
+    }
+
+    /**
+     * Append a transpose, as in {@link PictureConvertor#transpose()}.
+     *
+     * @return this pipeline
+     */
+    public PicturePipeline transpose() {
+        barrier(PictureConvertor::transpose);
+        int previousBreadth = breadth;
+        breadth = length;
+        length = previousBreadth;
+        return this;
+    }
+
+    /**
+     * Append a 3x3 median denoise, as in {@link PictureConvertor#denoise()}.
+     *
+     * @return this pipeline
+     */
+    public PicturePipeline denoise() {
+        return denoise(1);
+    }
+
+    /**
+     * Append a median denoise, as in {@link PictureConvertor#denoise(int)}.
+     *
+     * @param radius the radius of the window, >= 1
+     * @return this pipeline
+     */
+    public PicturePipeline denoise(int radius) {
+        if (radius < 1) {
+            throw new IllegalArgumentException("radius must be at least 1");
+        }
+        return barrier(t -> t.denoise(radius));
+    }
+
+    /**
+     * Append a 3x3 weathering, as in {@link PictureConvertor#weather()}.
+     *
+     * @return this pipeline
+     */
+    public PicturePipeline weather() {
+        return weather(1);
+    }
+
+    /**
+     * Append a weathering, as in {@link PictureConvertor#weather(int)}.
+     *
+     * @param radius the radius of the square, >= 0
+     * @return this pipeline
+     */
+    public PicturePipeline weather(int radius) {
+        if (radius < 0) {
+            throw new IllegalArgumentException("radius must not be negative");
+        }
+        return barrier(t -> t.weather(radius));
+    }
+
+    /**
+     * Append a box paint, as in {@link PictureConvertor#boxPaint(int)}.
+     *
+     * @param boxSize the dimension of the square box, >= 1
+     * @return this pipeline
+     */
+    public PicturePipeline boxPaint(int boxSize) {
+        if (boxSize < 1) {
+            throw new IllegalArgumentException("boxSize must be positive");
+        }
+        return barrier(t -> t.boxPaint(boxSize));
+    }
+
+    /**
+     * Append a rotation, as in {@link PictureConvertor#rotate(double)}.
+     *
+     * @param degrees the angle to rotate by, 0 <= degrees <= 360
+     * @return this pipeline
+     */
+    public PicturePipeline rotate(double degrees) {
+        int newBreadth = PictureConvertor.rotatedBreadth(breadth, length, degrees);
+        int newLength = PictureConvertor.rotatedLength(breadth, length, degrees);
+        barrier(t -> t.rotate(degrees));
+        breadth = newBreadth;
+        length = newLength;
+        return this;
+    }
+
+    /**
+     * Append a linear transform, as in {@link PictureConvertor#transform(Affine, Sampling)}.
+     * Compose consecutive maps with {@link Affine#andThen(Affine)} instead of appending
+     * them one by one, so that the picture is resampled only once.
+     *
+     * @param map      the map to apply, is not null
+     * @param sampling how to read the picture between pixels, is not null
+     * @return this pipeline
+     */
+    public PicturePipeline transform(Affine map, Sampling sampling) {
+        if (map == null || sampling == null) {
+            throw new IllegalArgumentException("map and sampling must not be null");
+        }
+        int newBreadth = map.transformedBreadth(breadth, length);
+        int newLength = map.transformedLength(breadth, length);
+        barrier(t -> t.transform(map, sampling));
+        breadth = newBreadth;
+        length = newLength;
+        return this;
+    }
+
+    /**
+     * Append a clip, as in {@link PictureConvertor#clip(Quadrilateral)}.
+     *
+     * @param clippingBox is not null
+     * @return this pipeline
+     * @throws PictureProcessingException if the clippingBox does not fit completely within
+     *                                    the picture produced by the stages recorded so far
+     */
+    public PicturePipeline clip(Quadrilateral clippingBox) throws PictureProcessingException {
+        if (clippingBox.xBottomRight >= breadth || clippingBox.yBottomRight >= length) {
+            throw new PictureProcessingException();
+        }
+        barrier(t -> {
+            try {
+                return t.clip(clippingBox);
+            } catch (PictureProcessingException e) {
+                throw new IllegalStateException("clipping box was checked when recorded", e);
+            }
+        });
+        breadth = clippingBox.xBottomRight - clippingBox.xTopLeft + 1;
+        length = clippingBox.yBottomRight - clippingBox.yTopLeft + 1;
+        return this;
+    }
+
+    private PicturePipeline barrier(Function<PictureConvertor, Picture> operation) {
+        stages.add(new Stage(null, null, operation));
+        return this;
+    }
+
+    /**
+     * Evaluate the pipeline.
+     *
+     * @return a new picture holding the result of every recorded operation
+     */
+    public Picture toPicture() {
+        Picture current = source;
+        boolean owned = false;          // true once current is a picture this evaluation created
+        IntUnaryOperator pending = null;
+
+        for (Stage stage : stages) {
+            if (stage.lut != null || stage.point != null) {
+                IntUnaryOperator point = stage.lut != null ? new LutOperator(stage.lut) : stage.point;
+                pending = pending == null ? point : pending.andThen(point);
+            } else {
+                if (pending != null) {
+                    current = applyPoints(current, pending, owned);
+                    owned = true;
+                    pending = null;
+                }
+                current = stage.barrier.apply(new PictureConvertor(current, executor));
+                owned = true;
+            }
+        }
+        if (pending != null) {
+            return applyPoints(current, pending, owned);
+        }
+        return owned ? current : new Picture(source);
+    }
+
+    /**
+     * Evaluate the pipeline and save the result, as in {@link Picture#save(String)}.
+     *
+     * @param name the name of the file, ending in .png, .jpg or .raw
+     * @return the result of every recorded operation
+     */
+    public Picture save(String name) {
+        Picture result = toPicture();
+        result.save(name);
+        return result;
+    }
+
+    /**
+     * Apply a fused per-pixel operation in one pass, in place if the input is owned.
+     */
+    private Picture applyPoints(Picture input, IntUnaryOperator operation, boolean inPlace) {
+        int w = input.breadth();
+        Picture output = inPlace ? input : new Picture(w, input.length());
+        // an owned input may still be a view, so it is detached before bands read and write it
+        output.ensureOwnRaster();
+        executor.run(input.length(), 0, (from, to) -> {
+            int[] line = new int[w];
+            for (int row = from; row < to; row++) {
+                input.getRGBRow(row, line);
+                if (operation instanceof LutOperator) {
+                    ((LutOperator) operation).lut.applyInPlace(line, 0, w);
+                } else {
+                    for (int col = 0; col < w; col++) {
+                        line[col] = operation.applyAsInt(line[col]);
+                    }
+                }
+                output.setRGBRow(row, line);
+            }
+        });
+        return output;
+    }
+
+    /**
+     * A lookup table used as a per-pixel operation, recognised so that it can be
+     * applied a whole row at a time.
+     */
+    private static final class LutOperator implements IntUnaryOperator {
+        final ChannelLut lut;
+
+        LutOperator(ChannelLut lut) {
+            this.lut = lut;
+        }
+
+        @Override
+        public int applyAsInt(int rgb) {
+            return lut.apply(rgb);
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package logic.features;
 
+import logic.core.GrayPicture;
 import logic.core.Picture;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
  * This class provides some simple operations involving
  * more than one picture.
+ * <p>
+ * Cosine similarities compare the gray levels of pictures, as computed by
+ * {@link Picture#luminance(int)}. They are read straight from the rasters and
+ * accumulated exactly in <code>long</code>s, so no intermediate pictures or vectors are
+ * created and the result does not depend on how the work is split between threads.
  */
 public class PictureProcessing {
 
+    private static final int COARSE_SIDE = 64;
+    private static final int SHORTLIST = 4;
+
     /**
      * Compute the cosine similarity between two pictures.
      *
@@ -17,32 +32,238 @@ public class PictureProcessing {
      * referenced by img1 and img2.
      */
     public static double cosineSimilarity(Picture img1, Picture img2) {
-        Picture gray1 = new PictureConvertor(img1).grayscale();
-        Picture gray2 = new PictureConvertor(img2).grayscale();
+        return cosineSimilarity(img1, img2, RowBandExecutor.SEQUENTIAL);
+    }
 
-        int breadth = gray1.breadth();
-        int length = gray1.length();
-        int dimension = gray1.breadth()* gray1.length();
+    /**
+     * Compute the cosine similarity between two pictures, splitting the rows
+     * between the threads of a pool.
+     *
+     * @param img1: the first picture, is not null.
+     * @param img2: the second picture, in not null and matches img1 in dimensions.
+     * @param pool: the pool to run on, is not null.
+     * @return the cosine similarity between the Pictures
+     * referenced by img1 and img2.
+     */
+    public static double cosineSimilarity(Picture img1, Picture img2, ForkJoinPool pool) {
+        return cosineSimilarity(img1, img2, new RowBandExecutor(pool));
+    }
 
-        int[] vector1 = new int[dimension];
-        int[] vector2 = new int[dimension];
+    private static double cosineSimilarity(Picture img1, Picture img2, RowBandExecutor executor) {
+        checkDimensions(img1.breadth(), img1.length(), img2.breadth(), img2.length());
+        int breadth = img1.breadth();
+        int[] raster1 = img1.raster();
+        int[] raster2 = img2.raster();
+        LongAdder dotProduct = new LongAdder();
+        LongAdder sumOfSquares1 = new LongAdder();
+        LongAdder sumOfSquares2 = new LongAdder();
 
-        long dotProduct = 0;
-        long sumOfSquares1 = 0;
-        long sumOfSquares2 = 0;
-        int count = 0;
-
-        for (int i = 0 ; i < length; i++) {
-            for (int j = 0; j < breadth; j++){
-                vector1[count] = gray1.getRGB(j,i) >> 16 &0xFF;
-                vector2[count] = gray2.getRGB(j,i) >> 16 &0xFF;
-                dotProduct += Math.abs(vector1[count] * vector2[count]);
-                sumOfSquares1 += Math.pow(vector1[count],2);
-                sumOfSquares2 += Math.pow(vector2[count], 2);
-                count++;
+        executor.run(img1.length(), 0, (from, to) -> {
+            long dot = 0;
+            long squares1 = 0;
+            long squares2 = 0;
+            for (int row = from; row < to; row++) {
+                int start1 = img1.rowOffset(row);
+                int start2 = img2.rowOffset(row);
+                for (int col = 0; col < breadth; col++) {
+                    int a = Picture.luminance(raster1[start1 + col]);
+                    int b = Picture.luminance(raster2[start2 + col]);
+                    dot += a * b;
+                    squares1 += a * a;
+                    squares2 += b * b;
+                }
+            }
+            dotProduct.add(dot);
+            sumOfSquares1.add(squares1);
+            sumOfSquares2.add(squares2);
+        });
+
+        return cosine(dotProduct.sum(), sumOfSquares1.sum(), sumOfSquares2.sum());
+    }
+
+    /**
+     * Compute the cosine similarity between two gray pictures.
+     *
+     * @param gray1: the first gray picture, is not null.
+     * @param gray2: the second gray picture, is not null and matches gray1 in dimensions.
+     * @return the cosine similarity between the gray levels of gray1 and gray2.
+     */
+    public static double cosineSimilarity(GrayPicture gray1, GrayPicture gray2) {
+        checkDimensions(gray1.breadth(), gray1.length(), gray2.breadth(), gray2.length());
+        return cosine(dot(gray1.raster(), gray2.raster()),
+            dot(gray1.raster(), gray1.raster()), dot(gray2.raster(), gray2.raster()));
+    }
+
+    /**
+     * Compute the cosine similarity between one picture and each of many others.
+     * The gray levels of the query are computed once, and each candidate is read once.
+     *
+     * @param query:      the picture to compare, is not null.
+     * @param candidates: the pictures to compare it with, are not null and match query in dimensions.
+     * @return the cosine similarity between query and candidates.get(i), at index i.
+     */
+    public static double[] cosineSimilarities(Picture query, List<Picture> candidates) {
+        return cosineSimilarities(query, candidates, RowBandExecutor.SEQUENTIAL);
+    }
+
+    /**
+     * Compute the cosine similarity between one picture and each of many others,
+     * splitting the candidates between the threads of a pool.
+     *
+     * @param query:      the picture to compare, is not null.
+     * @param candidates: the pictures to compare it with, are not null and match query in dimensions.
+     * @param pool:       the pool to run on, is not null.
+     * @return the cosine similarity between query and candidates.get(i), at index i.
+     */
+    public static double[] cosineSimilarities(Picture query, List<Picture> candidates, ForkJoinPool pool) {
+        return cosineSimilarities(query, candidates, new RowBandExecutor(pool));
+    }
+
+    private static double[] cosineSimilarities(Picture query, List<Picture> candidates,
+                                               RowBandExecutor executor) {
+        int breadth = query.breadth();
+        int length = query.length();
+        for (Picture candidate : candidates) {
+            checkDimensions(breadth, length, candidate.breadth(), candidate.length());
+        }
+        byte[] levels = GrayPicture.of(query).raster();
+        long querySquares = dot(levels, levels);
+        double[] similarities = new double[candidates.size()];
+
+        executor.run(similarities.length, 0, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                Picture candidate = candidates.get(i);
+                int[] raster = candidate.raster();
+                long dot = 0;
+                long squares = 0;
+                for (int row = 0; row < length; row++) {
+                    int start = candidate.rowOffset(row);
+                    int q = row * breadth;
+                    for (int col = 0; col < breadth; col++) {
+                        int b = Picture.luminance(raster[start + col]);
+                        dot += (levels[q + col] & 0xFF) * b;
+                        squares += b * b;
+                    }
+                }
+                similarities[i] = cosine(dot, querySquares, squares);
+            }
+        });
+        return similarities;
+    }
+
+    /**
+     * Compute the cosine similarity between every pair of pictures. Each picture is
+     * converted to gray levels, and the norm of those levels computed, only once.
+     *
+     * @param pictures: the pictures to compare, are not null and all have the same dimensions.
+     * @return the symmetric matrix whose entry [i][j] is the cosine similarity
+     * between pictures.get(i) and pictures.get(j).
+     */
+    public static double[][] cosineSimilarityMatrix(List<Picture> pictures) {
+        return cosineSimilarityMatrix(pictures, RowBandExecutor.SEQUENTIAL);
+    }
+
+    /**
+     * Compute the cosine similarity between every pair of pictures, splitting
+     * the work between the threads of a pool.
+     *
+     * @param pictures: the pictures to compare, are not null and all have the same dimensions.
+     * @param pool:     the pool to run on, is not null.
+     * @return the symmetric matrix whose entry [i][j] is the cosine similarity
+     * between pictures.get(i) and pictures.get(j).
+     */
+    public static double[][] cosineSimilarityMatrix(List<Picture> pictures, ForkJoinPool pool) {
+        return cosineSimilarityMatrix(pictures, new RowBandExecutor(pool));
+    }
+
+    private static double[][] cosineSimilarityMatrix(List<Picture> pictures, RowBandExecutor executor) {
+        int n = pictures.size();
+        for (Picture picture : pictures) {
+            checkDimensions(pictures.get(0).breadth(), pictures.get(0).length(),
+                picture.breadth(), picture.length());
+        }
+        byte[][] levels = new byte[n][];
+        long[] squares = new long[n];
+        executor.run(n, 0, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                levels[i] = GrayPicture.of(pictures.get(i)).raster();
+                squares[i] = dot(levels[i], levels[i]);
+            }
+        });
+
+        double[][] matrix = new double[n][n];
+        executor.run(n, 0, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                matrix[i][i] = cosine(squares[i], squares[i], squares[i]);
+                for (int j = i + 1; j < n; j++) {
+                    double similarity = cosine(dot(levels[i], levels[j]), squares[i], squares[j]);
+                    matrix[i][j] = similarity;
+                    matrix[j][i] = similarity;
+                }
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * Find the candidate most similar to a picture, searching coarse to fine.
+     * <p>
+     * The candidates are first compared with the query at a level of their pyramids
+     * ({@link Picture#level(int)}) no larger than {@value #COARSE_SIDE} pixels on a side,
+     * and only the {@value #SHORTLIST} that are most similar there are compared at full
+     * resolution. The answer can therefore differ from the best full-resolution match
+     * only if that match does not look like one of the best few at low resolution.
+     *
+     * @param query:      the picture to look for, is not null.
+     * @param candidates: the pictures to search, are not null, match query in dimensions
+     *                    and there is at least one.
+     * @return the index in candidates of the most similar candidate; among candidates
+     * that are equally similar, the first.
+     */
+    public static int mostSimilar(Picture query, List<Picture> candidates) {
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("there must be at least one candidate");
+        }
+        int larger = Math.max(query.breadth(), query.length());
+        int level = 0;
+        while (((larger - 1) >> level) + 1 > COARSE_SIDE) {
+            level++;
+        }
+        Picture coarseQuery = query.level(level);
+        List<Picture> coarse = new ArrayList<>(candidates.size());
+        for (Picture candidate : candidates) {
+            checkDimensions(query.breadth(), query.length(), candidate.breadth(), candidate.length());
+            coarse.add(candidate.level(level));
+        }
+        double[] coarseSimilarities = cosineSimilarities(coarseQuery, coarse);
+
+        Integer[] order = new Integer[candidates.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (i, j) -> Double.compare(coarseSimilarities[j], coarseSimilarities[i]));
+        int best = -1;
+        double bestSimilarity = Double.NEGATIVE_INFINITY;
+        for (int rank = 0; rank < Math.min(SHORTLIST, order.length); rank++) {
+            int i = order[rank];
+            double similarity = cosineSimilarity(query, candidates.get(i));
+            if (similarity > bestSimilarity || (similarity == bestSimilarity && i < best)) {
+                best = i;
+                bestSimilarity = similarity;
             }
         }
+        return best;
+    }
+
+    private static long dot(byte[] vector1, byte[] vector2) {
+        long dotProduct = 0;
+        for (int i = 0; i < vector1.length; i++) {
+            dotProduct += (vector1[i] & 0xFF) * (vector2[i] & 0xFF);
+        }
+        return dotProduct;
+    }
 
+    private static double cosine(long dotProduct, long sumOfSquares1, long sumOfSquares2) {
         if (dotProduct == 0 && sumOfSquares1 == 0 && sumOfSquares2 == 0) {
             return 1;
         }else if(sumOfSquares1 == 0 || sumOfSquares2 == 0){
@@ -53,4 +274,10 @@ public class PictureProcessing {
         return cosSimilarity;
     }
 
+    private static void checkDimensions(int breadth1, int length1, int breadth2, int length2) {
+        if (breadth1 != breadth2 || length1 != length2) {
+            throw new IllegalArgumentException("pictures must have the same dimensions");
+        }
+    }
+
 }
@@ -0,0 +1,231 @@
+package logic.features;
+
+import logic.core.Picture;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * A memory-bounded cache of the results of {@link PictureConvertor} operations, keyed on
+ * the content of the input picture, the name of the operation and its parameters.
+ * <p>
+ * Inputs are identified by {@link Picture#digest()} together with their dimensions, so
+ * two pictures with the same pixels share their cached results, and a picture that is
+ * changed no longer finds the results of its old content. When the results held take
+ * more than the budget of bytes, the least recently used ones are evicted.
+ * <p>
+ * Results are held as private copies, each with a raster of its own: the picture
+ * returned by {@link #apply} never shares pixels with the one held, so a caller may
+ * change it freely, even by writing into its {@link Picture#raster() raster}, without
+ * corrupting the cache.
+ * <p>
+ * A cache is safe to use from several threads at once. Operations run outside its lock,
+ * so two threads that miss on the same key at the same time both compute the result.
+ */
+public final class ResultCache {
+
+    /** The bytes counted for an entry besides its pixels. */
+    private static final long ENTRY_OVERHEAD = 128;
+
+    private final long capacity;
+    private final LinkedHashMap<Key, Picture> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /*
+        Abstraction Function:
+            Represents a cache holding, for each key k of entries, the result entries.get(k)
+            of applying operation k.operation with parameters k.parameters to a picture
+            whose dimensions and digest are those of k. entries iterates from the least
+            to the most recently used. hits, misses and evictions count the lookups that
+            found a result, the lookups that did not, and the results evicted.
+
+        Representation Invariant:
+            capacity >= 0
+            bytes == sum over the results r held of cost(r), and bytes <= capacity
+            no result held is returned to a caller
+     */
+
+    /**
+     * Create an empty cache.
+     *
+     * @param capacity the largest number of bytes the results held may take, >= 0;
+     *                 a picture takes about 4 bytes per pixel
+     */
+    public ResultCache(long capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative");
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Obtain the result of an operation on a picture, from the cache if it is there.
+     * For example, {@code cache.apply(picture, "denoise", c -> c.denoise(2), 2)}.
+     *
+     * @param input      the picture to operate on, is not null
+     * @param operation  the name of the operation, is not null; together with parameters,
+     *                   it must identify what the function computes
+     * @param function   computes the result from a convertor of the input, is not null
+     *                   and returns a new picture
+     * @param parameters the parameters of the operation, with meaningful equals and hashCode
+     * @return the result, which the caller owns
+     */
+    public Picture apply(Picture input, String operation, Function<PictureConvertor, Picture> function,
+                         Object... parameters) {
+        if (input == null || operation == null || function == null) {
+            throw new IllegalArgumentException("arguments must not be null");
+        }
+        Key key = new Key(input.breadth(), input.length(), input.digest(), operation,
+            Arrays.asList(parameters.clone()));
+        synchronized (this) {
+            Picture held = entries.get(key);
+            if (held != null) {
+                hits++;
+                return privateCopy(held);
+            }
+            misses++;
+        }
+
+        Picture result = function.apply(new PictureConvertor(input));
+        long cost = cost(result);
+        if (cost <= capacity) {
+            Picture copy = privateCopy(result);
+            synchronized (this) {
+                Picture previous = entries.put(key, copy);
+                bytes += cost;
+                if (previous != null) {
+                    bytes -= cost(previous);
+                }
+                evict();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Remove every result from the cache. The statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    /**
+     * @return the number of results held
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the number of bytes the results held take
+     */
+    public synchronized long bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the number of calls to {@link #apply} that found their result in the cache
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * @return the number of calls to {@link #apply} that computed their result
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return the number of results removed to keep within the capacity
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ResultCache[" + entries.size() + " results, " + bytes + "/" + capacity
+            + " bytes, " + hits + " hits, " + misses + " misses, " + evictions + " evictions]";
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Key, Picture>> oldest = entries.entrySet().iterator();
+        while (bytes > capacity && oldest.hasNext()) {
+            bytes -= cost(oldest.next().getValue());
+            oldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Copy a picture into a raster of its own, so that writes through the
+     * {@link Picture#raster() raster} of either picture are not seen by the other.
+     * Unlike the copy constructor, this leaves {@code picture} unshared, so its owner
+     * does not pay for a second copy on its first write.
+     */
+    private static Picture privateCopy(Picture picture) {
+        int breadth = picture.breadth();
+        int length = picture.length();
+        int[] raster = picture.raster();
+        int offset = picture.rasterOffset();
+        int stride = picture.rasterStride();
+        int[] pixels = new int[breadth * length];
+        for (int row = 0; row < length; row++) {
+            System.arraycopy(raster, offset + row * stride, pixels, row * breadth, breadth);
+        }
+        Picture copy = Picture.wrap(pixels, breadth, length);
+        // the physical rows were copied in order, so the copy keeps the origin of picture
+        if (length > 1 && picture.rowOffset(0) > picture.rowOffset(1)) {
+            copy.setOriginLowerLeft();
+        }
+        return copy;
+    }
+
+    private static long cost(Picture picture) {
+        return 4L * picture.breadth() * picture.length() + ENTRY_OVERHEAD;
+    }
+
+    /**
+     * What a result was computed from.
+     */
+    private static final class Key {
+        final int breadth;
+        final int length;
+        final long digest;
+        final String operation;
+        final List<Object> parameters;
+
+        Key(int breadth, int length, long digest, String operation, List<Object> parameters) {
+            this.breadth = breadth;
+            this.length = length;
+            this.digest = digest;
+            this.operation = operation;
+            this.parameters = parameters;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key that = (Key) other;
+            return breadth == that.breadth && length == that.length && digest == that.digest
+                && operation.equals(that.operation) && parameters.equals(that.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (digest ^ (digest >>> 32)) * 31 + operation.hashCode() * 17 + parameters.hashCode();
+        }
+    }
+}
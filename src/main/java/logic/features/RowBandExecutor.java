@@ -0,0 +1,106 @@
+package logic.features;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs a kernel over the rows of a picture, either on the calling thread or
+ * split into bands of consecutive rows that are processed on a {@link ForkJoinPool}.
+ * <p>
+ * A kernel must only write the output rows of the band it is given, and may read
+ * any input row. Neighbourhood operations read up to {@code halo} rows above and
+ * below their band; bands are kept tall enough that these shared halo rows are a
+ * small fraction of the rows each band reads.
+ */
+final class RowBandExecutor {
+
+    /**
+     * A computation over a band of rows.
+     */
+    interface BandKernel {
+        /**
+         * Process the output rows {@code fromRow} (inclusive) to {@code toRow} (exclusive).
+         *
+         * @param fromRow the first row of the band
+         * @param toRow   one past the last row of the band
+         */
+        void apply(int fromRow, int toRow);
+    }
+
+    static final RowBandExecutor SEQUENTIAL = new RowBandExecutor(null);
+
+    private static final int MIN_BAND_ROWS = 8;
+    private static final int BANDS_PER_THREAD = 4;
+
+    private final ForkJoinPool pool;
+
+    /*
+        Abstraction Function:
+            Represents an execution strategy for band kernels: sequential when pool
+            is null, otherwise fork-join on pool.
+
+        Representation Invariant:
+            true
+     */
+
+    /**
+     * Create an executor.
+     *
+     * @param pool the pool to run bands on, or null to run every kernel on the calling thread
+     */
+    RowBandExecutor(ForkJoinPool pool) {
+        this.pool = pool;
+    }
+
+    /**
+     * Obtain the pool bands are run on.
+     *
+     * @return the pool, or null if this executor is sequential
+     */
+    ForkJoinPool pool() {
+        return pool;
+    }
+
+    /**
+     * Apply {@code kernel} to every row in [0, rows). Returns once all bands are done.
+     *
+     * @param rows   the number of output rows, >= 0
+     * @param halo   the number of input rows the kernel reads beyond each side of its band
+     * @param kernel the computation to run, is not null
+     */
+    void run(int rows, int halo, BandKernel kernel) {
+        if (pool == null || rows <= MIN_BAND_ROWS) {
+            kernel.apply(0, rows);
+            return;
+        }
+        int bands = pool.getParallelism() * BANDS_PER_THREAD;
+        int grain = Math.max(Math.max(MIN_BAND_ROWS, 4 * halo), (rows + bands - 1) / bands);
+        pool.invoke(new Band(kernel, 0, rows, grain));
+    }
+
+    private static final class Band extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final BandKernel kernel;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        Band(BandKernel kernel, int from, int to, int grain) {
+            this.kernel = kernel;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                kernel.apply(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Band(kernel, from, middle, grain), new Band(kernel, middle, to, grain));
+        }
+    }
+}
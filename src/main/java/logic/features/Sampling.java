@@ -0,0 +1,20 @@
+package logic.features;
+
+/**
+ * The ways in which a geometric transformation reads the colour of the source picture
+ * at a location that does not fall exactly on a pixel.
+ */
+public enum Sampling {
+    /**
+     * Use the colour of the pixel that contains the location: the location (x, y) reads
+     * pixel ((int) x, (int) y).
+     */
+    NEAREST,
+
+    /**
+     * Interpolate linearly, one channel at a time, between the four pixels that surround
+     * the location, taking pixel (col, row) to sit at the location (col, row). Locations
+     * beyond the last column or row repeat the border pixels.
+     */
+    BILINEAR
+}
@@ -0,0 +1,463 @@
+package logic.features;
+
+import logic.core.Picture;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * This datatype represents a mutable collection of pictures that can be searched for
+ * the pictures most similar to a query.
+ * <p>
+ * A picture is not stored itself, but described by a feature vector: its luminance,
+ * as computed by {@link Picture#luminance(int)}, averaged over a side-by-side grid of
+ * cells that each cover an equal share of the picture, and scaled to unit length.
+ * Pictures of any dimensions can therefore be compared, and the similarity of two
+ * pictures is the cosine similarity of their feature vectors, which approximates
+ * {@link PictureProcessing#cosineSimilarity(Picture, Picture)} of the pictures scaled to
+ * the same dimensions. A picture that is black everywhere has no direction; its
+ * similarity to every picture is 0.
+ * <p>
+ * The vectors are kept next to each other in a single <code>float</code> array, and a
+ * query scans them a block at a time, keeping the best matches so far in a heap of at
+ * most k entries. An index can be saved to a file and loaded again by mapping the file
+ * into memory, without parsing.
+ * <p>
+ * An index is not safe to use from several threads at once while it is being changed.
+ */
+public final class SimilarityIndex {
+
+    /**
+     * This datatype represents the <strong>immutable</strong> result of a query: a picture
+     * of the index and its similarity to the query.
+     */
+    public static final class Match {
+        private final int id;
+        private final double similarity;
+
+        /*
+            Abstraction Function:
+                Represents the picture added to an index under id, whose feature vector
+                has cosine similarity similarity with that of the query.
+
+            Representation Invariant:
+                id >= 0, -1 <= similarity <= 1 (up to rounding)
+         */
+
+        private Match(int id, double similarity) {
+            this.id = id;
+            this.similarity = similarity;
+        }
+
+        /**
+         * @return the id that {@link #add(Picture)} returned for the picture
+         */
+        public int id() {
+            return id;
+        }
+
+        /**
+         * @return the cosine similarity between the picture and the query
+         */
+        public double similarity() {
+            return similarity;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Match)) {
+                return false;
+            }
+            Match that = (Match) other;
+            return id == that.id && Double.compare(similarity, that.similarity) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * id + Double.hashCode(similarity);
+        }
+
+        @Override
+        public String toString() {
+            return id + ": " + similarity;
+        }
+    }
+
+    /** The default number of cells along each side of the feature grid. */
+    public static final int DEFAULT_SIDE = 16;
+
+    private static final int MAGIC = 0x58504942;    // "BIPX" read as a little-endian int
+    private static final short VERSION = 1;
+    private static final int HEADER_BYTES = 32;
+    private static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+    private static final int BLOCK = 64;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final int side;
+    private final int dimensions;
+    private float[] vectors;
+    private int[] ids;
+    private int[] slots;
+    private int size;
+    private int nextId;
+
+    /*
+        Abstraction Function:
+            Represents the pictures added under ids[0..size-1], where the feature vector
+            of the picture in slot s is vectors[s * dimensions .. (s + 1) * dimensions - 1].
+            The next picture added gets the id nextId.
+
+        Representation Invariant:
+            side >= 1, dimensions == side * side
+            0 <= size <= ids.length, vectors.length == ids.length * dimensions
+            the ids in ids[0..size-1] are distinct, and each is in [0, nextId)
+            slots.length >= nextId, and for each id in [0, nextId),
+            slots[id] == s if ids[s] == id for some s < size, and slots[id] == -1 otherwise
+            every stored vector has length 1 or is zero
+     */
+
+    /**
+     * Create an empty index whose feature grid has {@value #DEFAULT_SIDE} cells per side.
+     */
+    public SimilarityIndex() {
+        this(DEFAULT_SIDE);
+    }
+
+    /**
+     * Create an empty index.
+     *
+     * @param side the number of cells along each side of the feature grid, >= 1;
+     *             more cells tell more pictures apart but make queries slower
+     */
+    public SimilarityIndex(int side) {
+        if (side < 1 || side > 1024) {
+            throw new IllegalArgumentException("side must be between 1 and 1024");
+        }
+        this.side = side;
+        this.dimensions = side * side;
+        this.vectors = new float[INITIAL_CAPACITY * dimensions];
+        this.ids = new int[INITIAL_CAPACITY];
+        this.slots = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * @return the number of cells along each side of the feature grid
+     */
+    public int side() {
+        return side;
+    }
+
+    /**
+     * @return the number of pictures in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Check if a picture is in the index.
+     *
+     * @param id an id returned by {@link #add(Picture)}
+     * @return true if the picture was added and has not been removed
+     */
+    public boolean contains(int id) {
+        return id >= 0 && id < nextId && slots[id] >= 0;
+    }
+
+    /**
+     * Add a picture to the index.
+     *
+     * @param picture the picture to add, is not null
+     * @return the id of the picture in the index, which is never reused
+     */
+    public int add(Picture picture) {
+        if (size == ids.length) {
+            int capacity = 2 * ids.length;
+            ids = Arrays.copyOf(ids, capacity);
+            vectors = Arrays.copyOf(vectors, capacity * dimensions);
+        }
+        if (nextId == slots.length) {
+            slots = Arrays.copyOf(slots, 2 * slots.length);
+        }
+        int id = nextId++;
+        describe(picture, side, vectors, size * dimensions);
+        ids[size] = id;
+        slots[id] = size;
+        size++;
+        return id;
+    }
+
+    /**
+     * Remove a picture from the index.
+     *
+     * @param id an id returned by {@link #add(Picture)}
+     * @return true if the picture was in the index
+     */
+    public boolean remove(int id) {
+        if (!contains(id)) {
+            return false;
+        }
+        int slot = slots[id];
+        int last = size - 1;
+        if (slot != last) {
+            // move the last vector into the hole, so that the vectors stay contiguous
+            System.arraycopy(vectors, last * dimensions, vectors, slot * dimensions, dimensions);
+            ids[slot] = ids[last];
+            slots[ids[slot]] = slot;
+        }
+        slots[id] = -1;
+        size--;
+        return true;
+    }
+
+    /**
+     * Find the pictures of the index most similar to a picture.
+     *
+     * @param query the picture to look for, is not null
+     * @param k     the number of matches wanted, >= 0
+     * @return the min(k, size()) most similar pictures, from most to least similar;
+     * pictures that are equally similar are ordered by id
+     */
+    public List<Match> nearest(Picture query, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        float[] target = new float[dimensions];
+        describe(query, side, target, 0);
+        TopK best = new TopK(Math.min(k, size));
+        if (best.capacity == 0) {
+            return new ArrayList<>();
+        }
+
+        float[] scores = new float[BLOCK];
+        for (int block = 0; block < size; block += BLOCK) {
+            int count = Math.min(BLOCK, size - block);
+            for (int i = 0; i < count; i++) {
+                scores[i] = dot(target, vectors, (block + i) * dimensions, dimensions);
+            }
+            for (int i = 0; i < count; i++) {
+                best.offer(scores[i], ids[block + i]);
+            }
+        }
+        return best.drain();
+    }
+
+    /**
+     * Save the index to a file. An existing file is replaced.
+     *
+     * @param file the file to write, is not null
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        long bytes = HEADER_BYTES + 4L * size + 4L * size * dimensions;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, bytes);
+            buffer.order(ORDER)
+                .putInt(MAGIC)
+                .putShort(VERSION)
+                .putShort((short) 0)
+                .putInt(side)
+                .putInt(size)
+                .putInt(nextId)
+                .putInt(0)
+                .putLong(0);
+            buffer.asIntBuffer().put(ids, 0, size);
+            buffer.position(HEADER_BYTES + 4 * size);
+            buffer.slice().order(ORDER).asFloatBuffer().put(vectors, 0, size * dimensions);
+            buffer.force();
+        }
+    }
+
+    /**
+     * Load an index saved by {@link #save(Path)}.
+     *
+     * @param file the file to read, is not null
+     * @return the index, with the same pictures and ids as the index that was saved
+     * @throws IOException if the file cannot be read or is not an index file
+     */
+    public static SimilarityIndex load(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("file is too short to be an index file");
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ORDER);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("not an index file");
+            }
+            short version = buffer.getShort();
+            if (version != VERSION) {
+                throw new IOException("unsupported index file version: " + version);
+            }
+            buffer.getShort();
+            int side = buffer.getInt();
+            int size = buffer.getInt();
+            int nextId = buffer.getInt();
+            if (side < 1 || side > 1024 || size < 0 || nextId < size) {
+                throw new IOException("invalid index header");
+            }
+            int dimensions = side * side;
+            if (channel.size() != HEADER_BYTES + 4L * size + 4L * size * dimensions) {
+                throw new IOException("index file has the wrong size");
+            }
+
+            SimilarityIndex index = new SimilarityIndex(side);
+            int capacity = Math.max(INITIAL_CAPACITY, size);
+            index.ids = new int[capacity];
+            index.vectors = new float[capacity * dimensions];
+            index.slots = new int[Math.max(INITIAL_CAPACITY, nextId)];
+            Arrays.fill(index.slots, -1);
+            buffer.position(HEADER_BYTES);
+            buffer.asIntBuffer().get(index.ids, 0, size);
+            buffer.position(HEADER_BYTES + 4 * size);
+            buffer.slice().order(ORDER).asFloatBuffer().get(index.vectors, 0, size * dimensions);
+            for (int s = 0; s < size; s++) {
+                int id = index.ids[s];
+                if (id < 0 || id >= nextId || index.slots[id] >= 0) {
+                    throw new IOException("invalid id in index file: " + id);
+                }
+                index.slots[id] = s;
+            }
+            index.size = size;
+            index.nextId = nextId;
+            return index;
+        }
+    }
+
+    /**
+     * Compute the feature vector of a picture.
+     *
+     * @param picture the picture to describe, is not null
+     * @param side    the number of cells along each side of the grid, >= 1
+     * @param out     receives the side * side features, row by row
+     * @param offset  the index in out of the first feature
+     */
+    static void describe(Picture picture, int side, float[] out, int offset) {
+        double[] cells = PerceptualHash.meanLuminance(picture, side, side);
+        double norm = 0;
+        for (double cell : cells) {
+            norm += cell * cell;
+        }
+        double scale = norm > 0 ? 1 / Math.sqrt(norm) : 0;
+        for (int i = 0; i < cells.length; i++) {
+            out[offset + i] = (float) (cells[i] * scale);
+        }
+    }
+
+    /**
+     * The dot product of a with the n entries of b starting at offset, accumulated in
+     * four independent sums so that the additions need not wait for each other.
+     */
+    private static float dot(float[] a, float[] b, int offset, int n) {
+        float s0 = 0, s1 = 0, s2 = 0, s3 = 0;
+        int i = 0;
+        for (; i + 3 < n; i += 4) {
+            s0 += a[i] * b[offset + i];
+            s1 += a[i + 1] * b[offset + i + 1];
+            s2 += a[i + 2] * b[offset + i + 2];
+            s3 += a[i + 3] * b[offset + i + 3];
+        }
+        for (; i < n; i++) {
+            s0 += a[i] * b[offset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * The best matches seen so far, in a binary heap whose root is the worst of them.
+     */
+    private static final class TopK {
+        final int capacity;
+        final float[] scores;
+        final int[] ids;
+        int count;
+
+        TopK(int capacity) {
+            this.capacity = capacity;
+            this.scores = new float[capacity];
+            this.ids = new int[capacity];
+        }
+
+        void offer(float score, int id) {
+            if (count < capacity) {
+                scores[count] = score;
+                ids[count] = id;
+                siftUp(count++);
+            } else if (worse(scores[0], ids[0], score, id)) {
+                scores[0] = score;
+                ids[0] = id;
+                siftDown(0, count);
+            }
+        }
+
+        /**
+         * Empty the heap.
+         *
+         * @return the matches, from best to worst
+         */
+        List<Match> drain() {
+            Match[] matches = new Match[count];
+            while (count > 0) {
+                matches[count - 1] = new Match(ids[0], scores[0]);
+                count--;
+                swap(0, count);
+                siftDown(0, count);
+            }
+            return new ArrayList<>(Arrays.asList(matches));
+        }
+
+        private static boolean worse(float score, int id, float otherScore, int otherId) {
+            return score < otherScore || (score == otherScore && id > otherId);
+        }
+
+        private boolean worse(int i, int j) {
+            return worse(scores[i], ids[i], scores[j], ids[j]);
+        }
+
+        private void siftUp(int i) {
+            while (i > 0) {
+                int parent = (i - 1) / 2;
+                if (!worse(i, parent)) {
+                    return;
+                }
+                swap(i, parent);
+                i = parent;
+            }
+        }
+
+        private void siftDown(int i, int n) {
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= n) {
+                    return;
+                }
+                if (child + 1 < n && worse(child + 1, child)) {
+                    child++;
+                }
+                if (!worse(child, i)) {
+                    return;
+                }
+                swap(i, child);
+                i = child;
+            }
+        }
+
+        private void swap(int i, int j) {
+            float score = scores[i];
+            scores[i] = scores[j];
+            scores[j] = score;
+            int id = ids[i];
+            ids[i] = ids[j];
+            ids[j] = id;
+        }
+    }
+}
@@ -1,10 +1,20 @@
 package logic.features;
 
+import logic.core.MappedPicture;
 import logic.core.Picture;
 import logic.core.PictureProcessingException;
 import logic.core.Quadrilateral ;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Function;
+
 import static org.junit.Assert.*;
 
 public class Level1Tests {
@@ -47,4 +57,206 @@ public class Level1Tests {
         assertEquals(expectedImg, outputPicture);
     }
 
+    @Test
+    public void test_ClipViewsAndRegions() throws PictureProcessingException {
+        Picture originalImg = new Picture("resources/15088.jpg");
+        Picture expectedImg = new Picture("resources/tests/15088-clip-60-100-250-350.png");
+        Quadrilateral box = new Quadrilateral (60, 100, 250, 350);
+        PictureConvertor t = new PictureConvertor(originalImg);
+
+        Picture clipped = t.clip(box);
+        assertSame(originalImg.raster(), clipped.raster());
+        clipped.setRGB(0, 0, 0x123456);
+        originalImg.setRGB(61, 101, 0x654321);
+        assertEquals(0xFF123456, clipped.getRGB(0, 0));
+        assertEquals(expectedImg.getRGB(1, 1), clipped.getRGB(1, 1));
+        assertEquals(expectedImg.getRGB(0, 0), originalImg.getRGB(60, 100));
+
+        Picture lowerLeft = new Picture("resources/15088.jpg");
+        lowerLeft.setOriginLowerLeft();
+        Picture view = lowerLeft.view(box);
+        for (int row = 0; row < view.length(); row += 50) {
+            assertEquals(lowerLeft.getRGB(80, 100 + row), view.getRGB(20, row));
+        }
+
+        Picture fresh = new Picture("resources/15088.jpg");
+        PictureConvertor f = new PictureConvertor(fresh);
+        assertEquals(new PictureConvertor(f.denoise(2)).clip(box), f.apply(box, 2, c -> c.denoise(2)));
+        assertEquals(new PictureConvertor(f.grayscale()).clip(box), f.region(box).grayscale());
+        assertEquals(new Picture("resources/15088.jpg"), fresh);
+    }
+
+    @Test
+    public void test_CopyOnWriteAndDestinations() {
+        Picture originalImg = new Picture("resources/15088.jpg");
+        Picture copy = new Picture(originalImg);
+        assertSame(originalImg.raster(), copy.raster());
+        copy.setRGB(0, 0, 0x123456);
+        assertNotSame(originalImg.raster(), copy.raster());
+        assertEquals(0xFF123456, copy.getRGB(0, 0));
+        assertEquals(new Picture("resources/15088.jpg"), originalImg);
+
+        PictureConvertor t = new PictureConvertor(originalImg);
+        Picture expectedImg = new Picture("resources/tests/15088-poster.png");
+        assertEquals(expectedImg, t.posterize());
+        assertEquals(new Picture("resources/15088.jpg"), originalImg);
+
+        Picture destination = new Picture(originalImg.breadth(), originalImg.length());
+        assertSame(destination, t.grayscale(destination));
+        assertEquals(t.grayscale(), destination);
+        assertSame(destination, new PictureConvertor(destination).negative(destination));
+        assertEquals(new PictureConvertor(t.grayscale()).negative(), destination);
+
+        Picture inPlace = new Picture(originalImg);
+        new PictureConvertor(inPlace).posterize(inPlace);
+        assertEquals(expectedImg, inPlace);
+        assertEquals(new Picture("resources/15088.jpg"), originalImg);
+
+        try {
+            t.negative(new Picture(1, 1));
+            fail("a destination must have the dimensions of the picture");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_PipelineMatchesChainedOperations() throws PictureProcessingException {
+        Picture originalImg = new Picture("resources/15088.jpg");
+        Quadrilateral box = new Quadrilateral (10, 20, 200, 300);
+
+        Picture gray = new PictureConvertor(originalImg).grayscale();
+        Picture negative = new PictureConvertor(gray).negative();
+        Picture denoised = new PictureConvertor(negative).denoise();
+        Picture clipped = new PictureConvertor(denoised).clip(box);
+        Picture expectedImg = new PictureConvertor(clipped).posterize();
+
+        Picture outputPicture = new PictureConvertor(originalImg).pipeline()
+            .grayscale().negative().denoise().clip(box).posterize()
+            .toPicture();
+
+        assertEquals(expectedImg, outputPicture);
+        assertEquals(new Picture("resources/15088.jpg"), originalImg);
+    }
+
+    @Test
+    public void test_ComposedLutMatchesChainedOperations() {
+        Picture originalImg = new Picture("resources/15088.jpg");
+        int[] gamma = new int[256];
+        for (int v = 0; v < 256; v++) {
+            gamma[v] = (int) Math.round(255 * Math.pow(v / 255.0, 0.5));
+        }
+
+        Picture curved = new PictureConvertor(originalImg).applyLut(gamma);
+        Picture negative = new PictureConvertor(curved).negative();
+        Picture expectedImg = new PictureConvertor(negative).grayscale();
+
+        ChannelLut composed = ChannelLut.of(gamma)
+            .andThen(PictureConvertor.NEGATIVE_LUT)
+            .andThen(PictureConvertor.GRAYSCALE_LUT);
+        Picture outputPicture = new PictureConvertor(originalImg).applyLut(composed);
+
+        assertEquals(expectedImg, outputPicture);
+    }
+
+    @Test
+    public void test_GrayscaleLutMatchesLuminance() {
+        for (int rgb = 0; rgb < 1 << 24; rgb++) {
+            int r = (rgb >> 16) & 0xFF;
+            int g = (rgb >> 8) & 0xFF;
+            int b = rgb & 0xFF;
+            // the floating-point formula of Picture.intensity(Color), which rounds exactly
+            int y = r == g && r == b ? r : (int) Math.round(0.299 * r + 0.587 * g + 0.114 * b);
+            if (Picture.luminance(rgb) != y
+                || PictureConvertor.GRAYSCALE_LUT.apply(rgb) != (0xFF000000 | (y << 16) | (y << 8) | y)) {
+                fail("gray level of " + Integer.toHexString(rgb) + " differs from its luminance " + y);
+            }
+        }
+    }
+
+    @Test
+    public void test_RawRoundTrip() throws IOException {
+        Path raw = Files.createTempFile("round-trip", ".raw");
+        try {
+            File[] fixtures = new File("resources/tests").listFiles((dir, name) -> name.endsWith(".png"));
+            assertNotNull(fixtures);
+            for (File fixture : fixtures) {
+                Picture expectedImg = new Picture(fixture);
+                expectedImg.writeRaw(raw);
+                assertEquals(fixture.getName(), expectedImg, Picture.readRaw(raw));
+            }
+
+            Picture lowerLeft = new Picture("resources/15088.jpg");
+            lowerLeft.setOriginLowerLeft();
+            lowerLeft.save(raw.toString());
+            Picture reloaded = Picture.readRaw(raw);
+            assertEquals(lowerLeft.getRGB(3, 0), reloaded.getRGB(3, 0));
+            try (MappedPicture mapped = MappedPicture.open(raw)) {
+                assertEquals(lowerLeft.getRGB(3, 0), mapped.getRGB(3, 0));
+                mapped.setRGB(3, 0, 0x123456);
+            }
+            assertEquals(0xFF123456, Picture.readRaw(raw).getRGB(3, 0));
+
+            lowerLeft.writeRaw(raw);
+            try (FileChannel channel = FileChannel.open(raw, StandardOpenOption.WRITE)) {
+                channel.write(ByteBuffer.wrap(new byte[]{42}), 100);
+            }
+            try {
+                Picture.readRaw(raw);
+                fail("a corrupted file must not match its checksum");
+            } catch (IOException expected) {
+                // expected
+            }
+        } finally {
+            Files.deleteIfExists(raw);
+        }
+    }
+
+    @Test
+    public void test_DigestAndResultCache() {
+        Picture originalImg = new Picture("resources/15088.jpg");
+        Picture copy = new Picture(originalImg);
+        assertEquals(originalImg.digest(), copy.digest());
+        copy.setRGB(5, 5, copy.getRGB(5, 5) ^ 1);
+        assertNotEquals(originalImg.digest(), copy.digest());
+        Picture flipped = new PictureConvertor(originalImg).mirror();
+        flipped.setOriginLowerLeft();
+        assertNotEquals(originalImg.digest(), flipped.digest());
+
+        long pictureBytes = 4L * originalImg.breadth() * originalImg.length();
+        ResultCache cache = new ResultCache(2 * pictureBytes + 1024);
+        Picture denoised = cache.apply(originalImg, "denoise", c -> c.denoise(2), 2);
+        assertEquals(new PictureConvertor(originalImg).denoise(2), denoised);
+        int[] raster = denoised.raster();
+        denoised.setRGB(0, 0, 0x123456);
+        assertSame(raster, denoised.raster());
+        denoised.raster()[denoised.rowOffset(1)] = 0x654321;
+        Picture again = cache.apply(new Picture(originalImg), "denoise", c -> c.denoise(2), 2);
+        assertEquals(new PictureConvertor(originalImg).denoise(2), again);
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        again.raster()[again.rowOffset(2)] = 0x654321;
+        assertEquals(new PictureConvertor(originalImg).denoise(2),
+            cache.apply(originalImg, "denoise", c -> c.denoise(2), 2));
+
+        cache.apply(originalImg, "denoise", c -> c.denoise(1), 1);
+        cache.apply(originalImg, "grayscale", PictureConvertor::grayscale);
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.evictions());
+        assertTrue(cache.bytes() <= 2 * pictureBytes + 1024);
+        cache.apply(originalImg, "denoise", c -> c.denoise(2), 2);
+        assertEquals(4, cache.misses());
+
+        Function<PictureConvertor, Picture> upsideDown = c -> {
+            Picture result = c.mirror();
+            result.setOriginLowerLeft();
+            return result;
+        };
+        Picture computed = cache.apply(originalImg, "upside down", upsideDown);
+        Picture cached = cache.apply(originalImg, "upside down", upsideDown);
+        assertEquals(computed, cached);
+        assertEquals(computed.digest(), cached.digest());
+        assertEquals(computed.getRGB(3, 0), cached.getRGB(3, 0));
+    }
+
 }
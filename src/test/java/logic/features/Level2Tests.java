@@ -1,8 +1,15 @@
 package logic.features;
 
+import logic.core.MappedPicture;
 import logic.core.Picture;
 import org.junit.Test;
 
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
 import static org.junit.Assert.*;
 
 public class Level2Tests {
@@ -15,4 +22,102 @@ public class Level2Tests {
         Picture outputPicture = t.weather();
         assertEquals(expectedImg, outputPicture);
     }
+
+    @Test
+    public void test_MorphologyLargeRadius() {
+        Random random = new Random(5);
+        Picture originalImg = new Picture(31, 19);
+        for (int row = 0; row < originalImg.length(); row++) {
+            for (int col = 0; col < originalImg.breadth(); col++) {
+                originalImg.setRGB(col, row, random.nextInt(0x1000000));
+            }
+        }
+        PictureConvertor t = new PictureConvertor(originalImg);
+
+        assertEquals(extremum(originalImg, 4, 2, false), t.weather(4, 2));
+        assertEquals(extremum(originalImg, 3, 3, true), t.dilate(3));
+        assertEquals(extremum(extremum(originalImg, 2, 2, false), 2, 2, true), t.open(2));
+        assertEquals(extremum(extremum(originalImg, 2, 2, true), 2, 2, false), t.close(2));
+    }
+
+    private static Picture extremum(Picture img, int horizontalRadius, int verticalRadius, boolean max) {
+        Picture out = new Picture(img.breadth(), img.length());
+        for (int row = 0; row < img.length(); row++) {
+            for (int col = 0; col < img.breadth(); col++) {
+                int rgb = 0;
+                for (int shift = 16; shift >= 0; shift -= 8) {
+                    int best = max ? 0 : 255;
+                    for (int y = Math.max(0, row - verticalRadius); y <= Math.min(img.length() - 1, row + verticalRadius); y++) {
+                        for (int x = Math.max(0, col - horizontalRadius); x <= Math.min(img.breadth() - 1, col + horizontalRadius); x++) {
+                            int value = (img.getRGB(x, y) >> shift) & 0xFF;
+                            best = max ? Math.max(best, value) : Math.min(best, value);
+                        }
+                    }
+                    rgb |= best << shift;
+                }
+                out.setRGB(col, row, rgb);
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void test_GreenScreenLargestRegion() {
+        Color green = Color.GREEN;
+        Picture original = new Picture(14, 14);
+        // a diagonal staircase, connected only through corners: 8 pixels
+        for (int i = 0; i < 8; i++) {
+            original.set(2 + i, 2 + i, green);
+        }
+        // a 2x3 block elsewhere: 6 pixels
+        for (int row = 10; row < 13; row++) {
+            original.set(1, row, green);
+            original.set(2, row, green);
+        }
+        Picture background = new Picture(3, 3);
+        background.set(1, 0, Color.RED);
+
+        ConnectedComponents regions = ConnectedComponents.of(original, green.getRGB());
+        assertEquals(2, regions.count());
+        int screen = regions.largest();
+        assertEquals(8, regions.size(screen));
+        assertEquals(2, regions.minCol(screen));
+        assertEquals(9, regions.maxRow(screen));
+        assertEquals(ConnectedComponents.BACKGROUND, regions.label(3, 2));
+
+        Picture output = new PictureConvertor(original).greenScreen(green, background);
+        for (int row = 0; row < 14; row++) {
+            for (int col = 0; col < 14; col++) {
+                boolean onScreen = row >= 2 && row <= 9 && col == row;
+                Color expected = !onScreen ? original.get(col, row)
+                    : background.get((col - 2) % 3, (row - 2) % 3);
+                assertEquals(expected, output.get(col, row));
+            }
+        }
+    }
+
+    @Test
+    public void test_StreamMappedPicture() throws IOException {
+        Picture originalImg = new Picture("resources/95006.jpg");
+        Path input = Files.createTempFile("stream-input", ".raw");
+        Path output = Files.createTempFile("stream-output", ".raw");
+        try (MappedPicture source = MappedPicture.copyOf(originalImg, input);
+             MappedPicture target = MappedPicture.create(output, originalImg.breadth(), originalImg.length())) {
+            assertEquals(originalImg, source.toPicture());
+
+            PictureConvertor.stream(source, target, 2, t -> t.denoise(2), 7);
+            assertEquals(new PictureConvertor(originalImg).denoise(2), target.toPicture());
+
+            PictureConvertor.stream(target, target, 0, PictureConvertor::negative, 5);
+            target.force();
+        }
+        try (MappedPicture reopened = MappedPicture.open(output)) {
+            Picture expected = new PictureConvertor(new PictureConvertor(originalImg).denoise(2)).negative();
+            assertEquals(expected, reopened.toPicture());
+        } finally {
+            Files.deleteIfExists(input);
+            Files.deleteIfExists(output);
+        }
+    }
+
 }
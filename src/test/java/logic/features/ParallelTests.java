@@ -0,0 +1,131 @@
+package logic.features;
+
+import logic.core.Picture;
+import logic.core.Quadrilateral;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ParallelTests {
+
+    @Test
+    public void test_ParallelMatchesSequential() {
+        Picture originalImg = new Picture("resources/95006.jpg");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            PictureConvertor sequential = new PictureConvertor(originalImg);
+            PictureConvertor parallel = new PictureConvertor(originalImg, pool);
+
+            assertEquals(sequential.grayscale(), parallel.grayscale());
+            assertEquals(sequential.red(null), parallel.red(null));
+            assertEquals(sequential.negative(), parallel.negative());
+            assertEquals(sequential.denoise(), parallel.denoise());
+            assertEquals(sequential.weather(), parallel.weather());
+            assertEquals(sequential.rotate(30), parallel.rotate(30));
+            assertEquals(sequential.rotate(90), parallel.rotate(90));
+            assertEquals(sequential.rotate(180), parallel.rotate(180));
+            assertEquals(new PictureConvertor(new Picture(originalImg)).posterize(),
+                new PictureConvertor(new Picture(originalImg)).parallel(pool).posterize());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void test_ParallelInPlaceOnSharedPictures() throws Exception {
+        Picture originalImg = new Picture("resources/95006.jpg");
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            Picture expectedImg = new PictureConvertor(originalImg).negative();
+            for (int round = 0; round < 20; round++) {
+                Picture copy = new Picture(originalImg);
+                assertSame(copy, new PictureConvertor(copy, pool).negative(copy));
+                assertEquals(expectedImg, copy);
+            }
+            assertEquals(new Picture("resources/95006.jpg"), originalImg);
+
+            Quadrilateral box = new Quadrilateral(10, 20, 200, 300);
+            Picture expectedClip = new PictureConvertor(originalImg).pipeline()
+                .clip(box).grayscale().negative().toPicture();
+            Picture parallelClip = new PictureConvertor(originalImg, pool).pipeline()
+                .clip(box).grayscale().negative().toPicture();
+            assertEquals(expectedClip, parallelClip);
+            Picture expectedView = new PictureConvertor(originalImg.view(box)).negative();
+            for (int round = 0; round < 20; round++) {
+                Picture view = originalImg.view(box);
+                new PictureConvertor(view, pool).negative(view);
+                assertEquals(expectedView, view);
+            }
+            assertEquals(new Picture("resources/95006.jpg"), originalImg);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void test_BatchRunnerReportsEveryFile() throws IOException {
+        Path outputs = Files.createTempDirectory("batch-out");
+        List<Path> inputs = Arrays.asList(Paths.get("resources/12003.jpg"), Paths.get("resources/15088.jpg"),
+            Paths.get("resources/missing.jpg"), Paths.get("resources/8143.jpg"), Paths.get("resources/95006.jpg"));
+        List<BatchRunner.Result> reported = new ArrayList<>();
+        try {
+            List<BatchRunner.Result> results;
+            try (BatchRunner runner = new BatchRunner(2, 2, 2, 1)) {
+                results = runner.run(inputs, input -> outputs.resolve(input.getFileName() + ".png"),
+                    p -> new PictureConvertor(p).negative(), BatchRunner.Order.INPUT, reported::add);
+            }
+
+            assertEquals(results, reported);
+            assertFalse(results.get(2).succeeded());
+            for (int i = 0; i < inputs.size(); i++) {
+                BatchRunner.Result result = results.get(i);
+                assertEquals(inputs.get(i), result.input());
+                if (i != 2) {
+                    assertTrue(result.toString(), result.succeeded());
+                    Picture expected = new PictureConvertor(new Picture(result.input().toFile())).negative();
+                    assertEquals(expected, new Picture(result.output().toFile()));
+                    Files.delete(result.output());
+                }
+            }
+        } finally {
+            Files.delete(outputs);
+        }
+    }
+
+    @Test
+    public void test_BatchRunnerRethrowsListenerFailure() throws IOException {
+        Path outputs = Files.createTempDirectory("batch-out");
+        List<Path> inputs = Arrays.asList(Paths.get("resources/12003.jpg"), Paths.get("resources/15088.jpg"));
+        List<BatchRunner.Result> reported = new ArrayList<>();
+        try (BatchRunner runner = new BatchRunner(1, 1, 1, 0)) {
+            runner.run(inputs, input -> outputs.resolve(input.getFileName() + ".png"),
+                p -> p, BatchRunner.Order.INPUT, result -> {
+                    reported.add(result);
+                    throw new IllegalStateException("listener failed on " + result.index());
+                });
+            fail("the failure of the listener must reach the caller");
+        } catch (IllegalStateException expected) {
+            assertEquals("listener failed on 0", expected.getMessage());
+            assertEquals(1, expected.getSuppressed().length);
+            assertEquals(2, reported.size());
+        } finally {
+            for (Path input : inputs) {
+                Files.deleteIfExists(outputs.resolve(input.getFileName() + ".png"));
+            }
+            Files.delete(outputs);
+        }
+    }
+}
@@ -1,11 +1,16 @@
 package logic.features;
 
+import logic.core.IntegralImage;
 import logic.core.Picture;
 import logic.core.PictureProcessingException;
 import logic.core.Quadrilateral ;
 import org.junit.Test;
 
+import java.util.Arrays;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 public class Task2Tests {
 
@@ -19,6 +24,45 @@ public class Task2Tests {
         assertEquals(expImg, resultImg);
     }
 
+    @Test
+    public void test_DenoiseRadius(){
+        Random random = new Random(4);
+        Picture origImg = new Picture(23, 17);
+        for (int row = 0; row < origImg.length(); row++) {
+            for (int col = 0; col < origImg.breadth(); col++) {
+                origImg.setRGB(col, row, random.nextInt(0x1000000));
+            }
+        }
+        PictureConvertor t = new PictureConvertor(origImg);
+
+        for (int radius : new int[] {1, 2, 5}) {
+            Picture expImg = new Picture(origImg.breadth(), origImg.length());
+            for (int row = 0; row < origImg.length(); row++) {
+                for (int col = 0; col < origImg.breadth(); col++) {
+                    expImg.setRGB(col, row, clippedMedian(origImg, col, row, radius));
+                }
+            }
+            assertEquals(expImg, t.denoise(radius));
+        }
+    }
+
+    private static int clippedMedian(Picture img, int col, int row, int radius) {
+        int rgb = 0;
+        for (int shift = 16; shift >= 0; shift -= 8) {
+            int[] values = new int[(2 * radius + 1) * (2 * radius + 1)];
+            int count = 0;
+            for (int y = Math.max(0, row - radius); y <= Math.min(img.length() - 1, row + radius); y++) {
+                for (int x = Math.max(0, col - radius); x <= Math.min(img.breadth() - 1, col + radius); x++) {
+                    values[count++] = (img.getRGB(x, y) >> shift) & 0xFF;
+                }
+            }
+            Arrays.sort(values, 0, count);
+            int median = count % 2 == 0 ? (values[count / 2] + values[count / 2 - 1]) / 2 : values[count / 2];
+            rgb |= median << shift;
+        }
+        return rgb;
+    }
+
     @Test
     public void test_Denoise2(){
         Picture originalImg = new Picture("resources/Denoise.jpg");
@@ -65,4 +109,82 @@ public class Task2Tests {
 
         assertEquals(expected, output);
     }
+
+    @Test
+    public void test_IntegralImageMatchesBruteForce() {
+        Random random = new Random(6);
+        Picture picture = new Picture(37, 23);
+        for (int row = 0; row < picture.length(); row++) {
+            for (int col = 0; col < picture.breadth(); col++) {
+                picture.setRGB(col, row, random.nextInt());
+            }
+        }
+        IntegralImage sums = new IntegralImage(picture);
+
+        int[][] edges = {
+            {0, 0, 36, 22}, {0, 0, 0, 0}, {36, 22, 36, 22}, {36, 0, 36, 22}, {0, 22, 36, 22},
+            {5, 7, 5, 7}, {3, 4, 20, 9}, {0, 10, 12, 22}
+        };
+        int[][] boxes = Arrays.copyOf(edges, edges.length + 200);
+        for (int i = edges.length; i < boxes.length; i++) {
+            int x1 = random.nextInt(37);
+            int y1 = random.nextInt(23);
+            boxes[i] = new int[]{x1, y1, x1 + random.nextInt(37 - x1), y1 + random.nextInt(23 - y1)};
+        }
+        for (int[] box : boxes) {
+            // a Quadrilateral spans at least two columns and two rows
+            Quadrilateral quadrilateral = box[2] > box[0] && box[3] > box[1]
+                ? new Quadrilateral (box[0], box[1], box[2], box[3]) : null;
+            long area = (long) (box[2] - box[0] + 1) * (box[3] - box[1] + 1);
+            long[] expected = new long[3];
+            for (int row = box[1]; row <= box[3]; row++) {
+                for (int col = box[0]; col <= box[2]; col++) {
+                    int rgb = picture.getRGB(col, row);
+                    expected[IntegralImage.RED] += (rgb >> 16) & 0xFF;
+                    expected[IntegralImage.GREEN] += (rgb >> 8) & 0xFF;
+                    expected[IntegralImage.BLUE] += rgb & 0xFF;
+                }
+            }
+            for (int channel = IntegralImage.RED; channel <= IntegralImage.BLUE; channel++) {
+                assertEquals(expected[channel], sums.sum(channel, box[0], box[1], box[2], box[3]));
+                assertEquals((double) expected[channel] / area, sums.mean(channel, box[0], box[1], box[2], box[3]), 1e-9);
+                if (quadrilateral != null) {
+                    assertEquals(expected[channel], sums.sum(channel, quadrilateral));
+                    assertEquals((double) expected[channel] / area, sums.mean(channel, quadrilateral), 1e-9);
+                }
+            }
+            int expectedRGB = (int) (expected[IntegralImage.RED] / area) << 16
+                | (int) (expected[IntegralImage.GREEN] / area) << 8 | (int) (expected[IntegralImage.BLUE] / area);
+            assertEquals(expectedRGB, sums.meanRGB(box[0], box[1], box[2], box[3]));
+            if (quadrilateral != null) {
+                assertEquals(expectedRGB, sums.meanRGB(quadrilateral));
+            }
+        }
+        assertEquals(picture, new PictureConvertor(picture).boxPaint(1));
+
+        try {
+            sums.sum(IntegralImage.RED, 0, 0, 37, 22);
+            fail("a box must lie within the picture");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_IntegralImageLongTables() {
+        // just over the 8,421,504 pixels whose channel sums all fit in an int
+        int breadth = 2903;
+        int length = 2902;
+        int[] raster = new int[breadth * length];
+        Arrays.fill(raster, 0xFFFFFFFF);
+        raster[raster.length - 1] = 0xFF000000;
+        IntegralImage sums = new IntegralImage(Picture.wrap(raster, breadth, length));
+
+        long pixels = (long) breadth * length;
+        assertEquals(255 * (pixels - 1), sums.sum(IntegralImage.GREEN, 0, 0, breadth - 1, length - 1));
+        assertEquals(0, sums.sum(IntegralImage.BLUE, breadth - 1, length - 1, breadth - 1, length - 1));
+        assertEquals(255 * 2L * breadth, sums.sum(IntegralImage.RED, new Quadrilateral (0, 0, breadth - 1, 1)));
+        assertEquals(255.0 * (pixels - 1) / pixels, sums.mean(IntegralImage.RED, 0, 0, breadth - 1, length - 1), 1e-9);
+        assertEquals(0xBFBFBF, sums.meanRGB(new Quadrilateral (breadth - 2, length - 2, breadth - 1, length - 1)));
+    }
 }
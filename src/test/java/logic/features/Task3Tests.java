@@ -1,11 +1,20 @@
 package logic.features;
 
+import logic.core.GrayPicture;
 import logic.core.Picture;
 import logic.core.PictureProcessingException;
 import logic.core.Quadrilateral ;
 import org.junit.Test;
 import static org.junit.Assert.*;
 import java.awt.Color;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 public class Task3Tests {
 
@@ -73,6 +82,161 @@ public class Task3Tests {
         assertEquals(expected, result, 1e-7);
     }
 
+    @Test
+    public void test_GrayPictureMatchesGrayscale(){
+        Picture test1 = new Picture("resources/cosineSimilarityInput1.png");
+        Picture gray = new PictureConvertor(test1).grayscale();
+
+        GrayPicture result = GrayPicture.of(test1);
+
+        assertEquals(gray, result.toPicture());
+        assertEquals(PictureProcessing.cosineSimilarity(test1, test1),
+            PictureProcessing.cosineSimilarity(result, result), 1e-12);
+
+        GrayPicture copy = GrayPicture.wrap(result.raster().clone(), result.breadth(), result.length());
+        assertEquals(result.hashCode(), copy.hashCode());
+        assertTrue(new HashSet<>(Arrays.asList(result, copy)).contains(GrayPicture.of(test1)));
+    }
+
+    @Test
+    public void test_CosineSimilarity_Batch(){
+        Picture test1 = new Picture("resources/cosineSimilarityInput1.png");
+        Picture test2 = new Picture("resources/cosineSimilarityInput2.png");
+        Picture black = new Picture(test1.breadth(), test1.length());
+        List<Picture> pictures = Arrays.asList(test1, test2, black);
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        double[] oneToMany = PictureProcessing.cosineSimilarities(test2, pictures);
+        double[][] matrix = PictureProcessing.cosineSimilarityMatrix(pictures, pool);
+
+        for (int i = 0; i < pictures.size(); i++) {
+            assertEquals(PictureProcessing.cosineSimilarity(test2, pictures.get(i)), oneToMany[i], 0);
+            for (int j = 0; j < pictures.size(); j++) {
+                double expected = PictureProcessing.cosineSimilarity(pictures.get(i), pictures.get(j));
+                assertEquals(expected, matrix[i][j], 0);
+                assertEquals(expected,
+                    PictureProcessing.cosineSimilarity(pictures.get(i), pictures.get(j), pool), 0);
+            }
+        }
+        assertEquals(0.876518469, matrix[0][1], 1e-7);
+        pool.shutdown();
+    }
+
+    @Test
+    public void test_SimilarityIndex() throws IOException {
+        String[] names = {"12003.jpg", "8143.jpg", "100075.jpg", "100080.jpg", "100098.jpg"};
+        SimilarityIndex index = new SimilarityIndex();
+        Picture[] pictures = new Picture[names.length];
+        for (int i = 0; i < names.length; i++) {
+            pictures[i] = new Picture("resources/" + names[i]);
+            assertEquals(i, index.add(pictures[i]));
+        }
+
+        List<SimilarityIndex.Match> matches = index.nearest(pictures[2], 3);
+        assertEquals(3, matches.size());
+        assertEquals(2, matches.get(0).id());
+        assertEquals(1, matches.get(0).similarity(), 1e-5);
+        assertTrue(matches.get(1).similarity() >= matches.get(2).similarity());
+        assertEquals(names.length, index.nearest(pictures[0], 10).size());
+
+        assertTrue(index.remove(2));
+        assertFalse(index.remove(2));
+        assertFalse(index.contains(2));
+        assertEquals(matches.subList(1, 3), index.nearest(pictures[2], 2));
+
+        Path file = Files.createTempFile("index", ".bin");
+        try {
+            index.save(file);
+            SimilarityIndex loaded = SimilarityIndex.load(file);
+            assertEquals(index.size(), loaded.size());
+            assertEquals(index.nearest(pictures[4], 4), loaded.nearest(pictures[4], 4));
+            assertEquals(names.length, loaded.add(pictures[2]));
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void test_PerceptualHash_BKTree(){
+        Picture original = new Picture("resources/12003.jpg");
+        Picture half = new PictureConvertor(original).transform(Affine.scaling(0.5, 0.5));
+        Picture negative = new PictureConvertor(original).negative();
+        long hash = PerceptualHash.perceptualHash(original);
+        // bit 63 is coefficient (0, 0), left out of the median of the other 63
+        for (Picture picture : new Picture[]{original, half, negative}) {
+            assertEquals(31, Long.bitCount(PerceptualHash.perceptualHash(picture) & Long.MAX_VALUE));
+        }
+
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.perceptualHash(half)) <= 4);
+        assertTrue(PerceptualHash.distance(PerceptualHash.averageHash(original),
+            PerceptualHash.averageHash(half)) <= 4);
+        assertTrue(PerceptualHash.distance(PerceptualHash.differenceHash(original),
+            PerceptualHash.differenceHash(half)) <= 4);
+        assertTrue(PerceptualHash.distance(hash, PerceptualHash.perceptualHash(negative)) > 32);
+
+        Random random = new Random(19);
+        long[] hashes = new long[2000];
+        BKTree tree = new BKTree();
+        for (int i = 0; i < hashes.length; i++) {
+            // flip a few bits of hash, so that some hashes are near it
+            hashes[i] = i % 2 == 0 ? random.nextLong() : hash ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64));
+            tree.add(hashes[i], i);
+        }
+        assertEquals(hashes.length, tree.size());
+        for (int radius : new int[]{0, 2, 10}) {
+            List<BKTree.Match> found = tree.within(hash, radius);
+            int expected = 0;
+            for (long h : hashes) {
+                if (PerceptualHash.distance(h, hash) <= radius) {
+                    expected++;
+                }
+            }
+            assertEquals(expected, found.size());
+            for (int i = 1; i < found.size(); i++) {
+                assertTrue(found.get(i - 1).distance() <= found.get(i).distance());
+            }
+            for (BKTree.Match match : found) {
+                assertEquals(hashes[match.id()], match.hash());
+                assertEquals(PerceptualHash.distance(hash, match.hash()), match.distance());
+            }
+        }
+    }
+
+    @Test
+    public void test_PyramidCoarseToFine(){
+        Picture original = new Picture("resources/12003.jpg");
+        assertEquals(10, original.levels());
+        assertSame(original, original.level(0));
+        Picture level1 = original.level(1);
+        assertEquals((original.breadth() + 1) / 2, level1.breadth());
+        assertEquals((original.length() + 1) / 2, level1.length());
+        assertSame(level1, original.level(1));
+        assertEquals(1, original.level(9).breadth());
+        original.setRGB(0, 0, 0xFFFFFF);
+        assertNotSame(level1, original.level(1));
+
+        Picture[] candidates = {
+            new Picture("resources/100075.jpg"), new Picture("resources/103041.jpg"),
+            new Picture("resources/100098.jpg"), new Picture("resources/12003.jpg")};
+        Picture query = new PictureConvertor(candidates[2]).denoise(1);
+        assertEquals(2, PictureProcessing.mostSimilar(query, Arrays.asList(candidates)));
+
+        Picture text = new Picture(400, 300);
+        Random random = new Random(20);
+        for (int row = 0; row < text.length(); row++) {
+            for (int col = 0; col < text.breadth(); col++) {
+                boolean ink = row % 24 < 8 && row > 30 && row < 270 && col > 40 && col < 360
+                    && (col / 6) % 5 != 4 && random.nextBoolean();
+                text.setRGB(col, row, ink ? 0x000000 : 0xFFFFFF);
+            }
+        }
+        Picture skewed = new PictureConvertor(text).transform(Affine.rotation(-8.5), Sampling.BILINEAR);
+        assertEquals(0, new PictureConvertor(text).estimateSkew(), 0);
+        assertEquals(-8.5, new PictureConvertor(skewed).estimateSkew(), 0.15);
+        Picture aligned = new PictureConvertor(skewed).alignTextPicture();
+        assertEquals(0, new PictureConvertor(aligned).estimateSkew(), 0.15);
+    }
+
     @Test
     public void test_Rotate_30() throws PictureProcessingException {
         Picture originalPicture = new Picture("resources/12003.jpg");
@@ -117,7 +281,15 @@ public class Task3Tests {
     @Test
     public void test_Rotate_180(){
         Picture originalPicture = new Picture("resources/12003.jpg");
-        Picture expected = new Picture("resources/tests/12003-r180.png");
+        int breadth = originalPicture.breadth();
+        int length = originalPicture.length();
+        /*Exact rotation: every pixel is moved, none is resampled*/
+        Picture expected = new Picture(breadth, length);
+        for (int row = 0; row < length; row++) {
+            for (int col = 0; col < breadth; col++) {
+                expected.set(col, row, originalPicture.get(breadth - 1 - col, length - 1 - row));
+            }
+        }
 
         PictureConvertor o = new PictureConvertor(originalPicture);
         Picture output = o.rotate(180);
@@ -125,6 +297,29 @@ public class Task3Tests {
         assertEquals(expected, output);
     }
 
+    @Test
+    public void test_Rotate_90_270(){
+        Picture originalPicture = new Picture("resources/12003.jpg");
+        int breadth = originalPicture.breadth();
+        int length = originalPicture.length();
+        PictureConvertor o = new PictureConvertor(originalPicture);
+
+        Picture transposed = o.transpose();
+        Picture rotated90 = o.rotate(90);
+        Picture rotated270 = o.rotate(270);
+        assertEquals(length, rotated90.breadth());
+        assertEquals(breadth, rotated90.length());
+        for (int row = 0; row < breadth; row++) {
+            for (int col = 0; col < length; col++) {
+                assertEquals(originalPicture.getRGB(row, col), transposed.getRGB(col, row));
+                assertEquals(originalPicture.getRGB(row, length - 1 - col), rotated90.getRGB(col, row));
+                assertEquals(originalPicture.getRGB(breadth - 1 - row, col), rotated270.getRGB(col, row));
+            }
+        }
+        assertEquals(originalPicture, new PictureConvertor(rotated90).rotate270());
+        assertEquals(new PictureConvertor(o.mirror()).flipVertical(), o.rotate180());
+    }
+
     @Test
     public void test_Rotate_360(){
         Picture originalPicture = new Picture("resources/12003.jpg");
@@ -139,4 +334,25 @@ public class Task3Tests {
 
         assertEquals(expectedSim, actual, 1e-2);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void test_TransformScaleAndCompose() throws PictureProcessingException {
+        Picture originalPicture = new Picture("resources/12003.jpg");
+        Picture even = new PictureConvertor(originalPicture)
+            .clip(new Quadrilateral(0, 0, 199, 149));
+        PictureConvertor o = new PictureConvertor(even);
+
+        Picture doubled = o.transform(Affine.scaling(2, 2));
+        assertEquals(400, doubled.breadth());
+        assertEquals(300, doubled.length());
+        for (int row = 0; row < doubled.length(); row++) {
+            for (int col = 0; col < doubled.breadth(); col++) {
+                assertEquals(even.getRGB(col / 2, row / 2), doubled.getRGB(col, row));
+            }
+        }
+
+        Affine roundTrip = Affine.scaling(2, 2).andThen(Affine.scaling(0.5, 0.5));
+        assertEquals(even, o.transform(roundTrip));
+        assertEquals(even, o.transform(Affine.identity(), Sampling.BILINEAR));
+    }
+}
@@ -1,9 +1,20 @@
 package logic.features;
 
+import logic.core.GrayPicture;
+import logic.core.NestedMatrix;
 import logic.core.Picture;
 import org.junit.Test;
 
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 public class Task4Test {
     @Test
@@ -41,4 +52,250 @@ public class Task4Test {
 
     }
 
+    @Test
+    public void test_DFT_MatchesBruteForce_PowerOfTwo() {
+        Picture original = randomPicture(8, 4, 1);
+        assertEquals(bruteForceDFT(original), new PictureConvertor(original).dft());
+    }
+
+    @Test
+    public void test_DFT_MatchesBruteForce_ArbitrarySize() {
+        Picture original = randomPicture(7, 5, 2);
+        assertEquals(bruteForceDFT(original), new PictureConvertor(original).dft());
+    }
+
+    @Test
+    public void test_FFTPlan_InverseUndoesForward() {
+        Random random = new Random(3);
+        for (int n : new int[] {1, 2, 3, 16, 321, 481}) {
+            double[] re = new double[n];
+            double[] im = new double[n];
+            for (int i = 0; i < n; i++) {
+                re[i] = random.nextInt(256);
+                im[i] = random.nextInt(256);
+            }
+            double[] expectedRe = re.clone();
+            double[] expectedIm = im.clone();
+
+            FFTPlan plan = FFTPlan.forLength(n);
+            plan.transform(re, im, false);
+            plan.transform(re, im, true);
+
+            assertArrayEquals(expectedRe, re, 1e-7);
+            assertArrayEquals(expectedIm, im, 1e-7);
+        }
+
+        // plans for powers of two are kept; only recent plans for other lengths are
+        FFTPlan first = FFTPlan.forLength(1001);
+        assertSame(first, FFTPlan.forLength(1001));
+        for (int n = 3; n < 100; n += 2) {
+            FFTPlan.forLength(n);
+        }
+        assertNotSame(first, FFTPlan.forLength(1001));
+        assertSame(FFTPlan.forLength(1024), FFTPlan.forLength(1024));
+    }
+
+    @Test
+    public void test_DFT_HermitianHalfMatchesFullTransform() {
+        int[][] sizes = {{1, 1}, {1, 6}, {6, 1}, {6, 3}, {5, 4}, {16, 9}};
+        for (int[] size : sizes) {
+            Picture original = randomPicture(size[0], size[1], size[0] * 31 + size[1]);
+            int breadth = original.breadth();
+            int length = original.length();
+            double[] re = new double[breadth * length];
+            double[] im = new double[breadth * length];
+            for (int y = 0; y < length; y++) {
+                for (int x = 0; x < breadth; x++) {
+                    re[y * breadth + x] = Picture.toGray(original.getRGB(x, y)) & 0xFF;
+                }
+            }
+            FFTPlan.transform2D(re, im, breadth, length, false);
+
+            DFTOutput output = new PictureConvertor(original).dft();
+            assertEquals(breadth, output.breadth());
+            assertEquals(length, output.length());
+            for (int u = 0; u < breadth; u++) {
+                for (int v = 0; v < length; v++) {
+                    assertEquals(re[v * breadth + u], output.real(u, v), 1e-7);
+                    assertEquals(im[v * breadth + u], output.imaginary(u, v), 1e-7);
+                    assertEquals(output.amplitude(u, v), output.amplitude().get(u, v), 0);
+                    assertEquals(output.phase(u, v), output.phase().get(u, v), 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void test_NestedMatrix_BulkOperations() {
+        double[][] entries = {{1, 2, 3}, {4, 5, 6}};
+        NestedMatrix a = new NestedMatrix(entries);
+        NestedMatrix b = NestedMatrix.of(2, 3, 6, 5, 4, 3, 2, 1);
+        NestedMatrix sevens = NestedMatrix.tabulate(2, 3, (row, col) -> 7);
+
+        assertEquals(sevens, a.plus(b));
+        assertEquals(NestedMatrix.of(2, 3, -5, -3, -1, 1, 3, 5), a.minus(b));
+        assertEquals(NestedMatrix.of(2, 3, 6, 10, 12, 12, 10, 6), a.times(b));
+        assertEquals(a.plus(a), a.scale(2));
+        assertEquals(a.times(a), a.map(x -> x * x));
+        assertEquals(21, a.sum(), 0);
+        assertArrayEquals(new double[] {1, 2, 3, 4, 5, 6}, a.toRowMajor(), 0);
+        assertArrayEquals(entries[1], a.toArray()[1], 0);
+
+        NestedMatrix direct = a.offHeap();
+        assertTrue(direct.isOffHeap());
+        assertFalse(a.isOffHeap());
+        assertEquals(a, direct);
+        assertTrue(direct.plus(b).isOffHeap());
+        assertEquals(sevens, direct.plus(b));
+        assertEquals(a.contentHash(), direct.contentHash());
+        assertEquals(a.hashCode(), direct.hashCode());
+        assertArrayEquals(a.toRowMajor(), direct.toRowMajor(), 0);
+        assertArrayEquals(entries[1], direct.toArray()[1], 0);
+        assertEquals(6, direct.asBuffer().remaining());
+        assertEquals(5, direct.asBuffer().get(4), 0);
+        assertNotEquals(a.contentHash(), a.plus(sevens.scale(1e-9)).contentHash());
+        assertEquals(a, a.plus(sevens.scale(1e-9)));
+
+        entries[0][0] = 100;
+        assertEquals(1, a.get(0, 0), 0);
+        try {
+            a.get(0, 3);
+            fail("entries outside the matrix must not be read");
+        } catch (IndexOutOfBoundsException expected) {
+            // expected
+        }
+        try {
+            new NestedMatrix(new double[][] {{1, 2}, {3}});
+            fail("rows of different lengths must be rejected");
+        } catch (IllegalArgumentException expected) {
+            // expected
+        }
+    }
+
+    @Test
+    public void test_InverseDFT() {
+        for (Picture original : new Picture[] {randomPicture(8, 4, 4), randomPicture(7, 5, 5),
+            new Picture("resources/15088.jpg")}) {
+            Picture expected = GrayPicture.of(original).toPicture();
+            assertEquals(expected, new PictureConvertor(original).dft().inverse());
+        }
+        Picture small = randomPicture(6, 5, 6);
+        assertEquals(GrayPicture.of(small).toPicture(), bruteForceDFT(small).inverse());
+    }
+
+    @Test
+    public void test_FrequencyFilters() {
+        Picture original = new Picture("resources/15088.jpg");
+        DFTOutput dft = new PictureConvertor(original).dft();
+        assertEquals(dft.inverse(), dft.filter(FrequencyMask.lowPass(1)).inverse());
+        assertEquals(dft.filter(FrequencyMask.highPass(0.05).and(FrequencyMask.lowPass(0.2))),
+            dft.filter(FrequencyMask.bandPass(0.05, 0.2)));
+
+        Picture flat = dft.filter(FrequencyMask.lowPass(0)).inverse();
+        for (int row = 0; row < flat.length(); row += 40) {
+            assertEquals(flat.getRGB(0, 0), flat.getRGB(row % flat.breadth(), row));
+        }
+
+        // vertical stripes with a period of 8 pixels on a flat gray
+        Picture striped = new Picture(64, 48);
+        for (int row = 0; row < 48; row++) {
+            for (int col = 0; col < 64; col++) {
+                int gray = (int) Math.round(128 + 60 * Math.cos(2 * Math.PI * col / 8));
+                striped.setRGB(col, row, gray * 0x010101);
+            }
+        }
+        DFTOutput stripes = new PictureConvertor(striped).dft();
+        Picture cleaned = stripes.filter(FrequencyMask.notch(1.0 / 8, 0, 0.01)).inverse();
+        for (int col = 0; col < 64; col++) {
+            assertEquals(0xFF808080, cleaned.getRGB(col, 20));
+        }
+        assertEquals(stripes.inverse(), stripes.filter(FrequencyMask.notch(1.0 / 4, 0, 0.01)).inverse());
+    }
+
+    @Test
+    public void test_Convolution_TransformMatchesDirect() {
+        Picture original = new Picture("resources/15088.jpg");
+        PictureConvertor t = new PictureConvertor(original);
+        assertEquals(original, t.convolve(NestedMatrix.of(1, 1, 1)));
+
+        double[][] weights = {{0, -1, 0, 0.5}, {-1, 5, -1, 0}, {0, -1, 0, -0.5}};
+        NestedMatrix sharpen = new NestedMatrix(weights);
+        Picture direct = t.convolveDirectly(sharpen);
+        // the weights of 0.5 put many sums exactly halfway, where the methods may round apart
+        assertChannelsWithin(1, direct, t.convolveByTransform(sharpen));
+        assertEquals(direct, t.parallel().convolve(sharpen));
+        for (int row = 0; row < original.length(); row += 37) {
+            for (int col = 0; col < original.breadth(); col += 29) {
+                for (int shift = 0; shift < 24; shift += 8) {
+                    double sum = 0;
+                    for (int r = 0; r < 3; r++) {
+                        for (int c = 0; c < 4; c++) {
+                            int x = Math.max(0, Math.min(original.breadth() - 1, col + 2 - c));
+                            int y = Math.max(0, Math.min(original.length() - 1, row + 1 - r));
+                            sum += weights[r][c] * ((original.getRGB(x, y) >> shift) & 0xFF);
+                        }
+                    }
+                    long expected = Math.max(0, Math.min(255, Math.round(sum)));
+                    assertEquals(expected, (direct.getRGB(col, row) >> shift) & 0xFF);
+                }
+            }
+        }
+
+        NestedMatrix blur = NestedMatrix.tabulate(31, 31, (r, c) -> 1.0 / (31 * 31));
+        // convolve takes the transform path here, which may round a level apart
+        assertTrue(ConvolutionFilter.prefersTransform(original.breadth(), original.length(), 31, 31));
+        assertChannelsWithin(1, t.convolveDirectly(blur), t.convolve(blur));
+    }
+
+    private static void assertChannelsWithin(int tolerance, Picture expected, Picture actual) {
+        assertEquals(expected.breadth(), actual.breadth());
+        assertEquals(expected.length(), actual.length());
+        for (int row = 0; row < expected.length(); row++) {
+            for (int col = 0; col < expected.breadth(); col++) {
+                for (int shift = 0; shift < 24; shift += 8) {
+                    int difference = ((expected.getRGB(col, row) >> shift) & 0xFF)
+                        - ((actual.getRGB(col, row) >> shift) & 0xFF);
+                    assertTrue(Math.abs(difference) <= tolerance);
+                }
+            }
+        }
+    }
+
+    private static Picture randomPicture(int breadth, int length, long seed) {
+        Random random = new Random(seed);
+        Picture picture = new Picture(breadth, length);
+        for (int row = 0; row < length; row++) {
+            for (int col = 0; col < breadth; col++) {
+                picture.setRGB(col, row, random.nextInt(0x1000000));
+            }
+        }
+        return picture;
+    }
+
+    private static DFTOutput bruteForceDFT(Picture picture) {
+        int breadth = picture.breadth();
+        int length = picture.length();
+        double[][] amplitude = new double[breadth][length];
+        double[][] phase = new double[breadth][length];
+        for (int u = 0; u < breadth; u++) {
+            for (int v = 0; v < length; v++) {
+                double re = 0;
+                double im = 0;
+                for (int x = 0; x < breadth; x++) {
+                    for (int y = 0; y < length; y++) {
+                        double f = Picture.toGray(picture.getRGB(x, y)) & 0xFF;
+                        double angle = -2 * Math.PI * ((double) u * x / breadth + (double) v * y / length);
+                        re += f * Math.cos(angle);
+                        im += f * Math.sin(angle);
+                    }
+                }
+                if (Math.abs(im) < 1e-9 * Math.abs(re)) {
+                    im = 0; // purely real up to rounding, so that the phase is 0 or pi
+                }
+                amplitude[u][v] = Math.sqrt(re * re + im * im);
+                phase[u][v] = Math.atan2(im, re);
+            }
+        }
+        return new DFTOutput(amplitude, phase);
+    }
 }